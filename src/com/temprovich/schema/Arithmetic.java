@@ -0,0 +1,212 @@
+package com.temprovich.schema;
+
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Arithmetic shared by both engines. Numbers are either Long integers or
+ * Double floats. Two integers stay integers unless the result overflows,
+ * in which case it is promoted to a double, and any operation mixing the
+ * two kinds is carried out on doubles. Division is true division: two
+ * integers divide to an integer only when the quotient is exact.
+ */
+public final class Arithmetic {
+
+    private Arithmetic() {}
+
+    public static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    public static Object add(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long) left;
+            long b = (long) right;
+            long result = a + b;
+            if (((a ^ result) & (b ^ result)) < 0) {
+                return (double) a + (double) b;
+            }
+            return result;
+        }
+        if (isNumber(left) && isNumber(right)) {
+            return toDouble(left) + toDouble(right);
+        }
+        if (left instanceof String || right instanceof String) {
+            return Interpreter.stringify(left) + Interpreter.stringify(right);
+        }
+
+        throw new SchemaRuntimeError(operator, "Operands must be two numbers or two strings.");
+    }
+
+    public static Object subtract(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long) left;
+            long b = (long) right;
+            long result = a - b;
+            if (((a ^ b) & (a ^ result)) < 0) {
+                return (double) a - (double) b;
+            }
+            return result;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) - toDouble(right);
+    }
+
+    public static Object multiply(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long) left;
+            long b = (long) right;
+            long high = Math.multiplyHigh(a, b);
+            long result = a * b;
+            if (high != (result >> 63)) {
+                return (double) a * (double) b;
+            }
+            return result;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) * toDouble(right);
+    }
+
+    public static Object divide(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long) left;
+            long b = (long) right;
+            if (b != 0 && a % b == 0 && !(a == Long.MIN_VALUE && b == -1)) {
+                return a / b;
+            }
+            return (double) a / (double) b;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) / toDouble(right);
+    }
+
+    public static Object negate(Token operator, Object value) {
+        if (value instanceof Long) {
+            long a = (long) value;
+            return a == Long.MIN_VALUE ? -(double) a : (Object) (-a);
+        }
+        if (value instanceof Double) {
+            return -(double) value;
+        }
+
+        throw new SchemaRuntimeError(operator, "Operand must be a number.");
+    }
+
+    public static boolean greater(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left > (long) right;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) > toDouble(right);
+    }
+
+    public static boolean greaterEqual(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left >= (long) right;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) >= toDouble(right);
+    }
+
+    public static boolean less(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left < (long) right;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) < toDouble(right);
+    }
+
+    public static boolean lessEqual(Token operator, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return (long) left <= (long) right;
+        }
+
+        check(operator, left, right);
+        return toDouble(left) <= toDouble(right);
+    }
+
+    /*
+     * Equality as seen by scripts: numbers compare by value whatever their
+     * kind, so 1 == 1.0.
+     */
+    public static boolean isEqual(Object a, Object b) {
+        if (a == null) {
+            return b == null;
+        }
+        if (a instanceof Long && b instanceof Double || a instanceof Double && b instanceof Long) {
+            return toDouble(a) == toDouble(b);
+        }
+
+        return a.equals(b);
+    }
+
+    /*
+     * The value a map keys by, so that keys equal under isEqual are one key:
+     * a float with a whole value in the range of an integer keys as that
+     * integer. That makes 0.0 and -0.0 one key too, as both equal 0.
+     */
+    public static Object key(Object value) {
+        if (value instanceof Double) {
+            double d = (double) value;
+            if (d == (long) d && d != 0x1p63) {
+                return (long) d;
+            }
+        }
+
+        return value;
+    }
+
+    public static boolean isTruthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (boolean) value;
+        }
+        if (value instanceof Long) {
+            return (long) value != 0;
+        }
+        if (value instanceof Double) {
+            return (double) value != 0;
+        }
+        return true;
+    }
+
+    public static double toDouble(Object value) {
+        return value instanceof Long ? (double) (long) value : (double) value;
+    }
+
+    /*
+     * Converts an index or size to an int. Doubles are truncated; integers
+     * outside the int range become -1, which callers reject as out of range.
+     */
+    public static int toIndex(Object value) {
+        if (value instanceof Long) {
+            long index = (long) value;
+            return index < 0 || index > Integer.MAX_VALUE ? -1 : (int) index;
+        }
+        if (value instanceof Double) {
+            return ((Double) value).intValue();
+        }
+
+        throw new SchemaRuntimeError("Index must be a number.");
+    }
+
+    private static void check(Token operator, Object left, Object right) {
+        if (isNumber(left) && isNumber(right)) {
+            return;
+        }
+
+        throw new SchemaRuntimeError(operator, "Malformed expression detected: attempted to operate on " + className(left) + ", " + className(right) + " with operator " + operator.type());
+    }
+
+    private static String className(Object value) {
+        return value == null ? "null" : value.getClass().getName();
+    }
+}
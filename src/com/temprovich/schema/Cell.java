@@ -0,0 +1,14 @@
+package com.temprovich.schema;
+
+/*
+ * Shared storage for a local variable that is captured by a closure and
+ * reassigned, so every function that sees it observes the same value.
+ */
+public final class Cell {
+
+    public Object value;
+
+    public Cell(Object value) {
+        this.value = value;
+    }
+}
@@ -1,50 +1,31 @@
 package com.temprovich.schema;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/*
+ * The frame of a single function call. Every local of the function, whatever
+ * block declares it, has a slot assigned by the SemanticResolver; variables of
+ * enclosing functions are reached through the closure's upvalues.
+ */
 public class Environment {
-    
-    private Environment enclosing;
-    private final List<Object> values;
-
-    public Environment() {
-        this(null);
-    }
 
-    public Environment(Environment enclosing) {
-        this.enclosing = enclosing;
-        this.values = new ArrayList<Object>();
-    }
+    private static final Object[] NO_UPVALUES = new Object[0];
 
-    public Object fetch(int distance, int slot) {
-        Environment environment = this;
-        for (int i = 0; i < distance; i++) {
-            environment = environment.enclosing;
-        }
+    private final Object[] values;
+    private final Object[] upvalues;
 
-        return environment.values.get(slot);
+    public Environment(int size, Object[] upvalues) {
+        this.values = new Object[size];
+        this.upvalues = upvalues == null ? NO_UPVALUES : upvalues;
     }
 
-    public void define(Object value) {
-        values.add(value);
+    public Object fetch(int slot) {
+        return values[slot];
     }
 
-    public void assign(int distance, int slot, Object value) {
-        Environment environment = ancestor(distance);
-        environment.values.set(slot, value);
-    }
-
-    private Environment ancestor(int distance) {
-        Environment environment = this;
-        for (int i = 0; i < distance; i++) {
-            environment = environment.enclosing;
-        }
-
-        return environment;
+    public void assign(int slot, Object value) {
+        values[slot] = value;
     }
 
-    public Environment enclosing() {
-        return enclosing;
+    public Object upvalue(int index) {
+        return upvalues[index];
     }
 }
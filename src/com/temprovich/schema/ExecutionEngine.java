@@ -0,0 +1,16 @@
+package com.temprovich.schema;
+
+import java.util.List;
+
+/*
+ * Something that can run a resolved program. The SemanticResolver binds
+ * global names against the engine's globals, then the engine runs the
+ * statements with a script frame of the size the resolver computed.
+ * Runtime errors are reported through Schema.reporter, not thrown.
+ */
+public interface ExecutionEngine {
+
+    Globals globals();
+
+    void interpret(List<Statement> statements, int frameSize);
+}
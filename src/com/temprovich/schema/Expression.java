@@ -1,7 +1,10 @@
 package com.temprovich.schema;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import com.temprovich.schema.error.SchemaParseError;
 import com.temprovich.schema.lexer.Token;
 
 public abstract class Expression {
@@ -41,6 +44,43 @@ public abstract class Expression {
         public abstract R visit(IndexSet expression);
     }
 
+    /*
+     * An expression that refers to a variable. The SemanticResolver records
+     * where the variable lives so it can be reached without a lookup: a slot
+     * in the current frame, an upvalue of the running closure, or the cell
+     * index of a global.
+     */
+    public static abstract class Resolvable extends Expression {
+
+        public enum Access {
+            GLOBAL,
+            LOCAL,
+            LOCAL_CELL,
+            UPVALUE,
+            UPVALUE_CELL;
+        }
+
+        private Access access = Access.GLOBAL;
+        private int slot = 0;
+
+        public void resolve(Access access, int slot) {
+            this.access = access;
+            this.slot = slot;
+        }
+
+        public void resolveGlobal(int index) {
+            resolve(Access.GLOBAL, index);
+        }
+
+        public Access access() {
+            return access;
+        }
+
+        public int slot() {
+            return slot;
+        }
+    }
+
     public static class Literal extends Expression {
 
         private final Object value;
@@ -77,7 +117,7 @@ public abstract class Expression {
         }
     }
 
-    public static class Variable extends Expression {
+    public static class Variable extends Resolvable {
 
         private final Token name;
 
@@ -95,7 +135,7 @@ public abstract class Expression {
         }
     }
 
-    public static class Assign extends Expression {
+    public static class Assign extends Resolvable {
 
         private final Token name;
         private final Expression value;
@@ -148,6 +188,7 @@ public abstract class Expression {
         private final Expression left;
         private final Token operator;
         private final Expression right;
+        private Specialization specialization = Specialization.UNINITIALIZED;
 
         public Binary(Expression left, Token operator, Expression right) {
             this.left = left;
@@ -155,6 +196,32 @@ public abstract class Expression {
             this.right = right;
         }
 
+        /*
+         * The kind of operands this node has seen. The first evaluation picks
+         * INTEGER or DOUBLE when both operands were of that kind, after which
+         * the interpreter evaluates the node unboxed. Seeing anything else
+         * moves the node to GENERIC for good.
+         */
+        public enum Specialization { UNINITIALIZED, INTEGER, DOUBLE, GENERIC }
+
+        public Specialization specialization() {
+            return specialization;
+        }
+
+        public void specialize(Object left, Object right) {
+            if (left instanceof Long && right instanceof Long && operator.type() != Token.Type.SLASH) {
+                this.specialization = Specialization.INTEGER;
+            } else if (left instanceof Double && right instanceof Double) {
+                this.specialization = Specialization.DOUBLE;
+            } else {
+                this.specialization = Specialization.GENERIC;
+            }
+        }
+
+        public void generic() {
+            this.specialization = Specialization.GENERIC;
+        }
+
         public Expression left() {
             return left;
         }
@@ -208,11 +275,20 @@ public abstract class Expression {
         private final Expression callee;
         private final Token paren;
         private final List<Expression> arguments;
+        private final InlineCache cache;
 
         public Call(Expression callee, Token paren, List<Expression> arguments) {
             this.callee = callee;
             this.paren = paren;
             this.arguments = arguments;
+            this.cache = new InlineCache();
+        }
+
+        /*
+         * Methods invoked through this call when the callee is an attribute.
+         */
+        public InlineCache cache() {
+            return cache;
         }
 
         public Expression callee() {
@@ -236,21 +312,109 @@ public abstract class Expression {
     public static class Function extends Expression {
 
         private final List<Token> parameters;
-        private final List<Statement> body;
+        private List<Statement> body;
+        private Supplier<List<Statement>> source = null;
+        private SchemaParseError failure = null;
+        private Consumer<Function> resolution = null;
+        private int frameSize = 0;
+        private boolean method = false;
+        private Capture[] captures = new Capture[0];
+        private boolean[] boxedParameters = null;
 
         public Function(List<Token> parameters, List<Statement> body) {
             this.parameters = parameters;
             this.body = body;
         }
 
+        /*
+         * A function whose body is only parsed, from the source given, when
+         * it is first needed. The SemanticResolver may then defer resolving
+         * it as well, which it only does where the body cannot capture
+         * anything, so captures() never needs the body.
+         */
+        public Function(List<Token> parameters, Supplier<List<Statement>> source) {
+            this.parameters = parameters;
+            this.source = source;
+        }
+
         public List<Token> parameters() {
             return parameters;
         }
 
         public List<Statement> body() {
+            materialize();
             return body;
         }
 
+        public boolean isDeferred() {
+            return body == null;
+        }
+
+        /*
+         * Resolves the body once it is parsed, instead of now.
+         */
+        public void resolveLater(Consumer<Function> resolution) {
+            this.resolution = resolution;
+        }
+
+        private void materialize() {
+            if (body != null) {
+                return;
+            }
+            // a body that did not parse is not parsed, nor reported, again
+            if (failure != null) {
+                throw failure;
+            }
+
+            try {
+                body = source.get();
+            } catch (SchemaParseError error) {
+                failure = error;
+                throw error;
+            } finally {
+                source = null;
+            }
+            if (resolution != null) {
+                var deferred = resolution;
+                resolution = null;
+                deferred.accept(this);
+            }
+        }
+
+        /*
+         * Records the frame layout computed by the SemanticResolver: the
+         * number of slots a call needs, whether slot zero holds the receiver,
+         * which variables the closure captures from the frame (or upvalues)
+         * it is created in, and which parameters live in a Cell.
+         */
+        public void resolve(int frameSize, boolean method, Capture[] captures, boolean[] boxedParameters) {
+            this.frameSize = frameSize;
+            this.method = method;
+            this.captures = captures;
+            this.boxedParameters = boxedParameters;
+        }
+
+        public int frameSize() {
+            materialize();
+            return frameSize;
+        }
+
+        public boolean isMethod() {
+            materialize();
+            return method;
+        }
+
+        public Capture[] captures() {
+            return captures;
+        }
+
+        public boolean isBoxedParameter(int index) {
+            materialize();
+            return boxedParameters != null && boxedParameters[index];
+        }
+
+        public record Capture(boolean local, int index) {}
+
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
@@ -261,10 +425,22 @@ public abstract class Expression {
 
         private final Expression object;
         private final Token name;
+        private final FieldCache fields;
+        private final InlineCache cache;
 
         public Attribute(Expression object, Token name) {
             this.object = object;
             this.name = name;
+            this.fields = new FieldCache();
+            this.cache = new InlineCache();
+        }
+
+        public FieldCache fields() {
+            return fields;
+        }
+
+        public InlineCache cache() {
+            return cache;
         }
 
         public Expression object() {
@@ -286,11 +462,17 @@ public abstract class Expression {
         private final Expression object;
         private final Token name;
         private final Expression value;
+        private final FieldCache fields;
 
         public Set(Expression object, Token name, Expression value) {
             this.object = object;
             this.name = name;
             this.value = value;
+            this.fields = new FieldCache();
+        }
+
+        public FieldCache fields() {
+            return fields;
         }
 
         public Expression object() {
@@ -311,7 +493,7 @@ public abstract class Expression {
         }
     }
 
-    public static class Self extends Expression {
+    public static class Self extends Resolvable {
 
         private final Token keyword;
 
@@ -329,20 +511,29 @@ public abstract class Expression {
         }
     }
 
-    public static class Parent extends Expression {
+    public static class Parent extends Resolvable {
 
         private final Token keyword;
         private final Token method;
+        private final Self self;
 
         public Parent(Token keyword, Token method) {
             this.keyword = keyword;
             this.method = method;
+            this.self = new Self(keyword);
         }
 
         public Token keyword() {
             return keyword;
         }
 
+        /*
+         * The receiver the parent method is bound to.
+         */
+        public Self self() {
+            return self;
+        }
+
         public Token method() {
             return method;
         }
@@ -353,7 +544,7 @@ public abstract class Expression {
         }
     }
 
-    public static class Index extends Expression {
+    public static class Index extends Resolvable {
 
         private final Token name;
         private final Expression index;
@@ -395,7 +586,7 @@ public abstract class Expression {
         }
     }
 
-    public static class IndexSet extends Expression {
+    public static class IndexSet extends Resolvable {
 
         private final Token name;
         private final Expression index;
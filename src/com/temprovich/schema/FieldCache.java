@@ -0,0 +1,44 @@
+package com.temprovich.schema;
+
+import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.Shape;
+
+/*
+ * Remembers where one attribute name lives for the last shape seen at a
+ * site, so a field access is an identity check and an array access. For
+ * stores that add the field, the transition to the next shape is kept too.
+ */
+public final class FieldCache {
+
+    private Shape shape = null;
+    private int index = -1;
+    private Shape next = null;
+
+    /*
+     * Index of the field in instances of the shape, or -1 if they have none.
+     */
+    public int indexOf(Shape shape, String name) {
+        if (this.shape != shape) {
+            this.shape = shape;
+            this.index = shape.indexOf(name);
+            this.next = null;
+        }
+
+        return index;
+    }
+
+    public void store(SchemaInstance instance, String name, Object value) {
+        Shape shape = instance.shape();
+        if (this.shape != shape) {
+            this.shape = shape;
+            this.index = shape.indexOf(name);
+            this.next = index == -1 ? shape.withField(name) : null;
+        }
+
+        if (next == null) {
+            instance.field(index, value);
+        } else {
+            instance.extend(next, value);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.temprovich.schema;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Global variables, stored in numbered cells. Names are bound to cells ahead
+ * of execution, so reading a global at runtime is a single array load.
+ */
+public class Globals {
+
+    public static final Object UNDEFINED = new Object();
+
+    private final Map<String, Integer> indices;
+    private Object[] values;
+
+    public Globals() {
+        this.indices = new HashMap<String, Integer>();
+        this.values = new Object[64];
+        Arrays.fill(values, UNDEFINED);
+    }
+
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        if (index != null) {
+            return index;
+        }
+
+        int size = indices.size();
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            Arrays.fill(values, size, values.length, UNDEFINED);
+        }
+
+        indices.put(name, size);
+        return size;
+    }
+
+    /*
+     * Returns the value in a cell, or UNDEFINED if nothing was stored in it yet.
+     */
+    public Object fetch(int index) {
+        return values[index];
+    }
+
+    public void store(int index, Object value) {
+        values[index] = value;
+    }
+
+    public boolean isDefined(int index) {
+        return values[index] != UNDEFINED;
+    }
+
+    public void define(String name, Object value) {
+        // indexOf may grow the array, so it has to run before values is read
+        int index = indexOf(name);
+        values[index] = value;
+    }
+
+    /*
+     * Binds names to cells in the order given, as a resolver run against
+     * another Globals did. Returns false, and binds nothing, when the names
+     * already bound here are not the first ones given.
+     */
+    public boolean bind(String[] names) {
+        if (names.length < indices.size()) {
+            return false;
+        }
+        for (var entry : indices.entrySet()) {
+            if (!entry.getKey().equals(names[entry.getValue()])) {
+                return false;
+            }
+        }
+
+        for (String name : names) {
+            indexOf(name);
+        }
+        return true;
+    }
+
+    /*
+     * The names bound so far, by cell index.
+     */
+    public String[] names() {
+        String[] names = new String[indices.size()];
+        for (var entry : indices.entrySet()) {
+            names[entry.getValue()] = entry.getKey();
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,108 @@
+package com.temprovich.schema;
+
+import com.temprovich.schema.instance.BuiltinMethod;
+import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.SchemaMethod;
+import com.temprovich.schema.instance.Shape;
+
+/*
+ * Remembers which method an attribute name resolved to for the last few
+ * shapes seen at one call site. A shape fixes both the node and the fields
+ * that could shadow a method, and node method tables never change once the
+ * node is created, so an entry stays valid for the lifetime of the program.
+ * After POLYMORPHIC_LIMIT different shapes the site is megamorphic and every
+ * lookup walks the parent chain again.
+ *
+ * Builtin instances have no shape of their own; for them the site remembers
+ * the last builtin type seen and its method of that name.
+ */
+public final class InlineCache {
+
+    public static final int POLYMORPHIC_LIMIT = 4;
+
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long megamorphicTransitions = 0;
+
+    private Shape[] shapes = null;
+    private SchemaMethod[] methods = null;
+    private int size = 0;
+    private boolean megamorphic = false;
+
+    private Class<?> builtinType = null;
+    private BuiltinMethod builtin = null;
+
+    /*
+     * Returns the method of the shape's node, or null when there is none or
+     * a field of the same name shadows it.
+     */
+    public SchemaMethod lookup(Shape shape, String name) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) {
+                hits++;
+                return methods[i];
+            }
+        }
+
+        misses++;
+        if (shape.indexOf(name) != -1) {
+            return null;
+        }
+
+        SchemaMethod method = shape.node().fetchMethod(name);
+        if (method == null || megamorphic) {
+            return method;
+        }
+
+        if (size == POLYMORPHIC_LIMIT) {
+            megamorphicTransitions++;
+            megamorphic = true;
+            shapes = null;
+            methods = null;
+            size = 0;
+            return method;
+        }
+
+        if (shapes == null) {
+            shapes = new Shape[POLYMORPHIC_LIMIT];
+            methods = new SchemaMethod[POLYMORPHIC_LIMIT];
+        }
+        shapes[size] = shape;
+        methods[size] = method;
+        size++;
+
+        return method;
+    }
+
+    /*
+     * Returns the builtin method of the instance's type, or null when the
+     * type has none of that name.
+     */
+    public BuiltinMethod builtin(SchemaInstance instance, String name) {
+        if (instance.getClass() == builtinType) {
+            hits++;
+            return builtin;
+        }
+
+        misses++;
+        BuiltinMethod method = instance.builtin(name);
+        if (method != null) {
+            builtinType = instance.getClass();
+            builtin = method;
+        }
+
+        return method;
+    }
+
+    public static long hits() {
+        return hits;
+    }
+
+    public static long misses() {
+        return misses;
+    }
+
+    public static long megamorphicTransitions() {
+        return megamorphicTransitions;
+    }
+}
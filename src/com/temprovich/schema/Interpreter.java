@@ -1,6 +1,5 @@
 package com.temprovich.schema;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,18 +24,22 @@ import com.temprovich.schema.Statement.If;
 import com.temprovich.schema.Statement.Trait;
 import com.temprovich.schema.Statement.While;
 import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod;
 import com.temprovich.schema.instance.SchemaArray;
 import com.temprovich.schema.instance.SchemaCallable;
 import com.temprovich.schema.instance.SchemaFunction;
 import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.SchemaList;
+import com.temprovich.schema.instance.SchemaMethod;
 import com.temprovich.schema.instance.SchemaNode;
+import com.temprovich.schema.jit.CompiledBody;
 import com.temprovich.schema.lexer.Token;
 import com.temprovich.schema.natives.SchemaNative;
 import com.temprovich.schema.natives.SchemaNativeBase;
 import com.temprovich.schema.natives.SchemaNativeInternal;
-import com.temprovich.schema.throwables.BreakException;
 
-public class Interpreter implements Expression.Visitor<Object>,
+public class Interpreter implements ExecutionEngine,
+                                    Expression.Visitor<Object>,
                                     Statement.Visitor<Void> {
 
     private static SchemaNative[] preincluded = new SchemaNative[] {
@@ -44,22 +47,39 @@ public class Interpreter implements Expression.Visitor<Object>,
         new SchemaNativeBase()
     };
 
-    private final Map<String, Object> globals;
-    private final Map<Object, Integer> locals;
-    private final Map<Object, Integer> slots;
+    /*
+     * How the last statement completed. Break, continue and return are
+     * signalled through this field instead of exceptions; statement lists
+     * stop as soon as it is no longer NORMAL.
+     */
+    private enum Completion {
+        NORMAL,
+        BREAK,
+        CONTINUE,
+        RETURN;
+    }
+
+    private final Globals globals;
     private Environment environment;
+    private Completion completion = Completion.NORMAL;
+    private Object returnValue = null;
 
     public Interpreter() {
-        this.globals = new HashMap<String, Object>();
+        this.globals = new Globals();
         for (var preinclude : preincluded) {
             preinclude.inject(globals);
         }
         this.environment = null;
-        this.locals = new HashMap<Object, Integer>();
-        this.slots = new HashMap<Object, Integer>();
     }
 
-    public void interpret(List<Statement> statements) {
+    @Override
+    public Globals globals() {
+        return globals;
+    }
+
+    @Override
+    public void interpret(List<Statement> statements, int frameSize) {
+        enter(new Environment(frameSize, null));
         try {
             for (var statement : statements) {
                 execute(statement);
@@ -77,12 +97,10 @@ public class Interpreter implements Expression.Visitor<Object>,
             return "null";
         } else if (object instanceof Boolean) {
             return "bool";
+        } else if (object instanceof Long) {
+            return "int";
         } else if (object instanceof Double) {
-            if (((Double) object).intValue() == (Double) object) {
-                return "int";
-            } else {
-                return "float";
-            }
+            return "float";
         } else if (object instanceof String) {
             return "string";
         } else if (object instanceof SchemaCallable) {
@@ -107,23 +125,25 @@ public class Interpreter implements Expression.Visitor<Object>,
         Object right = evaluate(expression.right());
 
         switch (expression.operator().type()) {
-            case MINUS: return -(double) right;
+            case MINUS: return Arithmetic.negate(expression.operator(), right);
             case BANG: return !predicate(right);
             case PLUS_PLUS: {
-                Integer distance = locals.get(expression.right());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.right()), (double) right + 1);
+                Object result = Arithmetic.add(expression.operator(), right, 1L);
+                if (isLocalVariable(expression.right())) {
+                    var variable = (Variable) expression.right();
+                    assignVariable(variable, result);
                     return null;
                 }
-                return (double) right + 1;
+                return result;
             }
             case MINUS_MINUS: {
-                Integer distance = locals.get(expression.right());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.right()), (double) right - 1);
+                Object result = Arithmetic.subtract(expression.operator(), right, 1L);
+                if (isLocalVariable(expression.right())) {
+                    var variable = (Variable) expression.right();
+                    assignVariable(variable, result);
                     return null;
                 }
-                return (double) right - 1;
+                return result;
             }
             default: throw new SchemaRuntimeError("unknown operator");
         }
@@ -131,79 +151,356 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Object visit(Expression.Binary expression) {
-        Object left = evaluate(expression.left());
-        Object right = evaluate(expression.right());
-
-        switch (expression.operator().type()) {
-            case GREATER:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left > (double) right;
-            case GREATER_EQUAL:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left >= (double) right;
-            case LESS:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left < (double) right;
-            case LESS_EQUAL:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left <= (double) right;
-            case BANG_EQUAL:    return !isEqual(left, right);
-            case EQUAL_EQUAL:   return isEqual(left, right);
-            case MINUS:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left - (double) right;
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
+        switch (expression.specialization()) {
+            case UNINITIALIZED: {
+                Object left = evaluate(expression.left());
+                Object right = evaluate(expression.right());
+                expression.specialize(left, right);
+                return binary(expression, left, right);
+            }
+            case INTEGER:
+                switch (expression.operator().type()) {
+                    case PLUS:
+                    case MINUS:
+                    case STAR:
+                        try {
+                            return arithmeticLong(expression);
+                        } catch (UnexpectedResult result) {
+                            return result.value();
+                        }
+                    case GREATER:
+                    case GREATER_EQUAL:
+                    case LESS:
+                    case LESS_EQUAL:
+                        try {
+                            return comparisonLong(expression);
+                        } catch (UnexpectedResult result) {
+                            return result.value();
+                        }
+                    default:
+                        break;
                 }
-                if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
+                break;
+            case DOUBLE:
+                switch (expression.operator().type()) {
+                    case PLUS:
+                    case MINUS:
+                    case STAR:
+                    case SLASH:
+                        try {
+                            return arithmetic(expression);
+                        } catch (UnexpectedResult result) {
+                            return result.value();
+                        }
+                    case GREATER:
+                    case GREATER_EQUAL:
+                    case LESS:
+                    case LESS_EQUAL:
+                        try {
+                            return comparison(expression);
+                        } catch (UnexpectedResult result) {
+                            return result.value();
+                        }
+                    default:
+                        break;
                 }
+                break;
+            default:
+                break;
+        }
 
-                throw new SchemaRuntimeError(expression.operator(), "Operands must be two numbers or two strings."); // throw an error if the attempted operation is neither addition nor concatenation
-            case SLASH:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left / (double) right;
-            case STAR:
-                validateArithmeticExpression(expression.operator(), left, right);
-                return (double) left * (double) right;
-            case PLUS_EQUAL: {
-                Integer distance = locals.get(expression.left());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.left()), (double) left + (double) right);
-                    return null;
-                }
-                return (double) left + (double) right;
+        return binary(expression, evaluate(expression.left()), evaluate(expression.right()));
+    }
+
+    /*
+     * Evaluates an expression expected to produce a double, keeping nested
+     * arithmetic unboxed. Anything else is evaluated generically and, if it
+     * does not yield a double, handed back through UnexpectedResult.
+     */
+    private double evaluateDouble(Expression expression) throws UnexpectedResult {
+        if (expression instanceof Expression.Binary && ((Expression.Binary) expression).specialization() == Expression.Binary.Specialization.DOUBLE) {
+            var binary = (Expression.Binary) expression;
+            switch (binary.operator().type()) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return arithmetic(binary);
+                default:
+                    break;
             }
-            case MINUS_EQUAL: {
-                Integer distance = locals.get(expression.left());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.left()), (double) left - (double) right);
-                    return null;
-                }
-                return (double) left - (double) right;
+        } else if (expression instanceof Expression.Grouping) {
+            return evaluateDouble(((Expression.Grouping) expression).expression());
+        } else if (expression instanceof Index) {
+            var index = (Index) expression;
+            SchemaArray array = array(index.name(), index);
+            int i = arrayIndex(array, index.index());
+            if (array.elements().isDouble(i)) {
+                return array.elements().getDouble(i);
             }
-            case STAR_EQUAL: {
-                Integer distance = locals.get(expression.left());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.left()), (double) left * (double) right);
-                    return null;
+            throw new UnexpectedResult(array.getValue(i));
+        } else if (isMethodCall(expression)) {
+            var call = (Call) expression;
+            Object object = evaluate(((Attribute) call.callee()).object());
+            if (isListGet(call, object)) {
+                var list = (SchemaList) object;
+                Object index = evaluate(call.arguments().get(0));
+                int i = listIndex(list, index);
+                if (i != -1 && list.elements().isDouble(i)) {
+                    return list.elements().getDouble(i);
                 }
-                return (double) left * (double) right;
+                throw new UnexpectedResult(SchemaList.GET.call1(this, list, index));
             }
-            case SLASH_EQUAL: {
-                Integer distance = locals.get(expression.left());
-                if (distance != null) {
-                    environment.assign(distance, slots.get(expression.left()), (double) left / (double) right);
-                    return null;
+            throw new UnexpectedResult(callMethod(call, object));
+        }
+
+        Object value = evaluate(expression);
+        if (value instanceof Double) {
+            return (double) value;
+        }
+
+        throw new UnexpectedResult(value);
+    }
+
+    private double arithmetic(Expression.Binary expression) throws UnexpectedResult {
+        double left;
+        try {
+            left = evaluateDouble(expression.left());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, result.value(), evaluate(expression.right())));
+        }
+
+        double right;
+        try {
+            right = evaluateDouble(expression.right());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, left, result.value()));
+        }
+
+        switch (expression.operator().type()) {
+            case PLUS: return left + right;
+            case MINUS: return left - right;
+            case STAR: return left * right;
+            default: return left / right;
+        }
+    }
+
+    private boolean comparison(Expression.Binary expression) throws UnexpectedResult {
+        double left;
+        try {
+            left = evaluateDouble(expression.left());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, result.value(), evaluate(expression.right())));
+        }
+
+        double right;
+        try {
+            right = evaluateDouble(expression.right());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, left, result.value()));
+        }
+
+        switch (expression.operator().type()) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            default: return left <= right;
+        }
+    }
+
+    /*
+     * The integer counterpart of evaluateDouble. Division never takes this
+     * path, since two integers do not always divide to an integer.
+     */
+    private long evaluateLong(Expression expression) throws UnexpectedResult {
+        if (expression instanceof Expression.Binary && ((Expression.Binary) expression).specialization() == Expression.Binary.Specialization.INTEGER) {
+            var binary = (Expression.Binary) expression;
+            switch (binary.operator().type()) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                    return arithmeticLong(binary);
+                default:
+                    break;
+            }
+        } else if (expression instanceof Expression.Grouping) {
+            return evaluateLong(((Expression.Grouping) expression).expression());
+        } else if (expression instanceof Index) {
+            var index = (Index) expression;
+            SchemaArray array = array(index.name(), index);
+            int i = arrayIndex(array, index.index());
+            if (array.elements().isLong(i)) {
+                return array.elements().getLong(i);
+            }
+            throw new UnexpectedResult(array.getValue(i));
+        } else if (isMethodCall(expression)) {
+            var call = (Call) expression;
+            Object object = evaluate(((Attribute) call.callee()).object());
+            if (isListGet(call, object)) {
+                var list = (SchemaList) object;
+                Object index = evaluate(call.arguments().get(0));
+                int i = listIndex(list, index);
+                if (i != -1 && list.elements().isLong(i)) {
+                    return list.elements().getLong(i);
                 }
-                return (double) left / (double) right;
+                throw new UnexpectedResult(SchemaList.GET.call1(this, list, index));
+            }
+            throw new UnexpectedResult(callMethod(call, object));
+        }
+
+        Object value = evaluate(expression);
+        if (value instanceof Long) {
+            return (long) value;
+        }
+
+        throw new UnexpectedResult(value);
+    }
+
+    private long arithmeticLong(Expression.Binary expression) throws UnexpectedResult {
+        long left;
+        try {
+            left = evaluateLong(expression.left());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, result.value(), evaluate(expression.right())));
+        }
+
+        long right;
+        try {
+            right = evaluateLong(expression.right());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, left, result.value()));
+        }
+
+        try {
+            switch (expression.operator().type()) {
+                case PLUS: return Math.addExact(left, right);
+                case MINUS: return Math.subtractExact(left, right);
+                default: return Math.multiplyExact(left, right);
             }
+        } catch (ArithmeticException overflow) {
+            // the result no longer fits, so it is promoted to a double
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, left, right));
+        }
+    }
+
+    private boolean comparisonLong(Expression.Binary expression) throws UnexpectedResult {
+        long left;
+        try {
+            left = evaluateLong(expression.left());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, result.value(), evaluate(expression.right())));
+        }
+
+        long right;
+        try {
+            right = evaluateLong(expression.right());
+        } catch (UnexpectedResult result) {
+            expression.generic();
+            throw new UnexpectedResult(binary(expression, left, result.value()));
+        }
+
+        switch (expression.operator().type()) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            default: return left <= right;
+        }
+    }
+
+    /*
+     * Evaluates a loop or branch condition, comparing numbers without boxing
+     * the operands or the result.
+     */
+    private boolean evaluateCondition(Expression expression) {
+        if (expression instanceof Expression.Binary) {
+            var binary = (Expression.Binary) expression;
+            switch (binary.operator().type()) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    try {
+                        switch (binary.specialization()) {
+                            case INTEGER: return comparisonLong(binary);
+                            case DOUBLE: return comparison(binary);
+                            default: break;
+                        }
+                    } catch (UnexpectedResult result) {
+                        return predicate(result.value());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return predicate(evaluate(expression));
+    }
+
+    private static boolean isMethodCall(Expression expression) {
+        return expression instanceof Call && ((Call) expression).callee() instanceof Attribute;
+    }
+
+    /*
+     * Whether a call is get on a list, which the numeric paths read without
+     * boxing the element when it is held unboxed.
+     */
+    private boolean isListGet(Call call, Object object) {
+        return object instanceof SchemaList && call.arguments().size() == 1
+            && cachedBuiltin(object, ((Attribute) call.callee()).name(), call.cache()) == SchemaList.GET;
+    }
+
+    /*
+     * The element index get reads, or -1 when get itself has to report
+     * what is wrong with it.
+     */
+    private static int listIndex(SchemaList list, Object index) {
+        if (!(index instanceof Number)) {
+            return -1;
+        }
+
+        int i = ((Number) index).intValue();
+        return i >= 0 && i < list.elements().size() ? i : -1;
+    }
+
+    private Object binary(Expression.Binary expression, Object left, Object right) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case GREATER:       return Arithmetic.greater(operator, left, right);
+            case GREATER_EQUAL: return Arithmetic.greaterEqual(operator, left, right);
+            case LESS:          return Arithmetic.less(operator, left, right);
+            case LESS_EQUAL:    return Arithmetic.lessEqual(operator, left, right);
+            case BANG_EQUAL:    return !isEqual(left, right);
+            case EQUAL_EQUAL:   return isEqual(left, right);
+            case MINUS:         return Arithmetic.subtract(operator, left, right);
+            case PLUS:          return Arithmetic.add(operator, left, right);
+            case SLASH:         return Arithmetic.divide(operator, left, right);
+            case STAR:          return Arithmetic.multiply(operator, left, right);
+            case PLUS_EQUAL:    return compound(expression, Arithmetic.add(operator, left, right));
+            case MINUS_EQUAL:   return compound(expression, Arithmetic.subtract(operator, left, right));
+            case STAR_EQUAL:    return compound(expression, Arithmetic.multiply(operator, left, right));
+            case SLASH_EQUAL:   return compound(expression, Arithmetic.divide(operator, left, right));
             default:
                 throw new SchemaRuntimeError("unknown operator");
         }
     }
 
+    private Object compound(Expression.Binary expression, Object result) {
+        if (isLocalVariable(expression.left())) {
+            assignVariable((Variable) expression.left(), result);
+            return null;
+        }
+        return result;
+    }
+
     @Override
     public Void visit(Expr statement) {
         evaluate(statement.expression());
@@ -212,12 +509,14 @@ public class Interpreter implements Expression.Visitor<Object>,
     
     @Override
     public Void visit(Auto statement) {
+        predeclare(statement);
+
         Object value = null;
         if (statement.value() != null) {
             value = evaluate(statement.value());
         }
 
-        define(statement.name(), value);
+        define(statement, statement.name(), value);
         return null;
     }
 
@@ -232,40 +531,34 @@ public class Interpreter implements Expression.Visitor<Object>,
             }
         }
 
-        define(statement.name(), null);
+        predeclare(statement);
+        if (!statement.isLocal()) {
+            globals.define(statement.name().lexeme(), null);
+        }
 
         if (statement.parent() != null) {
-            environment = new Environment(environment);
-            define("parent", parent);
+            environment.assign(statement.parentSlot(), parent);
         }
 
-        var metaMethods = applyTraits(statement.traits());
+        // traits are evaluated and merged once, then shared by both tables
+        var traits = applyTraits(statement.traits());
+
+        var metaMethods = new HashMap<String, SchemaMethod>(traits);
         for (var method : statement.metaMethods()) {
-            SchemaFunction function = new SchemaFunction(method, environment, false);
+            SchemaFunction function = new SchemaFunction(method, capture(method.function()), false);
             metaMethods.put(method.name().lexeme(), function);
         }
 
         SchemaNode metaNode = new SchemaNode(null, (SchemaNode) parent, statement.name().lexeme() + ":metanode", metaMethods);
 
-        var methods = applyTraits(statement.traits());
+        var methods = new HashMap<String, SchemaMethod>(traits);
         for (var method : statement.methods()) {
-            SchemaFunction function = new SchemaFunction(method, environment, method.name().lexeme().equals("define"));
+            SchemaFunction function = new SchemaFunction(method, capture(method.function()), method.name().lexeme().equals("define"));
             methods.put(method.name().lexeme(), function);
         }
 
         SchemaNode node = new SchemaNode(metaNode, (SchemaNode) parent, statement.name().lexeme(),  methods);
-        
-        if (statement.parent() != null) {
-            environment = environment.enclosing();
-        }
-
-        Integer distance = locals.get(statement);
-        if (distance != null) {
-            environment.assign(distance, slots.get(statement), node);
-            return null;
-        }
-
-        globals.put(statement.name().lexeme(), node);
+        define(statement, statement.name(), node);
 
         return null;
     }
@@ -278,29 +571,25 @@ public class Interpreter implements Expression.Visitor<Object>,
     @Override
     public Object visit(Assign expression) {
         Object value = evaluate(expression.value());
-        Integer distance = locals.get(expression);
-        if (distance != null) {
-            environment.assign(distance, slots.get(expression), value);
-        } else {
-            if (globals.containsKey(expression.name().lexeme())) {
-                globals.put(expression.name().lexeme(), value);
-            } else {
-                throw new SchemaRuntimeError(expression.name(), "Undefined variable '" + expression.name().lexeme() + "'.");
-            }
-        }
-        
+        assignVariable(expression.name(), expression, value);
         return value;
     }
 
     @Override
     public Void visit(Block statement) {
-        executeBlock(statement.statements(), new Environment(environment));
+        // block locals live in the frame of the enclosing function
+        for (var inner : statement.statements()) {
+            execute(inner);
+            if (completion != Completion.NORMAL) {
+                break;
+            }
+        }
         return null;
     }
 
     @Override
     public Void visit(If statement) {
-        if (predicate(evaluate(statement.condition()))) {
+        if (evaluateCondition(statement.condition())) {
             execute(statement.thenBranch());
         } else if (statement.elseBranch() != null) {
             execute(statement.elseBranch());
@@ -324,19 +613,23 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Void visit(While statement) {
-        try {
-            while (predicate(evaluate(statement.condition()))) {
-                var stmt = statement.body();
+        while (evaluateCondition(statement.condition())) {
+            execute(statement.body());
 
-                // handle continue statements
-                if (stmt instanceof Continue) {
-                    //TODO: implement continue
+            if (completion != Completion.NORMAL) {
+                if (completion == Completion.RETURN) {
+                    break;
+                }
+                if (completion == Completion.BREAK) {
+                    completion = Completion.NORMAL;
+                    break;
                 }
+                completion = Completion.NORMAL;
+            }
 
-                execute(statement.body());
+            if (statement.increment() != null) {
+                evaluate(statement.increment());
             }
-        } catch (BreakException error) {
-            // do nothing
         }
 
         return null;
@@ -344,36 +637,174 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Object visit(Call expression) {
-        var callee = evaluate(expression.callee());
+        if (expression.callee() instanceof Attribute) {
+            return callMethod(expression, evaluate(((Attribute) expression.callee()).object()));
+        }
 
-        List<Object> arguments = new ArrayList<Object>();
-        for (Expression argument : expression.arguments()) {
-            arguments.add(evaluate(argument));
+        return call(expression, evaluate(expression.callee()));
+    }
+
+    /*
+     * Calls an attribute of an object that has already been evaluated,
+     * invoking cached methods on the receiver directly, without binding.
+     */
+    private Object callMethod(Call expression, Object object) {
+        var attribute = (Attribute) expression.callee();
+        var method = cachedMethod(object, attribute.name(), expression.cache());
+        if (method instanceof SchemaFunction && !method.isGetter()) {
+            return callFunction(expression, (SchemaFunction) method, (SchemaInstance) object);
+        }
+        if (method != null && !method.isGetter()) {
+            Object[] arguments = arguments(expression);
+            checkArity(expression, method, arguments.length);
+            return method.invoke(this, (SchemaInstance) object, arguments);
+        }
+        var builtin = cachedBuiltin(object, attribute.name(), expression.cache());
+        if (builtin != null) {
+            return callBuiltin(expression, builtin, (SchemaInstance) object);
+        }
+
+        return call(expression, attribute(object, attribute));
+    }
+
+    private Object call(Call expression, Object callee) {
+        if (callee instanceof SchemaFunction) {
+            return callFunction(expression, (SchemaFunction) callee, null);
         }
 
+        var arguments = expression.arguments();
+        try {
+            switch (arguments.size()) {
+                case 0: {
+                    return callable(expression, callee, 0).call0(this);
+                }
+                case 1: {
+                    Object a = evaluate(arguments.get(0));
+                    return callable(expression, callee, 1).call1(this, a);
+                }
+                case 2: {
+                    Object a = evaluate(arguments.get(0));
+                    Object b = evaluate(arguments.get(1));
+                    return callable(expression, callee, 2).call2(this, a, b);
+                }
+                case 3: {
+                    Object a = evaluate(arguments.get(0));
+                    Object b = evaluate(arguments.get(1));
+                    Object c = evaluate(arguments.get(2));
+                    return callable(expression, callee, 3).call3(this, a, b, c);
+                }
+                default: {
+                    Object[] values = arguments(expression);
+                    return callable(expression, callee, values.length).call(this, values);
+                }
+            }
+        } catch (SchemaRuntimeError error) {
+            // natives and bound builtins raise their errors without a token
+            throw error.at(expression.paren());
+        }
+    }
+
+    /*
+     * Evaluates the arguments straight into the frame of a user function.
+     * A receiver of null keeps the one the function may be bound to.
+     */
+    private Object callFunction(Call expression, SchemaFunction function, SchemaInstance receiver) {
+        var arguments = expression.arguments();
+        if (arguments.size() != function.arity()) {
+            Object[] values = arguments(expression);
+            checkArity(expression, function, values.length);
+        }
+
+        Environment frame = receiver == null ? function.frame() : function.frame(receiver);
+        for (int i = 0; i < arguments.size(); i++) {
+            function.argument(frame, i, evaluate(arguments.get(i)));
+        }
+
+        return function.execute(this, frame);
+    }
+
+    /*
+     * Calls a builtin method with the receiver passed through, so nothing is
+     * bound or allocated for the call itself.
+     */
+    private Object callBuiltin(Call expression, BuiltinMethod method, SchemaInstance receiver) {
+        var arguments = expression.arguments();
+        try {
+            switch (arguments.size()) {
+                case 0: {
+                    checkArity(expression, method, 0);
+                    return method.call0(this, receiver);
+                }
+                case 1: {
+                    Object a = evaluate(arguments.get(0));
+                    checkArity(expression, method, 1);
+                    return method.call1(this, receiver, a);
+                }
+                case 2: {
+                    Object a = evaluate(arguments.get(0));
+                    Object b = evaluate(arguments.get(1));
+                    checkArity(expression, method, 2);
+                    return method.call2(this, receiver, a, b);
+                }
+                default: {
+                    Object[] values = arguments(expression);
+                    checkArity(expression, method, values.length);
+                    return method.call(this, receiver, values);
+                }
+            }
+        } catch (SchemaRuntimeError error) {
+            // builtins raise their errors without a token; they are reported at the call
+            throw error.at(expression.paren());
+        }
+    }
+
+    private SchemaCallable callable(Call expression, Object callee, int count) {
         if (!(callee instanceof SchemaCallable)) {
             throw new SchemaRuntimeError(expression.paren(), "Can only call functions and classes.");
         }
 
         SchemaCallable function = (SchemaCallable) callee;
+        checkArity(expression, function, count);
+        return function;
+    }
 
-        if (arguments.size() != function.arity() && !function.isVariadic()) {
-            throw new SchemaRuntimeError(expression.paren(), "Function received " + arguments.size() + " arguments, but expects " + function.arity() + ".");
+    private Object[] arguments(Call expression) {
+        var arguments = expression.arguments();
+        if (arguments.isEmpty()) {
+            return SchemaCallable.NO_ARGUMENTS;
         }
 
-        return function.call(this, arguments);
+        Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(arguments.get(i));
+        }
+
+        return values;
+    }
+
+    private void checkArity(Call expression, SchemaCallable function, int count) {
+        if (count != function.arity() && !function.isVariadic()) {
+            throw new SchemaRuntimeError(expression.paren(), "Function received " + count + " arguments, but expects " + function.arity() + ".");
+        }
+    }
+
+    private void checkArity(Call expression, BuiltinMethod method, int count) {
+        if (!method.accepts(count)) {
+            throw new SchemaRuntimeError(expression.paren(), "Function received " + count + " arguments, but expects " + method.expected() + ".");
+        }
     }
 
     @Override
     public Void visit(Statement.Function statement) {
-        SchemaFunction function = new SchemaFunction(statement, environment, false);
-        define(statement.name(), function);
+        predeclare(statement);
+        SchemaFunction function = new SchemaFunction(statement, capture(statement.function()), false);
+        define(statement, statement.name(), function);
         return null;
     }
 
     @Override
     public Object visit(Expression.Function expression) {
-        return new SchemaFunction(new Statement.Function(null, expression), environment, false);
+        return new SchemaFunction(new Statement.Function(null, expression), capture(expression), false);
     }
 
     @Override
@@ -383,27 +814,49 @@ public class Interpreter implements Expression.Visitor<Object>,
             value = evaluate(statement.value());
         }
 
-        throw new com.temprovich.schema.throwables.ReturnException(value);
+        returnValue = value;
+        completion = Completion.RETURN;
+        return null;
     }
 
     @Override
     public Void visit(Break statement) {
-        throw new BreakException();
+        completion = Completion.BREAK;
+        return null;
     }
 
     @Override
     public Void visit(Continue statement) {
-        // handle in while statement
+        completion = Completion.CONTINUE;
         return null;
     }
 
     @Override
     public Object visit(Attribute expression) {
-        var object = evaluate(expression.object());
+        return attribute(evaluate(expression.object()), expression);
+    }
+
+    private Object attribute(Object object, Attribute expression) {
+        if (object instanceof SchemaInstance && ((SchemaInstance) object).node() != null) {
+            var instance = (SchemaInstance) object;
+            int index = expression.fields().indexOf(instance.shape(), expression.name().lexeme());
+            if (index != -1) {
+                return instance.field(index);
+            }
+
+            var method = expression.cache().lookup(instance.shape(), expression.name().lexeme());
+            if (method != null) {
+                if (method.isGetter()) {
+                    return method.invoke(this, instance, SchemaCallable.NO_ARGUMENTS);
+                }
+                return method.bind(instance);
+            }
+        }
+
         if (object instanceof SchemaInstance) {
             var result = ((SchemaInstance) object).get(expression.name());
-            if (result instanceof SchemaFunction && ((SchemaFunction) result).isGetter()) {
-                return ((SchemaFunction) result).call(this, null);
+            if (result instanceof SchemaMethod && ((SchemaMethod) result).isGetter()) {
+                return ((SchemaMethod) result).call0(this);
             }
 
             return result;
@@ -419,8 +872,14 @@ public class Interpreter implements Expression.Visitor<Object>,
             throw new SchemaRuntimeError(expression.name(), "Only instances have fields.");
         }
 
+        var instance = (SchemaInstance) object;
         Object value = evaluate(expression.value());
-        ((SchemaInstance) object).set(expression.name(), value);
+        if (instance.node() != null) {
+            expression.fields().store(instance, expression.name().lexeme(), value);
+        } else {
+            // builtin instances decide for themselves, and most refuse
+            instance.set(expression.name(), value);
+        }
         return value;
     }
 
@@ -431,12 +890,11 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Object visit(Parent expression) {
-        int distance = locals.get(expression);
-        SchemaNode parent = (SchemaNode) environment.fetch(distance, 0);
+        SchemaNode parent = (SchemaNode) fetchVariable(expression.keyword(), expression);
         
-        SchemaInstance instance = (SchemaInstance) environment.fetch(distance - 1, 0);
+        SchemaInstance instance = (SchemaInstance) fetchVariable(expression.keyword(), expression.self());
 
-        SchemaFunction method = parent.fetchMethod(expression.method().lexeme());
+        SchemaMethod method = parent.fetchMethod(expression.method().lexeme());
 
         if (method == null) {
             throw new SchemaRuntimeError(expression.method(), "Undefined property '" + expression.method().lexeme() + "'.");
@@ -447,33 +905,64 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Void visit(Trait statement) {
-        define(statement.name().lexeme(), null);
+        predeclare(statement);
+        if (!statement.isLocal()) {
+            globals.define(statement.name().lexeme(), null);
+        }
 
-        Map<String, SchemaFunction> methods = applyTraits(statement.traits());
+        Map<String, SchemaMethod> methods = applyTraits(statement.traits());
 
         for (var method : statement.methods()) {
             if (methods.containsKey(method.name().lexeme())) {
                 throw new SchemaRuntimeError(method.name(), "Method '" + method.name().lexeme() + "' already defined.");
             }
-            SchemaFunction function = new SchemaFunction(method, environment, false);
+            SchemaFunction function = new SchemaFunction(method, capture(method.function()), false);
             methods.put(method.name().lexeme(), function);
         }
 
         SchemaTrait trait = new SchemaTrait(statement.name(), methods);
+        define(statement, statement.name(), trait);
+
+        return null;
+    }
 
-        Integer distance = locals.get(statement);
-        if (distance != null) {
-            environment.assign(distance, slots.get(statement), trait);
+    /*
+     * Looks up a method of a node instance through an inline cache. Returns
+     * null when the attribute is not a method: a field shadowing it, a builtin
+     * instance, or no such method at all.
+     */
+    private SchemaMethod cachedMethod(Object object, Token name, InlineCache cache) {
+        if (!(object instanceof SchemaInstance)) {
             return null;
         }
 
-        globals.put(statement.name().lexeme(), trait);
+        var instance = (SchemaInstance) object;
+        if (instance.node() == null) {
+            return null;
+        }
 
-        return null;
+        return cache.lookup(instance.shape(), name.lexeme());
+    }
+
+    /*
+     * Looks up a method of a builtin instance through the call site's cache.
+     * Returns null for anything else.
+     */
+    private BuiltinMethod cachedBuiltin(Object object, Token name, InlineCache cache) {
+        if (!(object instanceof SchemaInstance)) {
+            return null;
+        }
+
+        var instance = (SchemaInstance) object;
+        if (instance.node() != null) {
+            return null;
+        }
+
+        return cache.builtin(instance, name.lexeme());
     }
 
-    private Map<String, SchemaFunction> applyTraits(List<Expression> traits) {
-        Map<String, SchemaFunction> methods = new HashMap<String, SchemaFunction>();
+    private Map<String, SchemaMethod> applyTraits(List<Expression> traits) {
+        Map<String, SchemaMethod> methods = new HashMap<String, SchemaMethod>();
 
         for (Expression traitExpression : traits) {
             Object traitObject = evaluate(traitExpression);
@@ -497,32 +986,37 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Object visit(Index expression) {
-        SchemaArray array;
-        Integer distance = locals.get(expression);
-        if (distance != null) {
-            array = (SchemaArray) environment.fetch(distance, slots.get(expression));
-        } else {
-            array = (SchemaArray) globals.get(expression.name().lexeme());
+        SchemaArray array = array(expression.name(), expression);
+        return array.getValue(arrayIndex(array, expression.index()));
+    }
+
+    private SchemaArray array(Token name, Expression.Resolvable expression) {
+        Object value = fetchVariable(name, expression);
+        if (!(value instanceof SchemaArray)) {
+            throw new SchemaRuntimeError(name, "Only arrays can be indexed.");
         }
 
-        Object index = evaluate(expression.index());
-        if (!(index instanceof Double)) {
+        return (SchemaArray) value;
+    }
+
+    private int arrayIndex(SchemaArray array, Expression expression) {
+        Object index = evaluate(expression);
+        if (!Arithmetic.isNumber(index)) {
             throw new SchemaRuntimeError("Array index must be a number.");
         }
 
-        int i = ((Double) index).intValue();
+        int i = Arithmetic.toIndex(index);
 
         if (i < 0 || i >= array.length()) {
             throw new SchemaRuntimeError("Array index out of bounds.");
         }
 
-        return array.getValue(i);
+        return i;
     }
 
     @Override
     public Object visit(IndexGet expression) {
-        Double value = (Double) evaluate(expression.size());
-        int length = value.intValue();
+        int length = Arithmetic.toIndex(evaluate(expression.size()));
         if (length < 0) {
             throw new SchemaRuntimeError("Array size must be a positive number.");
         }
@@ -531,45 +1025,56 @@ public class Interpreter implements Expression.Visitor<Object>,
 
     @Override
     public Object visit(IndexSet expression) {
-        SchemaArray array;
-        Integer distance = locals.get(expression);
-        if (distance != null) {
-            array = (SchemaArray) environment.fetch(distance, slots.get(expression));
-        } else {
-            array = (SchemaArray) globals.get(expression.name().lexeme());
-        }
-        Object index = evaluate(expression.index());
-        if (!(index instanceof Double)) {
-            throw new SchemaRuntimeError("Array index must be a number.");
-        }
-
-        int i = ((Double) index).intValue();
-        
-        if (i < 0 || i >= array.length()) {
-            throw new SchemaRuntimeError("Array index out of bounds.");
-        }
-
+        SchemaArray array = array(expression.name(), expression);
+        int i = arrayIndex(array, expression.index());
         Object value = evaluate(expression.value());
         array.setValue(i, value);
         return value;
     }
 
-    public void resolve(Expression expression, int depth, int slot) {
-        locals.put(expression, depth);
-        slots.put(expression, slot);
-    }
-
-    public void executeBlock(List<Statement> statements, Environment environment) {
-        Environment previous = this.environment;
+    /*
+     * Runs a function body in its own frame and returns the value of the
+     * return statement that ended it, or null.
+     */
+    public Object executeFunction(Expression.Function function, Environment environment) {
+        Environment previous = enter(environment);
         try {
-            this.environment = environment;
-
-            for (var statement : statements) {
+            for (var statement : function.body()) {
                 execute(statement);
+                if (completion != Completion.NORMAL) {
+                    break;
+                }
             }
         } finally {
-            this.environment = previous;
+            enter(previous);
         }
+
+        if (completion == Completion.NORMAL) {
+            return null;
+        }
+
+        Object value = returnValue;
+        completion = Completion.NORMAL;
+        returnValue = null;
+        return value;
+    }
+
+    /*
+     * Called once a function has become hot. Returns code to run its body
+     * with from then on, or null to keep interpreting it; the tree walker
+     * compiles nothing.
+     */
+    public CompiledBody compile(Expression.Function function) {
+        return null;
+    }
+
+    /*
+     * Makes a frame current for the visitors and returns the one it replaces.
+     */
+    protected Environment enter(Environment frame) {
+        Environment previous = environment;
+        environment = frame;
+        return previous;
     }
 
     private void execute(Statement statement) {
@@ -580,65 +1085,91 @@ public class Interpreter implements Expression.Visitor<Object>,
         return expression.accept(this);
     }
 
-    private void define(Token name, Object value) {
-        if (environment != null) {
-            environment.define(value);
-        } else {
-            globals.put(name.lexeme(), value);
+    /*
+     * A boxed local gets its Cell before the initializer runs, so closures
+     * created by the initializer (a recursive function, say) share it.
+     */
+    private void predeclare(Statement.Declaration declaration) {
+        if (declaration.isLocal() && declaration.isBoxed()) {
+            environment.assign(declaration.slot(), new Cell(null));
         }
     }
 
-    private void define(String name, Object value) {
-        if (environment != null) {
-            environment.define(value);
+    private void define(Statement.Declaration declaration, Token name, Object value) {
+        if (!declaration.isLocal()) {
+            globals.define(name.lexeme(), value);
+        } else if (declaration.isBoxed()) {
+            ((Cell) environment.fetch(declaration.slot())).value = value;
         } else {
-            globals.put(name, value);
+            environment.assign(declaration.slot(), value);
         }
     }
 
-    private Object fetchVariable(Token name, Expression expression) {
-        Integer distance = locals.get(expression);
+    /*
+     * Copies the variables a function captures out of the current frame. A
+     * captured Cell is copied by reference, so it stays shared.
+     */
+    private Object[] capture(Expression.Function function) {
+        var captures = function.captures();
+        Object[] upvalues = new Object[captures.length];
+        for (int i = 0; i < captures.length; i++) {
+            var capture = captures[i];
+            upvalues[i] = capture.local() ? environment.fetch(capture.index()) : environment.upvalue(capture.index());
+        }
+
+        return upvalues;
+    }
+
+    private Object fetchVariable(Token name, Expression.Resolvable expression) {
+        var access = expression.access();
+        if (access == Expression.Resolvable.Access.LOCAL) {
+            return environment.fetch(expression.slot());
+        }
 
-        if (distance != null) {
-            return environment.fetch(distance, slots.get(expression));
+        switch (access) {
+            case LOCAL_CELL: return ((Cell) environment.fetch(expression.slot())).value;
+            case UPVALUE: return environment.upvalue(expression.slot());
+            case UPVALUE_CELL: return ((Cell) environment.upvalue(expression.slot())).value;
+            default: break;
         }
 
-        if (globals.containsKey(name.lexeme())) {
-            return globals.get(name.lexeme());
+        Object value = globals.fetch(expression.slot());
+        if (value != Globals.UNDEFINED) {
+            return value;
         }
 
         throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
     }
 
-    private boolean predicate(Object obj) {
-        if (obj == null) {
-            return false;
-        }
-        if (obj instanceof Boolean) {
-            return (boolean) obj;
-        }
-        if (obj instanceof Double) {
-            return (double) obj != 0;
-        }
-        return true;
+    private void assignVariable(Variable variable, Object value) {
+        assignVariable(variable.name(), variable, value);
     }
 
-    public boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) {
-            return true;
+    private void assignVariable(Token name, Expression.Resolvable expression, Object value) {
+        switch (expression.access()) {
+            case LOCAL: environment.assign(expression.slot(), value); return;
+            case LOCAL_CELL: ((Cell) environment.fetch(expression.slot())).value = value; return;
+            case UPVALUE_CELL: ((Cell) environment.upvalue(expression.slot())).value = value; return;
+            default: break;
         }
-        if (a == null) {
-            return false;
+
+        if (!globals.isDefined(expression.slot())) {
+            throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
         }
-        return a.equals(b);
+
+        globals.store(expression.slot(), value);
     }
 
-    private void validateArithmeticExpression(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) {
-            return;
-        }
-        
-        throw new SchemaRuntimeError(operator, "Malformed expression detected: attempted to operate on " + left.getClass().getName() + ", " + right.getClass().getName() + " with operator " + operator.type());
+    private boolean isLocalVariable(Expression expression) {
+        return expression instanceof Variable && ((Variable) expression).access() != Expression.Resolvable.Access.GLOBAL;
+    }
+
+    private boolean predicate(Object obj) {
+        return Arithmetic.isTruthy(obj);
+    }
+
+    public boolean isEqual(Object a, Object b) {
+        return Arithmetic.isEqual(a, b);
     }
 
     public static String stringify(Object value) {
@@ -656,4 +1187,24 @@ public class Interpreter implements Expression.Visitor<Object>,
 
         return value.toString();
     }
+
+    /*
+     * Carries the value of an expression that was expected to be a number but
+     * was not. Only thrown off the fast path, so it skips the stack trace.
+     */
+    private static final class UnexpectedResult extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final Object value;
+
+        private UnexpectedResult(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+
+        private Object value() {
+            return value;
+        }
+    }
+
 }
@@ -3,18 +3,44 @@ package com.temprovich.schema;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 import com.temprovich.schema.error.SchemaParseError;
 import com.temprovich.schema.lexer.Token;
+import com.temprovich.schema.lexer.TokenStream;
 
 public class Parser {
     
-    private final List<Token> tokens;
+    private final TokenStream tokens;
+    private final int limit;
+    private final boolean lazy;
     private int current = 0;
     private int loopDepth = 0;
+    private int blockDepth = 0;
+    private boolean failed = false;
 
-    public Parser(List<Token> tokens) {
+    public Parser(TokenStream tokens) {
+        this(tokens, false);
+    }
+
+    /*
+     * A lazy parser only matches braces over the bodies of top level
+     * functions and of node and trait methods, and leaves each to be parsed
+     * when the function is first called. Syntax errors in those bodies are
+     * then only reported at that point.
+     */
+    public Parser(TokenStream tokens, boolean lazy) {
+        this(tokens, 0, tokens.size() - 1, lazy);
+    }
+
+    /*
+     * Parses the tokens before the limit, as if the stream ended there.
+     */
+    private Parser(TokenStream tokens, int start, int limit, boolean lazy) {
         this.tokens = tokens;
+        this.current = start;
+        this.limit = limit;
+        this.lazy = lazy;
     }
 
     public List<Statement> parse() {
@@ -106,10 +132,10 @@ public class Parser {
 
     private Statement.Function function(String type) {
         Token name = consume(Token.Type.IDENTIFIER, "Expect " + type + " name.");
-        return new Statement.Function(name, functionBody(type));
+        return new Statement.Function(name, functionBody(type, lazy && blockDepth == 0));
     }
 
-    private Expression.Function functionBody(String type) {
+    private Expression.Function functionBody(String type, boolean deferred) {
         List<Token> parameters = null;
         
         if (!type.equals("method") || check(Token.Type.LEFT_PAREN)) {
@@ -128,10 +154,62 @@ public class Parser {
         }
 
         consume(Token.Type.LEFT_BRACE, "Expect '{' before " + type + " body.");
+        if (deferred) {
+            return new Expression.Function(parameters, deferBody());
+        }
+
         List<Statement> body = block();
         return new Expression.Function(parameters, body);
     }
 
+    /*
+     * Skips to the brace closing the body just opened, and returns what
+     * parses the tokens in between on demand.
+     */
+    private Supplier<List<Statement>> deferBody() {
+        Token brace = previous();
+        int start = current;
+        int depth = 1;
+        while (!atEnd()) {
+            Token.Type type = type(current++);
+            if (type == Token.Type.LEFT_BRACE) {
+                depth++;
+            } else if (type == Token.Type.RIGHT_BRACE && --depth == 0) {
+                break;
+            }
+        }
+        if (depth > 0) {
+            throw error(peek(), "Expect '}' after block.");
+        }
+
+        // limited to the body, so error recovery cannot run past its closing brace
+        int end = current - 1;
+        return () -> {
+            Parser parser = new Parser(tokens, start, end, false);
+            List<Statement> body = parser.body();
+            if (parser.failed) {
+                // the syntax errors are reported as they are found
+                throw new SchemaParseError(brace, "Function body does not parse.");
+            }
+            return body;
+        };
+    }
+
+    /*
+     * Parses the statements of a deferred body, up to its closing brace.
+     */
+    private List<Statement> body() {
+        List<Statement> statements = new ArrayList<Statement>();
+
+        blockDepth++;
+        while (!atEnd()) {
+            statements.add(declaration());
+        }
+        blockDepth--;
+
+        return statements;
+    }
+
     private Statement autoDeclaration() {
         Token name = consume(Token.Type.IDENTIFIER, "Expected name after 'auto'");
 
@@ -205,20 +283,11 @@ public class Parser {
         try {
             loopDepth++;
             Statement body = statement();
-
-            if (increment != null) {
-                body = new Statement.Block(
-                    Arrays.asList(
-                        body,
-                        new Statement.Expr(increment)
-                    )
-                );
-            }
     
             if (condition == null) {
                 condition = new Expression.Literal(true);
             }
-            body = new Statement.While(condition, body);
+            body = new Statement.While(condition, body, increment);
     
             if (initializer != null) {
                 body = new Statement.Block(
@@ -291,9 +360,11 @@ public class Parser {
     private List<Statement> block() {
         List<Statement> statements = new ArrayList<Statement>();
 
+        blockDepth++;
         while (!check(Token.Type.RIGHT_BRACE) && !atEnd()) {
             statements.add(declaration());
         }
+        blockDepth--;
 
         consume(Token.Type.RIGHT_BRACE, "Expect '}' after block.");
         return statements;
@@ -459,7 +530,7 @@ public class Parser {
             return new Expression.Literal(null);
         }
         if (match(Token.Type.NUMBER, Token.Type.STRING)) {
-            return new Expression.Literal(previous().literal());
+            return new Expression.Literal(tokens.literal(current - 1));
         }
         if (match(Token.Type.PARENT)) {
             Token keyword = previous();
@@ -471,8 +542,7 @@ public class Parser {
             return new Expression.Self(previous());
         }
         if (match(Token.Type.IDENTIFIER)) {
-            Token next = peek();
-            if (next.type() == Token.Type.LEFT_SQUARE_BRACKET) {
+            if (type(current) == Token.Type.LEFT_SQUARE_BRACKET) {
                 Token name = previous();
                 consume(Token.Type.LEFT_SQUARE_BRACKET, "Expect '[' after identifier.");
                 Expression index = expression();
@@ -489,7 +559,7 @@ public class Parser {
             return new Expression.IndexGet(size);
         }
         if (match(Token.Type.FUNCTION)) {
-            return functionBody("function");
+            return functionBody("function", false);
         }
         if (match(Token.Type.LEFT_PAREN)) {
             Expression expression = expression();
@@ -504,11 +574,11 @@ public class Parser {
         advance();
 
         while (!atEnd()) {
-            if (previous().type() == Token.Type.SEMICOLON) {
+            if (type(current - 1) == Token.Type.SEMICOLON) {
                 return;
             }
 
-            switch (peek().type()) {
+            switch (type(current)) {
                 case NODE:
                 case FUNCTION:
                 case AUTO:
@@ -525,13 +595,15 @@ public class Parser {
 
     private Token consume(Token.Type type, String message) {
         if (check(type)) {
-            return advance();
+            advance();
+            return previous();
         }
         
         throw error(peek(), message);
     }
 
     private SchemaParseError error(Token token, String message) {
+        failed = true;
         Schema.reporter.error(token, message);
         return new SchemaParseError(token, message);
     }
@@ -552,36 +624,40 @@ public class Parser {
             return false;
         }
         
-        return peek().type() == type;
+        return type(current) == type;
     }
 
     private boolean checkNext(Token.Type type) {
         if (atEnd()) {
             return false;
         }
-        if (tokens.get(current + 1).type() == Token.Type.EOF) {
+        if (type(current + 1) == Token.Type.EOF) {
             return false;
         }
-        return tokens.get(current + 1).type() == type;
+        return type(current + 1) == type;
     }
 
-    private Token advance() {
+    private void advance() {
         if (!atEnd()) {
             current++;
         }
-        
-        return previous();
     }
 
     private boolean atEnd() {
-        return peek().type() == Token.Type.EOF;
+        return type(current) == Token.Type.EOF;
+    }
+
+    private Token.Type type(int index) {
+        return index < limit ? tokens.type(index) : Token.Type.EOF;
     }
 
+    // tokens are only built for the parser to keep; the stream holds no objects
     private Token peek() {
-        return tokens.get(current);
+        // at the limit: the end of the file, or the brace closing a deferred body
+        return tokens.token(Math.min(current, limit));
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 }
@@ -0,0 +1,10 @@
+package com.temprovich.schema;
+
+import java.util.List;
+
+/*
+ * A script after the front end: resolved statements, the size of the
+ * top-level frame, and the global names in cell order, which a fresh
+ * Globals has to be given in the same order before the statements run.
+ */
+public record Program(List<Statement> statements, int frameSize, String[] globals) {}
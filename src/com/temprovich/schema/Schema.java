@@ -6,12 +6,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
+import com.temprovich.schema.aot.AotCompiler;
+import com.temprovich.schema.aot.ProgramCache;
+import com.temprovich.schema.closure.ClosureInterpreter;
+import com.temprovich.schema.compiler.VirtualMachine;
 import com.temprovich.schema.error.SchemaError;
+import com.temprovich.schema.jit.JitInterpreter;
 import com.temprovich.schema.lexer.Lexer;
-import com.temprovich.schema.lexer.Token;
+import com.temprovich.schema.lexer.TokenStream;
 import com.temprovich.schema.module.ModuleProcessor;
 import com.temprovich.schema.report.ErrorReporter;
 import com.temprovich.schema.report.ReportLibrary;
+import com.temprovich.schema.specialize.SpecializingInterpreter;
 
 /*
  * https://timothya.com/pdfs/crafting-interpreters.pdf
@@ -20,6 +26,50 @@ import com.temprovich.schema.report.ReportLibrary;
 public class Schema {
 
     public static final String[] EXTENSIONS = { ".sch", ".schema" };
+
+    public static final String ENGINE_FLAG = "--engine=";
+    public static final String CACHE_FLAG = "--cache=";
+    public static final String STRICT_PARSE_FLAG = "--strict-parse";
+
+    public static final String COMPILE_COMMAND = "compile";
+    public static final String OUTPUT_FLAG = "-o";
+
+    /*
+     * Execution engines selectable with --engine=<name>
+     */
+    public enum Engine {
+        TREE("tree"),
+        SPECIALIZING("ast"),
+        CLOSURE("closure"),
+        JIT("jit"),
+        VM("vm");
+
+        private final String flag;
+
+        private Engine(String flag) {
+            this.flag = flag;
+        }
+
+        public static Engine of(String flag) {
+            for (Engine engine : values()) {
+                if (engine.flag.equals(flag)) {
+                    return engine;
+                }
+            }
+            return null;
+        }
+
+        public static String names() {
+            StringBuilder sb = new StringBuilder();
+            for (Engine engine : values()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(engine.flag);
+            }
+            return sb.toString();
+        }
+    }
     
     /*
      * Terminal exit codes
@@ -31,19 +81,73 @@ public class Schema {
     public static final int EXIT_CODE__ABORT = 75;
 
     public static final ErrorReporter reporter = ErrorReporter.fetch();
-    private static final Interpreter interpreter = new Interpreter();
 
     private Schema () {
         throw new AssertionError("No instances of Schema");
     }
 
     public static void main(String[] args) throws IOException {
-        int mode = args.length;
+        if (args.length > 0 && args[0].equals(COMPILE_COMMAND)) {
+            compile(args);
+            return;
+        }
+
+        Engine engine = Engine.TREE;
+        ProgramCache cache = null;
+        boolean strict = false;
+        String script = null;
 
-        switch (mode) {
-            case 01 -> runScript(validate(args[0]));
-            default -> terminate(ReportLibrary.MALFORMED_RUNTIME_ARGS, EXIT_CODE__MALFORMED_ARGS);
+        for (String arg : args) {
+            if (arg.startsWith(ENGINE_FLAG)) {
+                String name = arg.substring(ENGINE_FLAG.length());
+                engine = Engine.of(name);
+                if (engine == null) {
+                    terminate(ErrorReporter.format(ReportLibrary.UNKNOWN_ENGINE, name, Engine.names()), EXIT_CODE__MALFORMED_ARGS);
+                }
+            } else if (arg.startsWith(CACHE_FLAG)) {
+                cache = new ProgramCache(Paths.get(arg.substring(CACHE_FLAG.length())));
+            } else if (arg.equals(STRICT_PARSE_FLAG)) {
+                strict = true;
+            } else if (script == null) {
+                script = arg;
+            } else {
+                terminate(ReportLibrary.MALFORMED_RUNTIME_ARGS, EXIT_CODE__MALFORMED_ARGS);
+            }
+        }
+
+        if (script == null) {
+            terminate(ReportLibrary.MALFORMED_RUNTIME_ARGS, EXIT_CODE__MALFORMED_ARGS);
         }
+
+        runScript(validate(script), engine, cache, strict);
+    }
+
+    /*
+     * schema compile <script> [-o <jar>]
+     */
+    private static void compile(String[] args) throws IOException {
+        String script = null;
+        String output = null;
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(OUTPUT_FLAG) && i + 1 < args.length && output == null) {
+                output = args[++i];
+            } else if (script == null) {
+                script = args[i];
+            } else {
+                terminate(ReportLibrary.MALFORMED_RUNTIME_ARGS, EXIT_CODE__MALFORMED_ARGS);
+            }
+        }
+
+        if (script == null) {
+            terminate(ReportLibrary.MALFORMED_RUNTIME_ARGS, EXIT_CODE__MALFORMED_ARGS);
+        }
+        if (output == null) {
+            output = script.substring(0, script.lastIndexOf('.')) + ".jar";
+        }
+
+        AotCompiler.compile(validate(script), Paths.get(output));
+        exit();
     }
 
     private static String validate(String fileName) {
@@ -73,11 +177,17 @@ public class Schema {
         return fileName;
     }
 
-    private static void runScript(String path) throws IOException {
+    private static void runScript(String path, Engine engine, ProgramCache cache, boolean strict) throws IOException {
         ModuleProcessor processor = new ModuleProcessor(path);
         String source = processor.process();
-        run(source);
+        run(source, engine, cache, strict);
+        exit();
+    }
 
+    /*
+     * Ends the process with the exit code for how the run went.
+     */
+    public static void exit() {
         if (reporter.hadError()) {
             System.exit(EXIT_CODE__ERROR);
         }
@@ -88,24 +198,55 @@ public class Schema {
         System.exit(EXIT_CODE__SUCCESS);
     }
 
-    private static void run(String src) {
+    private static void run(String src, Engine engine, ProgramCache cache, boolean strict) {
+        ExecutionEngine executor = switch (engine) {
+            case TREE -> new Interpreter();
+            case SPECIALIZING -> new SpecializingInterpreter();
+            case CLOSURE -> new ClosureInterpreter();
+            case JIT -> new JitInterpreter();
+            case VM -> new VirtualMachine();
+        };
+
+        Program program = cache == null ? null : cache.load(src, executor.globals());
+        if (program == null) {
+            // a cache entry and the VM's compiler need every body anyway
+            boolean lazy = !strict && cache == null && engine != Engine.VM;
+            program = parse(src, executor.globals(), lazy);
+            if (program == null) {
+                return;
+            }
+            if (cache != null) {
+                cache.store(src, program);
+            }
+        }
+
+        executor.interpret(program.statements(), program.frameSize());
+    }
+
+    /*
+     * Lexes, parses and resolves a script against the globals it will run
+     * with. Returns null if any of it reported an error. A lazy parse leaves
+     * the bodies of top level functions and methods until their first call,
+     * and any error in them with it.
+     */
+    public static Program parse(String src, Globals globals, boolean lazy) {
         Lexer lexer = new Lexer(src);
-        List<Token> tokens = lexer.tokenize();
-        Parser parser = new Parser(tokens);
+        TokenStream tokens = lexer.tokenize();
+        Parser parser = new Parser(tokens, lazy);
         List<Statement> statements = parser.parse();
 
         if (reporter.hadError()) {
-            return;
+            return null;
         }
 
-        SemanticResolver resolver = new SemanticResolver(interpreter);
+        SemanticResolver resolver = new SemanticResolver(globals);
         resolver.resolve(statements);
 
         if (reporter.hadError()) {
-            return;
+            return null;
         }
 
-        interpreter.interpret(statements);
+        return new Program(statements, resolver.frameSize(), globals.names());
     }
 
     private static void terminate(String message, int code) {
@@ -2,15 +2,15 @@ package com.temprovich.schema;
 
 import java.util.Map;
 
-import com.temprovich.schema.instance.SchemaFunction;
+import com.temprovich.schema.instance.SchemaMethod;
 import com.temprovich.schema.lexer.Token;
 
 public class SchemaTrait {
     
     private final Token name;
-    private final Map<String, SchemaFunction> methods;
+    private final Map<String, SchemaMethod> methods;
 
-    public SchemaTrait(Token name, Map<String, SchemaFunction> methods) {
+    public SchemaTrait(Token name, Map<String, SchemaMethod> methods) {
         this.name = name;
         this.methods = methods;
     }
@@ -19,7 +19,7 @@ public class SchemaTrait {
         return name;
     }
 
-    public Map<String, SchemaFunction> methods() {
+    public Map<String, SchemaMethod> methods() {
         return methods;
     }
 
@@ -1,5 +1,6 @@
 package com.temprovich.schema;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import com.temprovich.schema.Expression.Parent;
 import com.temprovich.schema.Expression.Self;
 import com.temprovich.schema.Expression.Set;
 import com.temprovich.schema.Statement.Trait;
+import com.temprovich.schema.error.SchemaRuntimeError;
 import com.temprovich.schema.lexer.Token;
 
 public class SemanticResolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
@@ -24,13 +26,25 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
         METHOD;
     }
 
-    private final Interpreter interpreter;
     FunctionType currentFunction = FunctionType.NONE;
-    private final Stack<Map<String, Variable>> scopes;
+    private final Globals globals;
+    private final Stack<Scope> scopes;
+    private final FunctionScope script;
+    private FunctionScope function;
     
-    public SemanticResolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
-        this.scopes = new Stack<Map<String, Variable>>();
+    public SemanticResolver(Globals globals) {
+        this.globals = globals;
+        this.scopes = new Stack<Scope>();
+        this.script = new FunctionScope(null);
+        this.function = script;
+    }
+
+    /*
+     * Number of slots needed by the top-level frame, which holds the locals
+     * of blocks outside of any function.
+     */
+    public int frameSize() {
+        return script.frameSize;
     }
 
     @Override
@@ -47,6 +61,9 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
     @Override
     public Void visit(Expression.Unary statement) {
         resolve(statement.right());
+        if (isCompound(statement.operator())) {
+            mutate(statement.right());
+        }
         return null;
     }
 
@@ -54,6 +71,9 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
     public Void visit(Expression.Binary statement) {
         resolve(statement.left());
         resolve(statement.right());
+        if (isCompound(statement.operator())) {
+            mutate(statement.left());
+        }
         return null;
     }
 
@@ -71,15 +91,18 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
     @Override
     public Void visit(Expression.Assign statement) {
         resolve(statement.value());
-        resolveLocal(statement, statement.name());
+        Variable variable = resolveLocal(statement, statement.name());
+        if (variable != null) {
+            variable.mutated = true;
+        }
         return null;
     }
 
     @Override
     public Void visit(Expression.Variable statement) {
         if (!scopes.isEmpty() &&
-            scopes.peek().containsKey(statement.name().lexeme()) &&
-            !scopes.peek().get(statement.name().lexeme()).defined) {
+            scopes.peek().variables.containsKey(statement.name().lexeme()) &&
+            !scopes.peek().variables.get(statement.name().lexeme()).defined) {
                 Schema.reporter.error(statement.name(), "Cannot read local variable in its own initializer.");
         }
 
@@ -111,9 +134,10 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
 
     @Override
     public Void visit(Statement.Function statement) {
-        declare(statement.name());
+        declare(statement, statement.name());
         define(statement.name());
-        resolveFunction(statement.function(), FunctionType.FUNCTION);
+        resolveFunction(statement.function(), FunctionType.FUNCTION, statement.name());
+        initialize(statement.name());
         return null;
     }
 
@@ -135,11 +159,12 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
 
     @Override
     public Void visit(Statement.Auto statement) {
-        declare(statement.name());
+        declare(statement, statement.name());
         if (statement.value() != null) {
             resolve(statement.value());
         }
         define(statement.name());
+        initialize(statement.name());
 
         return null;
     }
@@ -148,6 +173,9 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
     public Void visit(Statement.While statement) {
         resolve(statement.condition());
         resolve(statement.body());
+        if (statement.increment() != null) {
+            resolve(statement.increment());
+        }
         return null;
     }
 
@@ -182,7 +210,7 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
         NodeType enclosingNode = currentNodeType;
         currentNodeType = NodeType.NODE;
 
-        declare(statement.name());
+        declare(statement, statement.name());
         define(statement.name());
 
         var parent = statement.parent();
@@ -198,33 +226,33 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
 
         if (statement.parent() != null) {
             beginScope();
-            scopes.peek().put("parent", new Variable(0));
+            Variable variable = declare("parent");
+            variable.initialized = true;
+            statement.parentSlot(variable.slot);
         }
 
-        beginScope();
-        scopes.peek().put("self", new Variable(0));
+        for (var trait : statement.traits()) {
+            resolve(trait);
+        }
+
+        // meta methods are bound to the node itself
+        for (var method : statement.metaMethods()) {
+            resolveFunction(method.function(), FunctionType.METHOD, method.name());
+        }
 
         for (var method : statement.methods()) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name().lexeme().equals("define")) {
                 declaration = FunctionType.DEFINITION;
             }
-            resolveFunction(method.function(), declaration);
+            resolveFunction(method.function(), declaration, method.name());
         }
 
-        for (var method : statement.metaMethods()) {
-            beginScope();
-            scopes.peek().put("self", new Variable(0));
-            resolveFunction(method.function(), FunctionType.METHOD);
-            endScope();
-        }
-
-        endScope();
-
         if (statement.parent() != null) {
             endScope();
         }
 
+        initialize(statement.name());
         currentNodeType = enclosingNode;
         return null;
     }
@@ -269,12 +297,13 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
         }
         
         resolveLocal(expression, expression.keyword());
+        resolveLocal(expression.self(), "self");
         return null;
     }
 
     @Override
     public Void visit(Trait statement) {
-        declare(statement.name());
+        declare(statement, statement.name());
         define(statement.name());
 
         NodeType enclosingClass = currentNodeType;
@@ -284,23 +313,19 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
             resolve(trait);
         }
 
-        beginScope();
-        scopes.peek().put("self", new Variable(0));
-
         for (var method : statement.methods()) {
             FunctionType declaration = FunctionType.METHOD;
-            resolveFunction(method.function(), declaration);
+            resolveFunction(method.function(), declaration, method.name());
         }
 
-        endScope();
-
+        initialize(statement.name());
         currentNodeType = enclosingClass;
         return null;
     }
 
     @Override
     public Void visit(Index expression) {
-        declare(expression.name());
+        resolveLocal(expression, expression.name());
         resolve(expression.index());
         return null;
     }
@@ -313,7 +338,7 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
 
     @Override
     public Void visit(IndexSet expression) {
-        declare(expression.name());
+        resolveLocal(expression, expression.name());
         resolve(expression.index());
         resolve(expression.value());
         return null;
@@ -343,24 +368,35 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
     }
 
     public void beginScope() {
-        scopes.push(new HashMap<String, Variable>());
+        scopes.push(new Scope(function));
     }
 
     public void endScope() {
-        scopes.pop();
+        Scope scope = scopes.pop();
+        for (var variable : scope.variables.values()) {
+            variable.settle();
+        }
+        function.next = scope.start;
     }
 
-    private void declare(Token name) {
+    private void declare(Statement.Declaration declaration, Token name) {
         if (scopes.isEmpty()) {
             return;
         }
 
-        var scope = scopes.peek();
-        if (scope.containsKey(name.lexeme())) {
+        if (scopes.peek().variables.containsKey(name.lexeme())) {
             Schema.reporter.error(name, "Variable with this name already declared in this scope.");
         }
 
-        scope.put(name.lexeme(), new Variable(scope.size()));
+        Variable variable = declare(name.lexeme());
+        variable.declaration = declaration;
+        declaration.declare(variable.slot);
+    }
+
+    private Variable declare(String name) {
+        Variable variable = new Variable(function, function.allocate());
+        scopes.peek().variables.put(name, variable);
+        return variable;
     }
 
     private void define(Token name) {
@@ -368,42 +404,237 @@ public class SemanticResolver implements Expression.Visitor<Void>, Statement.Vis
             return;
         }
 
-        scopes.peek().get(name.lexeme()).defined = true;
+        scopes.peek().variables.get(name.lexeme()).defined = true;
+    }
+
+    /*
+     * Marks the end of a declaration. A closure that captures the variable
+     * before this point is created before the variable holds its value, so
+     * it has to share a Cell with the frame.
+     */
+    private void initialize(Token name) {
+        if (scopes.isEmpty()) {
+            return;
+        }
+
+        scopes.peek().variables.get(name.lexeme()).initialized = true;
     }
 
-    private void resolveLocal(Expression expression, Token name) {
+    private Variable resolveLocal(Expression.Resolvable expression, Token name) {
+        return resolveLocal(expression, name.lexeme());
+    }
+
+    private Variable resolveLocal(Expression.Resolvable expression, String name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            var scope = scopes.get(i);
-            if (scope.containsKey(name.lexeme())) {
-                interpreter.resolve(expression, scopes.size() - 1 - i, scope.get(name.lexeme()).slot);
+            Variable variable = scopes.get(i).variables.get(name);
+            if (variable == null) {
+                continue;
+            }
+
+            if (variable.owner == function) {
+                variable.uses.add(new Use(expression, true, variable.slot));
+            } else {
+                if (!variable.initialized) {
+                    variable.early = true;
+                }
+                variable.captured = true;
+                variable.uses.add(new Use(expression, false, capture(function, variable)));
+            }
+            return variable;
+        }
+
+        expression.resolveGlobal(globals.indexOf(name));
+        return null;
+    }
+
+    /*
+     * Threads a captured variable through every function between its owner
+     * and the one using it, returning its upvalue index in the latter.
+     */
+    private int capture(FunctionScope scope, Variable variable) {
+        if (scope.enclosing == variable.owner) {
+            return scope.capture(true, variable.slot);
+        }
+
+        return scope.capture(false, capture(scope.enclosing, variable));
+    }
+
+    private void mutate(Expression expression) {
+        if (!(expression instanceof Expression.Variable)) {
+            return;
+        }
+
+        String name = ((Expression.Variable) expression).name().lexeme();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Variable variable = scopes.get(i).variables.get(name);
+            if (variable != null) {
+                variable.mutated = true;
                 return;
             }
         }
     }
 
+    private boolean isCompound(Token operator) {
+        switch (operator.type()) {
+            case PLUS_PLUS:
+            case MINUS_MINUS:
+            case PLUS_EQUAL:
+            case MINUS_EQUAL:
+            case STAR_EQUAL:
+            case SLASH_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * A body the parser left unparsed is resolved when it is first needed,
+     * by a resolver of its own, if nothing encloses it but the script: it
+     * then only reads globals, self and its own locals, and captures nothing.
+     * Elsewhere, as for the methods of a child node, which capture 'parent',
+     * it is parsed now and resolved with the rest.
+     */
+    private void resolveFunction(Expression.Function function, FunctionType type, Token name) {
+        if (function.isDeferred() && scopes.isEmpty()) {
+            NodeType nodeType = currentNodeType;
+            function.resolveLater(deferred -> {
+                SemanticResolver resolver = new SemanticResolver(globals);
+                resolver.currentNodeType = nodeType;
+                resolver.resolveFunction(deferred, type);
+                if (Schema.reporter.hadError()) {
+                    throw new SchemaRuntimeError(name, "Function '" + name.lexeme() + "' does not resolve.");
+                }
+            });
+            return;
+        }
+
+        resolveFunction(function, type);
+    }
+
     private void resolveFunction(Expression.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        FunctionScope enclosing = this.function;
+        this.function = new FunctionScope(enclosing);
+
+        boolean method = type == FunctionType.METHOD || type == FunctionType.DEFINITION;
+        List<Variable> parameters = new ArrayList<Variable>();
 
         beginScope();
+        if (method) {
+            declare("self").initialized = true;
+        }
         if (function.parameters() != null) {
             for (var param : function.parameters()) {
-                declare(param);
-                define(param);
+                if (scopes.peek().variables.containsKey(param.lexeme())) {
+                    Schema.reporter.error(param, "Variable with this name already declared in this scope.");
+                }
+                Variable variable = declare(param.lexeme());
+                variable.defined = true;
+                variable.initialized = true;
+                parameters.add(variable);
             }
         }
         resolve(function.body());
         endScope();
 
+        boolean[] boxed = null;
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i).boxed) {
+                if (boxed == null) {
+                    boxed = new boolean[parameters.size()];
+                }
+                boxed[i] = true;
+            }
+        }
+
+        function.resolve(this.function.frameSize, method, this.function.captures.toArray(new Expression.Function.Capture[0]), boxed);
+
+        this.function = enclosing;
         currentFunction = enclosingFunction;
     }
 
-    private class Variable {
-        boolean defined = false;
-        final int slot;
+    private static class Scope {
+        final Map<String, Variable> variables = new HashMap<String, Variable>();
+        final int start;
+
+        private Scope(FunctionScope function) {
+            this.start = function.next;
+        }
+    }
+
+    /*
+     * Slot allocation and captures of the function being resolved. Slots are
+     * handed out across nested blocks and reused once a block ends.
+     */
+    private static class FunctionScope {
+        final FunctionScope enclosing;
+        final List<Expression.Function.Capture> captures = new ArrayList<Expression.Function.Capture>();
+        int next = 0;
+        int frameSize = 0;
+
+        private FunctionScope(FunctionScope enclosing) {
+            this.enclosing = enclosing;
+        }
+
+        private int allocate() {
+            int slot = next++;
+            frameSize = Math.max(frameSize, next);
+            return slot;
+        }
+
+        private int capture(boolean local, int index) {
+            var capture = new Expression.Function.Capture(local, index);
+            int existing = captures.indexOf(capture);
+            if (existing != -1) {
+                return existing;
+            }
 
-        private Variable(int slot) {
+            captures.add(capture);
+            return captures.size() - 1;
+        }
+    }
+
+    private record Use(Expression.Resolvable expression, boolean local, int index) {}
+
+    private static class Variable {
+        final FunctionScope owner;
+        final int slot;
+        final List<Use> uses = new ArrayList<Use>();
+        Statement.Declaration declaration;
+        boolean defined = false;
+        boolean initialized = false;
+        boolean captured = false;
+        boolean mutated = false;
+        boolean early = false;
+        boolean boxed = false;
+
+        private Variable(FunctionScope owner, int slot) {
+            this.owner = owner;
             this.slot = slot;
         }
+
+        /*
+         * Called once the variable goes out of scope and every use is known.
+         * Only captured variables that can change after the closure copies
+         * them need a Cell; everything else is read straight from its slot.
+         */
+        private void settle() {
+            boxed = captured && (mutated || early);
+            if (boxed && declaration != null) {
+                declaration.box();
+            }
+
+            for (var use : uses) {
+                Expression.Resolvable.Access access;
+                if (use.local()) {
+                    access = boxed ? Expression.Resolvable.Access.LOCAL_CELL : Expression.Resolvable.Access.LOCAL;
+                } else {
+                    access = boxed ? Expression.Resolvable.Access.UPVALUE_CELL : Expression.Resolvable.Access.UPVALUE;
+                }
+                use.expression().resolve(access, use.index());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -31,6 +31,39 @@ public abstract class Statement {
         public abstract R visit(Continue statement);
     }
 
+    /*
+     * A statement that declares a variable. Declarations in a local scope are
+     * given a frame slot by the SemanticResolver, and are boxed in a Cell when
+     * a closure captures them and they may change afterwards.
+     */
+    public static abstract class Declaration extends Statement {
+
+        public static final int GLOBAL = -1;
+
+        private int slot = GLOBAL;
+        private boolean boxed = false;
+
+        public void declare(int slot) {
+            this.slot = slot;
+        }
+
+        public void box() {
+            this.boxed = true;
+        }
+
+        public boolean isLocal() {
+            return slot != GLOBAL;
+        }
+
+        public boolean isBoxed() {
+            return boxed;
+        }
+
+        public int slot() {
+            return slot;
+        }
+    }
+
     public static class Block extends Statement {
 
         private final List<Statement> statements;
@@ -67,13 +100,14 @@ public abstract class Statement {
         }
     }
 
-    public static class Node extends Statement {
+    public static class Node extends Declaration {
 
         private final Token name;
         private final Expression.Variable parent;
         private final List<Expression> traits;
         private final List<Statement.Function> methods;
         private final List<Statement.Function> metaMethods;
+        private int parentSlot = 0;
 
         public Node(Token name, Expression.Variable parent, List<Expression> traits, List<Statement.Function> methods, List<Statement.Function> metaMethods) {
             this.name = name;
@@ -103,13 +137,24 @@ public abstract class Statement {
             return metaMethods;
         }
 
+        /*
+         * Frame slot holding the parent node while the methods are created.
+         */
+        public int parentSlot() {
+            return parentSlot;
+        }
+
+        public void parentSlot(int parentSlot) {
+            this.parentSlot = parentSlot;
+        }
+
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
     }
 
-    public static class Trait extends Statement {
+    public static class Trait extends Declaration {
 
         private final Token name;
         private final List<Expression> traits;
@@ -139,7 +184,7 @@ public abstract class Statement {
         }
     }
 
-    public static class Function extends Statement {
+    public static class Function extends Declaration {
 
         private final Token name;
         private final Expression.Function function;
@@ -168,7 +213,7 @@ public abstract class Statement {
         }
     }
 
-    public static class Auto extends Statement {
+    public static class Auto extends Declaration {
 
         private final Token name;
         private final Expression value;
@@ -250,10 +295,20 @@ public abstract class Statement {
 
         private final Expression condition;
         private final Statement body;
+        private final Expression increment;
 
         public While(Expression condition, Statement body) {
+            this(condition, body, null);
+        }
+
+        /*
+         * The increment of a for loop runs after the body, including when the
+         * body ends with continue.
+         */
+        public While(Expression condition, Statement body, Expression increment) {
             this.condition = condition;
             this.body = body;
+            this.increment = increment;
         }
 
         public Expression condition() {
@@ -264,6 +319,10 @@ public abstract class Statement {
             return body;
         }
 
+        public Expression increment() {
+            return increment;
+        }
+
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
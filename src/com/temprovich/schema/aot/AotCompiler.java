@@ -0,0 +1,132 @@
+package com.temprovich.schema.aot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.Program;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.error.SchemaError;
+import com.temprovich.schema.jit.FunctionCompiler;
+import com.temprovich.schema.module.ModuleProcessor;
+
+/*
+ * Compiles a script ahead of time into a runnable jar. The front end runs
+ * once, here; the jar holds the resolved program in the form ProgramWriter
+ * writes, the bytecode of every function body the JIT can compile, and the
+ * runtime itself, so that running it starts straight at the statements.
+ */
+public final class AotCompiler {
+
+    static final String PROGRAM = "com/temprovich/schema/aot/program.bin";
+    static final String PRECOMPILED = "com/temprovich/schema/jit/Precompiled";
+
+    private record Body(int function, byte[] bytes, Object[] constants) {}
+
+    private AotCompiler() {}
+
+    public static void compile(String script, Path jar) throws IOException {
+        String source = new ModuleProcessor(script).process();
+        Globals globals = new Interpreter().globals();
+        Program program = Schema.parse(source, globals, false);
+        if (program == null) {
+            return;
+        }
+
+        ProgramWriter writer = new ProgramWriter();
+        writer.writeProgram(program);
+
+        List<Body> bodies = new ArrayList<Body>();
+        var functions = writer.functions();
+        for (int i = 0; i < functions.size(); i++) {
+            FunctionCompiler compiler = new FunctionCompiler(globals, PRECOMPILED + i);
+            try {
+                bodies.add(new Body(i, compiler.compile(functions.get(i)), compiler.constants()));
+            } catch (FunctionCompiler.Unsupported e) {
+                // left to the tree walker
+            }
+        }
+
+        writer.writeInt(bodies.size());
+        for (Body body : bodies) {
+            writer.writeInt(body.function());
+            writer.writeInt(body.constants().length);
+            for (Object constant : body.constants()) {
+                writer.writeConstant(constant);
+            }
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, AotMain.class.getName());
+
+        try (var out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            copyRuntime(out);
+            entry(out, PROGRAM, writer.toByteArray());
+            for (Body body : bodies) {
+                entry(out, PRECOMPILED + body.function() + ".class", body.bytes());
+            }
+        }
+    }
+
+    private static void entry(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    /*
+     * Copies the classes of the running interpreter, from its jar or class
+     * directory, so the compiled jar needs nothing else on the class path.
+     */
+    private static void copyRuntime(JarOutputStream out) throws IOException {
+        Path location;
+        try {
+            location = Paths.get(Schema.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException | NullPointerException e) {
+            throw new SchemaError("Cannot locate the Schema runtime to bundle.", e);
+        }
+
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    String name = location.relativize(file).toString().replace('\\', '/');
+                    if (name.endsWith(".class")) {
+                        entry(out, name, Files.readAllBytes(file));
+                    }
+                }
+            }
+            return;
+        }
+
+        try (var runtime = new JarFile(location.toFile())) {
+            for (var entries = runtime.entries(); entries.hasMoreElements();) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.startsWith("META-INF/") || name.equals(PROGRAM) || name.startsWith(PRECOMPILED)) {
+                    continue;
+                }
+
+                out.putNextEntry(new JarEntry(name));
+                try (InputStream in = runtime.getInputStream(entry)) {
+                    in.transferTo((OutputStream) out);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+}
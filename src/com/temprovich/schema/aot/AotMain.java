@@ -0,0 +1,61 @@
+package com.temprovich.schema.aot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.temprovich.schema.Program;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.error.SchemaError;
+import com.temprovich.schema.jit.CompiledBody;
+import com.temprovich.schema.jit.JitInterpreter;
+
+/*
+ * Entry point of a jar written by AotCompiler. Reads the program back,
+ * binds the globals to the cells they were resolved to, hands the
+ * precompiled bodies to the JIT and runs the statements. Binding only
+ * fails when the jar was built with another runtime than its own.
+ */
+public final class AotMain {
+
+    private AotMain() {}
+
+    public static void main(String[] args) throws IOException {
+        byte[] bytes;
+        try (InputStream in = AotMain.class.getClassLoader().getResourceAsStream(AotCompiler.PROGRAM)) {
+            if (in == null) {
+                throw new SchemaError("No compiled program in this jar.");
+            }
+            bytes = in.readAllBytes();
+        }
+
+        JitInterpreter interpreter = new JitInterpreter();
+        ProgramReader reader = new ProgramReader(ByteBuffer.wrap(bytes));
+        Program program = reader.readProgram();
+        if (!interpreter.globals().bind(program.globals())) {
+            throw new SchemaError("Compiled program does not match this runtime.");
+        }
+
+        int count = reader.readInt();
+        for (int i = 0; i < count; i++) {
+            int function = reader.readInt();
+            Object[] constants = new Object[reader.readInt()];
+            for (int j = 0; j < constants.length; j++) {
+                constants[j] = reader.readConstant(interpreter.globals());
+            }
+            interpreter.install(reader.functions().get(function), () -> load(function, constants));
+        }
+
+        interpreter.interpret(program.statements(), program.frameSize());
+        Schema.exit();
+    }
+
+    private static CompiledBody load(int function, Object[] constants) {
+        try {
+            Class<?> type = Class.forName((AotCompiler.PRECOMPILED + function).replace('/', '.'));
+            return (CompiledBody) type.getConstructor(Object[].class).newInstance((Object) constants);
+        } catch (ReflectiveOperationException e) {
+            throw new SchemaError("Failed to load precompiled function " + function + ".", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.temprovich.schema.aot;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Program;
+import com.temprovich.schema.error.SchemaError;
+
+/*
+ * Resolved programs kept on disk between runs, one file per script source,
+ * named after a hash of the source with all its modules. A hit is read
+ * through a memory mapping and skips the lexer, parser and resolver.
+ *
+ * The cache is only ever an optimization: an entry that cannot be read,
+ * or that was resolved against other globals, counts as a miss and is
+ * overwritten, and failing to write an entry is not an error.
+ */
+public final class ProgramCache {
+
+    private static final String EXTENSION = ".schc";
+
+    private final Path directory;
+
+    public ProgramCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /*
+     * The cached program for a source, bound into the given globals, or
+     * null on a miss.
+     */
+    public Program load(String source, Globals globals) {
+        Path file = directory.resolve(key(source) + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        Program program;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            program = new ProgramReader(buffer).readProgram();
+        } catch (IOException | RuntimeException | SchemaError e) {
+            return null;
+        }
+
+        return globals.bind(program.globals()) ? program : null;
+    }
+
+    public void store(String source, Program program) {
+        ProgramWriter writer = new ProgramWriter();
+        writer.writeProgram(program);
+
+        // written aside and moved in, so a concurrent run never maps half a file
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, null, EXTENSION);
+            Files.write(temporary, writer.toByteArray());
+            Files.move(temporary, directory.resolve(key(source) + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // nothing more to do; the run goes on uncached
+            }
+        }
+    }
+
+    private static String key(String source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        digest.update((byte) ProgramWriter.VERSION);
+        byte[] hash = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,321 @@
+package com.temprovich.schema.aot;
+
+import static com.temprovich.schema.aot.ProgramWriter.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Program;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.error.SchemaError;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Reads back what ProgramWriter wrote, restoring the resolution of every
+ * node, so the statements can run without going through the front end.
+ */
+public final class ProgramReader {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Expression.Resolvable.Access[] ACCESSES = Expression.Resolvable.Access.values();
+
+    private final ByteBuffer buffer;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Token> tokens = new ArrayList<Token>();
+    private final List<Expression.Function> functions = new ArrayList<Expression.Function>();
+
+    public ProgramReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.remaining() < 4 || buffer.getInt() != MAGIC || varint() != VERSION) {
+            throw new SchemaError("Not a compiled Schema program.");
+        }
+    }
+
+    public Program readProgram() {
+        int frameSize = varint();
+        String[] globals = new String[varint()];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = string();
+        }
+
+        return new Program(statements(), frameSize, globals);
+    }
+
+    /*
+     * Every function read so far, in the order ProgramWriter wrote them.
+     */
+    public List<Expression.Function> functions() {
+        return functions;
+    }
+
+    public Object readConstant(Globals globals) {
+        int tag = varint();
+        switch (tag) {
+            case TOKEN: return token();
+            case GLOBALS: return globals;
+            default: return value(tag);
+        }
+    }
+
+    public int readInt() {
+        return varint();
+    }
+
+    private List<Statement> statements() {
+        int count = varint();
+        List<Statement> statements = new ArrayList<Statement>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(statement());
+        }
+
+        return statements;
+    }
+
+    private List<Statement.Function> methods() {
+        int count = varint();
+        List<Statement.Function> methods = new ArrayList<Statement.Function>(count);
+        for (int i = 0; i < count; i++) {
+            methods.add((Statement.Function) statement());
+        }
+
+        return methods;
+    }
+
+    private List<Expression> expressions() {
+        int count = varint();
+        List<Expression> expressions = new ArrayList<Expression>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(expression());
+        }
+
+        return expressions;
+    }
+
+    private <T extends Statement.Declaration> T declaration(T declaration, int slot, boolean boxed) {
+        declaration.declare(slot);
+        if (boxed) {
+            declaration.box();
+        }
+
+        return declaration;
+    }
+
+    private <T extends Expression.Resolvable> T resolvable(T expression) {
+        var access = ACCESSES[varint()];
+        expression.resolve(access, varint());
+        return expression;
+    }
+
+    private Statement statement() {
+        int tag = varint();
+        switch (tag) {
+            case NULL: return null;
+            case BLOCK: return new Statement.Block(statements());
+            case EXPR: return new Statement.Expr(expression());
+            case NODE: {
+                int slot = varint() - 1;
+                boolean boxed = varint() != 0;
+                Token name = token();
+                var parent = (Expression.Variable) expression();
+                var traits = expressions();
+                var methods = methods();
+                var metaMethods = methods();
+                var node = declaration(new Statement.Node(name, parent, traits, methods, metaMethods), slot, boxed);
+                node.parentSlot(varint());
+                return node;
+            }
+            case TRAIT: {
+                int slot = varint() - 1;
+                boolean boxed = varint() != 0;
+                Token name = token();
+                var traits = expressions();
+                return declaration(new Statement.Trait(name, traits, methods()), slot, boxed);
+            }
+            case FUNCTION_STATEMENT: {
+                int slot = varint() - 1;
+                boolean boxed = varint() != 0;
+                Token name = token();
+                return declaration(new Statement.Function(name, function()), slot, boxed);
+            }
+            case AUTO: {
+                int slot = varint() - 1;
+                boolean boxed = varint() != 0;
+                Token name = token();
+                return declaration(new Statement.Auto(name, expression()), slot, boxed);
+            }
+            case IF: {
+                var condition = expression();
+                var thenBranch = statement();
+                return new Statement.If(condition, thenBranch, statement());
+            }
+            case RETURN: {
+                Token keyword = token();
+                return new Statement.Return(keyword, expression());
+            }
+            case WHILE: {
+                var condition = expression();
+                var body = statement();
+                return new Statement.While(condition, body, expression());
+            }
+            case BREAK: return new Statement.Break();
+            case CONTINUE: return new Statement.Continue();
+            default: throw new SchemaError("Malformed compiled program: unknown statement " + tag + ".");
+        }
+    }
+
+    private Expression expression() {
+        int tag = varint();
+        switch (tag) {
+            case NULL: return null;
+            case LITERAL: return new Expression.Literal(value(varint()));
+            case GROUPING: return new Expression.Grouping(expression());
+            case VARIABLE: return resolvable(new Expression.Variable(token()));
+            case ASSIGN: {
+                Token name = token();
+                return resolvable(new Expression.Assign(name, expression()));
+            }
+            case UNARY: {
+                Token operator = token();
+                return new Expression.Unary(operator, expression());
+            }
+            case BINARY: {
+                var left = expression();
+                Token operator = token();
+                return new Expression.Binary(left, operator, expression());
+            }
+            case LOGICAL: {
+                var left = expression();
+                Token operator = token();
+                return new Expression.Logical(left, operator, expression());
+            }
+            case CALL: {
+                var callee = expression();
+                Token paren = token();
+                return new Expression.Call(callee, paren, expressions());
+            }
+            case FUNCTION: return function();
+            case ATTRIBUTE: {
+                var object = expression();
+                return new Expression.Attribute(object, token());
+            }
+            case SET: {
+                var object = expression();
+                Token name = token();
+                return new Expression.Set(object, name, expression());
+            }
+            case SELF: return resolvable(new Expression.Self(token()));
+            case PARENT: {
+                Token keyword = token();
+                var parent = resolvable(new Expression.Parent(keyword, token()));
+                resolvable(parent.self());
+                return parent;
+            }
+            case INDEX: {
+                Token name = token();
+                return resolvable(new Expression.Index(name, expression()));
+            }
+            case INDEX_GET: return new Expression.IndexGet(expression());
+            case INDEX_SET: {
+                Token name = token();
+                var index = expression();
+                return resolvable(new Expression.IndexSet(name, index, expression()));
+            }
+            default: throw new SchemaError("Malformed compiled program: unknown expression " + tag + ".");
+        }
+    }
+
+    private Expression.Function function() {
+        List<Token> parameters = null;
+        boolean[] boxed = null;
+        int count = varint() - 1;
+        if (count >= 0) {
+            parameters = new ArrayList<Token>(count);
+            boxed = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                parameters.add(token());
+                boxed[i] = varint() != 0;
+            }
+        }
+
+        int frameSize = varint();
+        boolean method = varint() != 0;
+        var captures = new Expression.Function.Capture[varint()];
+        for (int i = 0; i < captures.length; i++) {
+            boolean local = varint() != 0;
+            captures[i] = new Expression.Function.Capture(local, varint());
+        }
+
+        // numbered before the body, as the writer does
+        var function = new Expression.Function(parameters, new ArrayList<Statement>());
+        functions.add(function);
+        function.body().addAll(statements());
+        function.resolve(frameSize, method, captures, boxed);
+        return function;
+    }
+
+    private Token token() {
+        int index = varint() - 1;
+        if (index < 0) {
+            return null;
+        }
+        if (index < tokens.size()) {
+            return tokens.get(index);
+        }
+
+        var type = TYPES[varint()];
+        String lexeme = string();
+        Object literal = value(varint());
+        Token token = new Token(type, lexeme, literal, varint());
+        tokens.add(token);
+        return token;
+    }
+
+    private String string() {
+        int index = varint();
+        if (index < strings.size()) {
+            return strings.get(index);
+        }
+
+        byte[] utf8 = new byte[varint()];
+        buffer.get(utf8);
+        String value = new String(utf8, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+
+    private Object value(int tag) {
+        switch (tag) {
+            case NULL: return null;
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            case LONG: {
+                long bits = varlong();
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+            case DOUBLE: return buffer.getDouble();
+            case STRING: return string();
+            default: throw new SchemaError("Malformed compiled program: unknown constant " + tag + ".");
+        }
+    }
+
+    private int varint() {
+        return (int) varlong();
+    }
+
+    private long varlong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+}
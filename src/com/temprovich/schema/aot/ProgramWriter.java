@@ -0,0 +1,486 @@
+package com.temprovich.schema.aot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Program;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Writes a resolved program in a compact binary form. Every node is a tag
+ * byte followed by its children in declaration order, together with what
+ * the SemanticResolver recorded on it. Numbers are variable-length, and
+ * strings and tokens are written once, the first time they are seen, and
+ * referred to by index after that.
+ */
+public final class ProgramWriter implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+
+    static final int MAGIC = 0x5343484D;
+    static final int VERSION = 1;
+
+    static final int NULL = 0;
+
+    static final int BLOCK = 1;
+    static final int EXPR = 2;
+    static final int NODE = 3;
+    static final int TRAIT = 4;
+    static final int FUNCTION_STATEMENT = 5;
+    static final int AUTO = 6;
+    static final int IF = 7;
+    static final int RETURN = 8;
+    static final int WHILE = 9;
+    static final int BREAK = 10;
+    static final int CONTINUE = 11;
+
+    static final int LITERAL = 1;
+    static final int GROUPING = 2;
+    static final int VARIABLE = 3;
+    static final int ASSIGN = 4;
+    static final int UNARY = 5;
+    static final int BINARY = 6;
+    static final int LOGICAL = 7;
+    static final int CALL = 8;
+    static final int FUNCTION = 9;
+    static final int ATTRIBUTE = 10;
+    static final int SET = 11;
+    static final int SELF = 12;
+    static final int PARENT = 13;
+    static final int INDEX = 14;
+    static final int INDEX_GET = 15;
+    static final int INDEX_SET = 16;
+
+    static final int TRUE = 1;
+    static final int FALSE = 2;
+    static final int LONG = 3;
+    static final int DOUBLE = 4;
+    static final int STRING = 5;
+    static final int TOKEN = 6;
+    static final int GLOBALS = 7;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Token, Integer> tokens = new IdentityHashMap<Token, Integer>();
+    private final List<Expression.Function> functions = new ArrayList<Expression.Function>();
+
+    public ProgramWriter() {
+        try {
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        varint(VERSION);
+    }
+
+    public void writeProgram(Program program) {
+        varint(program.frameSize());
+        varint(program.globals().length);
+        for (String name : program.globals()) {
+            string(name);
+        }
+        statements(program.statements());
+    }
+
+    /*
+     * Every function written so far, in the order ProgramReader will read
+     * them back in.
+     */
+    public List<Expression.Function> functions() {
+        return functions;
+    }
+
+    /*
+     * Writes a value that may appear among the constants of compiled code.
+     */
+    public void writeConstant(Object value) {
+        if (value instanceof Token) {
+            varint(TOKEN);
+            token((Token) value);
+        } else if (value instanceof Globals) {
+            varint(GLOBALS);
+        } else {
+            value(value);
+        }
+    }
+
+    public void writeInt(int value) {
+        varint(value);
+    }
+
+    public byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    private void statements(List<? extends Statement> statements) {
+        varint(statements.size());
+        for (Statement statement : statements) {
+            statement(statement);
+        }
+    }
+
+    private void statement(Statement statement) {
+        if (statement == null) {
+            varint(NULL);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    private void expressions(List<Expression> expressions) {
+        varint(expressions.size());
+        for (Expression expression : expressions) {
+            expression(expression);
+        }
+    }
+
+    private void expression(Expression expression) {
+        if (expression == null) {
+            varint(NULL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    private void declaration(Statement.Declaration declaration) {
+        varint(declaration.slot() + 1);
+        varint(declaration.isBoxed() ? 1 : 0);
+    }
+
+    private void resolvable(Expression.Resolvable expression) {
+        varint(expression.access().ordinal());
+        varint(expression.slot());
+    }
+
+    private void function(Expression.Function function) {
+        functions.add(function);
+
+        var parameters = function.parameters();
+        if (parameters == null) {
+            varint(0);
+        } else {
+            varint(parameters.size() + 1);
+            for (int i = 0; i < parameters.size(); i++) {
+                token(parameters.get(i));
+                varint(function.isBoxedParameter(i) ? 1 : 0);
+            }
+        }
+
+        varint(function.frameSize());
+        varint(function.isMethod() ? 1 : 0);
+        varint(function.captures().length);
+        for (var capture : function.captures()) {
+            varint(capture.local() ? 1 : 0);
+            varint(capture.index());
+        }
+        statements(function.body());
+    }
+
+    private void token(Token token) {
+        if (token == null) {
+            varint(0);
+            return;
+        }
+
+        Integer index = tokens.get(token);
+        if (index != null) {
+            varint(index + 1);
+            return;
+        }
+
+        index = tokens.size();
+        tokens.put(token, index);
+        varint(index + 1);
+        varint(token.type().ordinal());
+        string(token.lexeme());
+        value(token.literal());
+        varint(token.line());
+    }
+
+    private void string(String value) {
+        Integer index = strings.get(value);
+        if (index != null) {
+            varint(index);
+            return;
+        }
+
+        index = strings.size();
+        strings.put(value, index);
+        varint(index);
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        varint(utf8.length);
+        bytes.write(utf8, 0, utf8.length);
+    }
+
+    private void value(Object value) {
+        try {
+            if (value == null) {
+                varint(NULL);
+            } else if (value instanceof Boolean) {
+                varint((boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Long) {
+                varint(LONG);
+                long bits = (long) value;
+                varlong((bits << 1) ^ (bits >> 63));
+            } else if (value instanceof Double) {
+                varint(DOUBLE);
+                out.writeDouble((double) value);
+            } else if (value instanceof String) {
+                varint(STRING);
+                string((String) value);
+            } else {
+                throw new IllegalArgumentException("Cannot write a constant of type " + value.getClass().getName());
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void varint(int value) {
+        varlong(value & 0xFFFFFFFFL);
+    }
+
+    private void varlong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    @Override
+    public Void visit(Statement.Block statement) {
+        varint(BLOCK);
+        statements(statement.statements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Expr statement) {
+        varint(EXPR);
+        expression(statement.expression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Node statement) {
+        varint(NODE);
+        declaration(statement);
+        token(statement.name());
+        expression(statement.parent());
+        expressions(statement.traits());
+        statements(statement.methods());
+        statements(statement.metaMethods());
+        varint(statement.parentSlot());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Trait statement) {
+        varint(TRAIT);
+        declaration(statement);
+        token(statement.name());
+        expressions(statement.traits());
+        statements(statement.methods());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Function statement) {
+        varint(FUNCTION_STATEMENT);
+        declaration(statement);
+        token(statement.name());
+        function(statement.function());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Auto statement) {
+        varint(AUTO);
+        declaration(statement);
+        token(statement.name());
+        expression(statement.value());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.If statement) {
+        varint(IF);
+        expression(statement.condition());
+        statement(statement.thenBranch());
+        statement(statement.elseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Return statement) {
+        varint(RETURN);
+        token(statement.keyword());
+        expression(statement.value());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.While statement) {
+        varint(WHILE);
+        expression(statement.condition());
+        statement(statement.body());
+        expression(statement.increment());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Break statement) {
+        varint(BREAK);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Continue statement) {
+        varint(CONTINUE);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Literal expression) {
+        varint(LITERAL);
+        value(expression.value());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Grouping expression) {
+        varint(GROUPING);
+        expression(expression.expression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Variable expression) {
+        varint(VARIABLE);
+        token(expression.name());
+        resolvable(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Assign expression) {
+        varint(ASSIGN);
+        token(expression.name());
+        expression(expression.value());
+        resolvable(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Unary expression) {
+        varint(UNARY);
+        token(expression.operator());
+        expression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Binary expression) {
+        varint(BINARY);
+        expression(expression.left());
+        token(expression.operator());
+        expression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Logical expression) {
+        varint(LOGICAL);
+        expression(expression.left());
+        token(expression.operator());
+        expression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Call expression) {
+        varint(CALL);
+        expression(expression.callee());
+        token(expression.paren());
+        expressions(expression.arguments());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Function expression) {
+        varint(FUNCTION);
+        function(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Attribute expression) {
+        varint(ATTRIBUTE);
+        expression(expression.object());
+        token(expression.name());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Set expression) {
+        varint(SET);
+        expression(expression.object());
+        token(expression.name());
+        expression(expression.value());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Self expression) {
+        varint(SELF);
+        token(expression.keyword());
+        resolvable(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Parent expression) {
+        varint(PARENT);
+        token(expression.keyword());
+        token(expression.method());
+        resolvable(expression);
+        resolvable(expression.self());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Index expression) {
+        varint(INDEX);
+        token(expression.name());
+        expression(expression.index());
+        resolvable(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.IndexGet expression) {
+        varint(INDEX_GET);
+        expression(expression.size());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.IndexSet expression) {
+        varint(INDEX_SET);
+        token(expression.name());
+        expression(expression.index());
+        expression(expression.value());
+        resolvable(expression);
+        return null;
+    }
+}
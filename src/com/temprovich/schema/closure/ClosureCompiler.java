@@ -0,0 +1,582 @@
+package com.temprovich.schema.closure;
+
+import java.util.List;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Cell;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaFunction;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Compiles resolved statements into lambdas. Everything that does not
+ * depend on runtime values is decided here, once: which operator to apply,
+ * which slot or upvalue a variable lives in, what a literal is, how many
+ * arguments a call passes. The lambdas left behind only do the work.
+ * Method calls, attributes, indexing, compound assignment and declarations
+ * of functions, nodes and traits are handed to the tree-walking visitors.
+ */
+final class ClosureCompiler implements Expression.Visitor<Evaluator>,
+                                       Statement.Visitor<Executor> {
+
+    private final ClosureInterpreter interpreter;
+    private final Globals globals;
+
+    ClosureCompiler(ClosureInterpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals();
+    }
+
+    Executor compile(List<Statement> statements) {
+        Executor[] executors = new Executor[statements.size()];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = compile(statements.get(i));
+        }
+
+        switch (executors.length) {
+            case 0: return frame -> Executor.NORMAL;
+            case 1: return executors[0];
+            default:
+                return frame -> {
+                    for (var executor : executors) {
+                        int completion = executor.execute(frame);
+                        if (completion != Executor.NORMAL) {
+                            return completion;
+                        }
+                    }
+                    return Executor.NORMAL;
+                };
+        }
+    }
+
+    private Executor compile(Statement statement) {
+        return statement.accept(this);
+    }
+
+    private Evaluator compile(Expression expression) {
+        return expression.accept(this);
+    }
+
+    private Evaluator delegate(Expression expression) {
+        return frame -> expression.accept(interpreter);
+    }
+
+    private Executor delegate(Statement statement) {
+        return frame -> {
+            statement.accept(interpreter);
+            return Executor.NORMAL;
+        };
+    }
+
+    /*
+     * Compiles an expression for its truthiness only. Comparisons and logical
+     * operators then never box their result.
+     */
+    private Condition condition(Expression expression) {
+        if (expression instanceof Expression.Grouping) {
+            return condition(((Expression.Grouping) expression).expression());
+        }
+        if (expression instanceof Expression.Binary) {
+            var binary = (Expression.Binary) expression;
+            Token operator = binary.operator();
+            switch (operator.type()) {
+                case LESS:
+                case LESS_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    return comparison(operator, compile(binary.left()), compile(binary.right()));
+                default:
+                    break;
+            }
+        }
+        if (expression instanceof Expression.Logical) {
+            var logical = (Expression.Logical) expression;
+            Condition left = condition(logical.left());
+            Condition right = condition(logical.right());
+            if (logical.operator().type() == Token.Type.OR) {
+                return frame -> left.test(frame) || right.test(frame);
+            }
+            return frame -> left.test(frame) && right.test(frame);
+        }
+        if (expression instanceof Expression.Unary && ((Expression.Unary) expression).operator().type() == Token.Type.BANG) {
+            Condition operand = condition(((Expression.Unary) expression).right());
+            return frame -> !operand.test(frame);
+        }
+
+        Evaluator evaluator = compile(expression);
+        return frame -> Arithmetic.isTruthy(evaluator.evaluate(frame));
+    }
+
+    private Condition comparison(Token operator, Evaluator left, Evaluator right) {
+        switch (operator.type()) {
+            case LESS:
+                return frame -> {
+                    Object l = left.evaluate(frame);
+                    Object r = right.evaluate(frame);
+                    if (l instanceof Long && r instanceof Long) {
+                        return (long) l < (long) r;
+                    }
+                    return Arithmetic.less(operator, l, r);
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    Object l = left.evaluate(frame);
+                    Object r = right.evaluate(frame);
+                    if (l instanceof Long && r instanceof Long) {
+                        return (long) l <= (long) r;
+                    }
+                    return Arithmetic.lessEqual(operator, l, r);
+                };
+            case GREATER:
+                return frame -> {
+                    Object l = left.evaluate(frame);
+                    Object r = right.evaluate(frame);
+                    if (l instanceof Long && r instanceof Long) {
+                        return (long) l > (long) r;
+                    }
+                    return Arithmetic.greater(operator, l, r);
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    Object l = left.evaluate(frame);
+                    Object r = right.evaluate(frame);
+                    if (l instanceof Long && r instanceof Long) {
+                        return (long) l >= (long) r;
+                    }
+                    return Arithmetic.greaterEqual(operator, l, r);
+                };
+            case EQUAL_EQUAL:
+                return frame -> Arithmetic.isEqual(left.evaluate(frame), right.evaluate(frame));
+            default:
+                return frame -> !Arithmetic.isEqual(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    @Override
+    public Executor visit(Statement.Block statement) {
+        return compile(statement.statements());
+    }
+
+    @Override
+    public Executor visit(Statement.Expr statement) {
+        Evaluator expression = compile(statement.expression());
+        return frame -> {
+            expression.evaluate(frame);
+            return Executor.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visit(Statement.Node statement) {
+        return delegate(statement);
+    }
+
+    @Override
+    public Executor visit(Statement.Trait statement) {
+        return delegate(statement);
+    }
+
+    @Override
+    public Executor visit(Statement.Function statement) {
+        return delegate(statement);
+    }
+
+    @Override
+    public Executor visit(Statement.Auto statement) {
+        Evaluator value = statement.value() == null ? frame -> null : compile(statement.value());
+        int slot = statement.slot();
+
+        if (!statement.isLocal()) {
+            String name = statement.name().lexeme();
+            return frame -> {
+                globals.define(name, value.evaluate(frame));
+                return Executor.NORMAL;
+            };
+        }
+        if (statement.isBoxed()) {
+            // the Cell exists before the initializer runs, so closures it creates share it
+            return frame -> {
+                Cell cell = new Cell(null);
+                frame.assign(slot, cell);
+                cell.value = value.evaluate(frame);
+                return Executor.NORMAL;
+            };
+        }
+        return frame -> {
+            frame.assign(slot, value.evaluate(frame));
+            return Executor.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visit(Statement.If statement) {
+        Condition condition = condition(statement.condition());
+        Executor thenBranch = compile(statement.thenBranch());
+        if (statement.elseBranch() == null) {
+            return frame -> condition.test(frame) ? thenBranch.execute(frame) : Executor.NORMAL;
+        }
+
+        Executor elseBranch = compile(statement.elseBranch());
+        return frame -> condition.test(frame) ? thenBranch.execute(frame) : elseBranch.execute(frame);
+    }
+
+    @Override
+    public Executor visit(Statement.Return statement) {
+        if (statement.value() == null) {
+            return frame -> {
+                interpreter.returnValue(null);
+                return Executor.RETURN;
+            };
+        }
+
+        Evaluator value = compile(statement.value());
+        return frame -> {
+            interpreter.returnValue(value.evaluate(frame));
+            return Executor.RETURN;
+        };
+    }
+
+    @Override
+    public Executor visit(Statement.While statement) {
+        Condition condition = condition(statement.condition());
+        Executor body = compile(statement.body());
+        Evaluator increment = statement.increment() == null ? frame -> null : compile(statement.increment());
+
+        return frame -> {
+            while (condition.test(frame)) {
+                int completion = body.execute(frame);
+                if (completion == Executor.RETURN) {
+                    return Executor.RETURN;
+                }
+                if (completion == Executor.BREAK) {
+                    break;
+                }
+
+                increment.evaluate(frame);
+            }
+            return Executor.NORMAL;
+        };
+    }
+
+    @Override
+    public Executor visit(Statement.Break statement) {
+        return frame -> Executor.BREAK;
+    }
+
+    @Override
+    public Executor visit(Statement.Continue statement) {
+        return frame -> Executor.CONTINUE;
+    }
+
+    @Override
+    public Evaluator visit(Expression.Literal expression) {
+        Object value = expression.value();
+        return frame -> value;
+    }
+
+    @Override
+    public Evaluator visit(Expression.Grouping expression) {
+        return compile(expression.expression());
+    }
+
+    @Override
+    public Evaluator visit(Expression.Variable expression) {
+        int slot = expression.slot();
+        switch (expression.access()) {
+            case LOCAL: return frame -> frame.fetch(slot);
+            case LOCAL_CELL: return frame -> ((Cell) frame.fetch(slot)).value;
+            case UPVALUE: return frame -> frame.upvalue(slot);
+            case UPVALUE_CELL: return frame -> ((Cell) frame.upvalue(slot)).value;
+            default: {
+                Token name = expression.name();
+                return frame -> {
+                    Object value = globals.fetch(slot);
+                    if (value != Globals.UNDEFINED) {
+                        return value;
+                    }
+
+                    throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+                };
+            }
+        }
+    }
+
+    @Override
+    public Evaluator visit(Expression.Assign expression) {
+        int slot = expression.slot();
+        Evaluator value = compile(expression.value());
+        switch (expression.access()) {
+            case LOCAL:
+                return frame -> {
+                    Object result = value.evaluate(frame);
+                    frame.assign(slot, result);
+                    return result;
+                };
+            case LOCAL_CELL:
+                return frame -> {
+                    Object result = value.evaluate(frame);
+                    ((Cell) frame.fetch(slot)).value = result;
+                    return result;
+                };
+            case UPVALUE_CELL:
+                return frame -> {
+                    Object result = value.evaluate(frame);
+                    ((Cell) frame.upvalue(slot)).value = result;
+                    return result;
+                };
+            case GLOBAL: {
+                Token name = expression.name();
+                return frame -> {
+                    Object result = value.evaluate(frame);
+                    if (!globals.isDefined(slot)) {
+                        throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+                    }
+
+                    globals.store(slot, result);
+                    return result;
+                };
+            }
+            default:
+                return delegate(expression);
+        }
+    }
+
+    @Override
+    public Evaluator visit(Expression.Unary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case MINUS: {
+                Evaluator operand = compile(expression.right());
+                return frame -> Arithmetic.negate(operator, operand.evaluate(frame));
+            }
+            case BANG: {
+                Condition operand = condition(expression.right());
+                return frame -> !operand.test(frame);
+            }
+            case PLUS_PLUS:
+            case MINUS_MINUS: {
+                // like the tree walker, a plain local is updated in place and the expression is null
+                if (!(expression.right() instanceof Expression.Variable)
+                        || ((Expression.Variable) expression.right()).access() != Expression.Resolvable.Access.LOCAL) {
+                    return delegate(expression);
+                }
+
+                int slot = ((Expression.Variable) expression.right()).slot();
+                Object delta = operator.type() == Token.Type.PLUS_PLUS ? 1L : -1L;
+                return frame -> {
+                    frame.assign(slot, Arithmetic.add(operator, frame.fetch(slot), delta));
+                    return null;
+                };
+            }
+            default:
+                return delegate(expression);
+        }
+    }
+
+    @Override
+    public Evaluator visit(Expression.Binary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case PLUS_EQUAL:
+            case MINUS_EQUAL:
+            case STAR_EQUAL:
+            case SLASH_EQUAL:
+                return delegate(expression);
+            case LESS:
+            case LESS_EQUAL:
+            case GREATER:
+            case GREATER_EQUAL:
+            case EQUAL_EQUAL:
+            case BANG_EQUAL: {
+                Condition comparison = comparison(operator, compile(expression.left()), compile(expression.right()));
+                return frame -> comparison.test(frame);
+            }
+            default:
+                break;
+        }
+
+        Evaluator left = compile(expression.left());
+        Evaluator right = compile(expression.right());
+        switch (operator.type()) {
+            case PLUS: return frame -> Arithmetic.add(operator, left.evaluate(frame), right.evaluate(frame));
+            case MINUS: return frame -> Arithmetic.subtract(operator, left.evaluate(frame), right.evaluate(frame));
+            case STAR: return frame -> Arithmetic.multiply(operator, left.evaluate(frame), right.evaluate(frame));
+            case SLASH: return frame -> Arithmetic.divide(operator, left.evaluate(frame), right.evaluate(frame));
+            default: return delegate(expression);
+        }
+    }
+
+    @Override
+    public Evaluator visit(Expression.Logical expression) {
+        Evaluator left = compile(expression.left());
+        Evaluator right = compile(expression.right());
+        if (expression.operator().type() == Token.Type.OR) {
+            return frame -> {
+                Object value = left.evaluate(frame);
+                return Arithmetic.isTruthy(value) ? value : right.evaluate(frame);
+            };
+        }
+        return frame -> {
+            Object value = left.evaluate(frame);
+            return Arithmetic.isTruthy(value) ? right.evaluate(frame) : value;
+        };
+    }
+
+    @Override
+    public Evaluator visit(Expression.Call expression) {
+        if (expression.callee() instanceof Expression.Attribute) {
+            // keep the interpreter's inline caches for method calls
+            return delegate(expression);
+        }
+
+        Token paren = expression.paren();
+        Evaluator callee = compile(expression.callee());
+        var arguments = expression.arguments();
+        Evaluator[] values = new Evaluator[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = compile(arguments.get(i));
+        }
+
+        // the arguments are evaluated before the callee is checked, as the tree walker does;
+        // natives and bound builtins raise their errors without a token
+        switch (values.length) {
+            case 0:
+                return frame -> {
+                    Object function = callee.evaluate(frame);
+                    if (function instanceof SchemaFunction && ((SchemaFunction) function).arity() == 0) {
+                        var user = (SchemaFunction) function;
+                        return user.execute(interpreter, user.frame());
+                    }
+                    try {
+                        return callable(paren, function, 0).call0(interpreter);
+                    } catch (SchemaRuntimeError error) {
+                        throw error.at(paren);
+                    }
+                };
+            case 1: {
+                Evaluator a = values[0];
+                return frame -> {
+                    Object function = callee.evaluate(frame);
+                    if (function instanceof SchemaFunction && ((SchemaFunction) function).arity() == 1) {
+                        var user = (SchemaFunction) function;
+                        Environment callFrame = user.frame();
+                        user.argument(callFrame, 0, a.evaluate(frame));
+                        return user.execute(interpreter, callFrame);
+                    }
+                    try {
+                        Object first = a.evaluate(frame);
+                        return callable(paren, function, 1).call1(interpreter, first);
+                    } catch (SchemaRuntimeError error) {
+                        throw error.at(paren);
+                    }
+                };
+            }
+            case 2: {
+                Evaluator a = values[0];
+                Evaluator b = values[1];
+                return frame -> {
+                    Object function = callee.evaluate(frame);
+                    if (function instanceof SchemaFunction && ((SchemaFunction) function).arity() == 2) {
+                        var user = (SchemaFunction) function;
+                        Environment callFrame = user.frame();
+                        user.argument(callFrame, 0, a.evaluate(frame));
+                        user.argument(callFrame, 1, b.evaluate(frame));
+                        return user.execute(interpreter, callFrame);
+                    }
+                    try {
+                        Object first = a.evaluate(frame);
+                        Object second = b.evaluate(frame);
+                        return callable(paren, function, 2).call2(interpreter, first, second);
+                    } catch (SchemaRuntimeError error) {
+                        throw error.at(paren);
+                    }
+                };
+            }
+            default:
+                return frame -> {
+                    Object function = callee.evaluate(frame);
+                    if (function instanceof SchemaFunction && ((SchemaFunction) function).arity() == values.length) {
+                        var user = (SchemaFunction) function;
+                        Environment callFrame = user.frame();
+                        for (int i = 0; i < values.length; i++) {
+                            user.argument(callFrame, i, values[i].evaluate(frame));
+                        }
+                        return user.execute(interpreter, callFrame);
+                    }
+
+                    try {
+                        Object[] evaluated = new Object[values.length];
+                        for (int i = 0; i < evaluated.length; i++) {
+                            evaluated[i] = values[i].evaluate(frame);
+                        }
+                        return callable(paren, function, values.length).call(interpreter, evaluated);
+                    } catch (SchemaRuntimeError error) {
+                        throw error.at(paren);
+                    }
+                };
+        }
+    }
+
+    private static SchemaCallable callable(Token paren, Object callee, int count) {
+        if (!(callee instanceof SchemaCallable)) {
+            throw new SchemaRuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        SchemaCallable function = (SchemaCallable) callee;
+        checkArity(paren, function, count);
+        return function;
+    }
+
+    private static void checkArity(Token paren, SchemaCallable function, int count) {
+        if (count != function.arity() && !function.isVariadic()) {
+            throw new SchemaRuntimeError(paren, "Function received " + count + " arguments, but expects " + function.arity() + ".");
+        }
+    }
+
+    @Override
+    public Evaluator visit(Expression.Function expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.Attribute expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.Set expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.Self expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.Parent expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.Index expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.IndexGet expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public Evaluator visit(Expression.IndexSet expression) {
+        return delegate(expression);
+    }
+}
@@ -0,0 +1,67 @@
+package com.temprovich.schema.closure;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.error.SchemaRuntimeError;
+
+/*
+ * An interpreter that compiles every function body, on its first call, into
+ * a tree of lambdas with operators, slots and constants bound in advance.
+ * Frames, functions and instances are those of the tree walker, which still
+ * runs whatever the compiler delegates to it.
+ */
+public class ClosureInterpreter extends Interpreter {
+
+    private final ClosureCompiler compiler;
+    private final Map<Expression.Function, Executor> bodies;
+    private Object returnValue = null;
+
+    public ClosureInterpreter() {
+        this.compiler = new ClosureCompiler(this);
+        this.bodies = new IdentityHashMap<Expression.Function, Executor>();
+    }
+
+    @Override
+    public void interpret(List<Statement> statements, int frameSize) {
+        Environment frame = new Environment(frameSize, null);
+        enter(frame);
+        try {
+            compiler.compile(statements).execute(frame);
+        } catch (SchemaRuntimeError error) {
+            Schema.reporter.runtimeError(error);
+        }
+    }
+
+    @Override
+    public Object executeFunction(Expression.Function function, Environment frame) {
+        Executor body = bodies.get(function);
+        if (body == null) {
+            body = compiler.compile(function.body());
+            bodies.put(function, body);
+        }
+
+        Environment previous = enter(frame);
+        try {
+            if (body.execute(frame) != Executor.RETURN) {
+                return null;
+            }
+
+            Object value = returnValue;
+            returnValue = null;
+            return value;
+        } finally {
+            enter(previous);
+        }
+    }
+
+    void returnValue(Object value) {
+        this.returnValue = value;
+    }
+}
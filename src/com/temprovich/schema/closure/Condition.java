@@ -0,0 +1,13 @@
+package com.temprovich.schema.closure;
+
+import com.temprovich.schema.Environment;
+
+/*
+ * A compiled expression in a branch or loop condition, which only needs to
+ * know whether the value is truthy and so can skip boxing comparisons.
+ */
+@FunctionalInterface
+interface Condition {
+
+    boolean test(Environment frame);
+}
@@ -0,0 +1,12 @@
+package com.temprovich.schema.closure;
+
+import com.temprovich.schema.Environment;
+
+/*
+ * A compiled expression: evaluates to its value in the given frame.
+ */
+@FunctionalInterface
+interface Evaluator {
+
+    Object evaluate(Environment frame);
+}
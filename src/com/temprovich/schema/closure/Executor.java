@@ -0,0 +1,18 @@
+package com.temprovich.schema.closure;
+
+import com.temprovich.schema.Environment;
+
+/*
+ * A compiled statement. Returns how it completed; anything but NORMAL
+ * stops the enclosing statement list.
+ */
+@FunctionalInterface
+interface Executor {
+
+    int NORMAL = 0;
+    int BREAK = 1;
+    int CONTINUE = 2;
+    int RETURN = 3;
+
+    int execute(Environment frame);
+}
@@ -0,0 +1,43 @@
+package com.temprovich.schema.compiler;
+
+import java.util.List;
+
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.SchemaMethod;
+
+public final class BoundMethod implements SchemaMethod {
+
+    final SchemaInstance receiver;
+    final Closure method;
+
+    BoundMethod(SchemaInstance receiver, Closure method) {
+        this.receiver = receiver;
+        this.method = method;
+    }
+
+    @Override
+    public BoundMethod bind(SchemaInstance instance) {
+        return new BoundMethod(instance, method);
+    }
+
+    @Override
+    public boolean isGetter() {
+        return method.isGetter();
+    }
+
+    @Override
+    public int arity() {
+        return method.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return method.vm.invoke(method, receiver, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
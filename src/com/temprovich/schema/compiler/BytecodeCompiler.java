@@ -0,0 +1,794 @@
+package com.temprovich.schema.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Lowers a resolved syntax tree into bytecode for the VirtualMachine. Locals
+ * live in stack slots of the enclosing call frame and variables captured by
+ * inner functions are turned into upvalues, so the only runtime lookups left
+ * are globals and attributes.
+ */
+public class BytecodeCompiler implements Expression.Visitor<Void>,
+                                         Statement.Visitor<Void> {
+
+    private static final int MAX_LOCALS = 256;
+    private static final int MAX_UPVALUES = 256;
+    private static final int MAX_CONSTANTS = 65536;
+    private static final int MAX_GLOBALS = 65536;
+    private static final int MAX_JUMP = 65535;
+
+    private enum FunctionType {
+        SCRIPT,
+        FUNCTION,
+        DEFINITION,
+        METHOD;
+    }
+
+    private final Globals globals;
+    private FunctionState current;
+
+    public BytecodeCompiler(Globals globals) {
+        this.globals = globals;
+        this.current = null;
+    }
+
+    public FunctionPrototype compile(List<Statement> statements) {
+        current = new FunctionState(null, FunctionType.SCRIPT, null);
+
+        for (var statement : statements) {
+            compile(statement);
+        }
+
+        return endFunction(0, false);
+    }
+
+    @Override
+    public Void visit(Expression.Literal expression) {
+        Object value = expression.value();
+        if (value == null) {
+            emit(OpCode.NULL, null, 1);
+        } else if (value instanceof Boolean) {
+            emit((Boolean) value ? OpCode.TRUE : OpCode.FALSE, null, 1);
+        } else {
+            emitConstant(value, null);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Grouping expression) {
+        compile(expression.expression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Variable expression) {
+        namedVariable(expression.name().lexeme(), expression.name(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Assign expression) {
+        compile(expression.value());
+        namedVariable(expression.name().lexeme(), expression.name(), true);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Unary expression) {
+        Token operator = expression.operator();
+
+        switch (operator.type()) {
+            case MINUS:
+                compile(expression.right());
+                emit(OpCode.NEGATE, operator, 0);
+                break;
+            case BANG:
+                compile(expression.right());
+                emit(OpCode.NOT, operator, 0);
+                break;
+            case PLUS_PLUS:
+                compound(expression.right(), null, OpCode.ADD, operator);
+                break;
+            case MINUS_MINUS:
+                compound(expression.right(), null, OpCode.SUBTRACT, operator);
+                break;
+            default:
+                error(operator, "Unknown operator.");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Binary expression) {
+        Token operator = expression.operator();
+
+        switch (operator.type()) {
+            case PLUS_EQUAL:  compound(expression.left(), expression.right(), OpCode.ADD, operator); return null;
+            case MINUS_EQUAL: compound(expression.left(), expression.right(), OpCode.SUBTRACT, operator); return null;
+            case STAR_EQUAL:  compound(expression.left(), expression.right(), OpCode.MULTIPLY, operator); return null;
+            case SLASH_EQUAL: compound(expression.left(), expression.right(), OpCode.DIVIDE, operator); return null;
+            default: break;
+        }
+
+        compile(expression.left());
+        compile(expression.right());
+
+        switch (operator.type()) {
+            case GREATER:       emit(OpCode.GREATER, operator, -1); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL, operator, -1); break;
+            case LESS:          emit(OpCode.LESS, operator, -1); break;
+            case LESS_EQUAL:    emit(OpCode.LESS_EQUAL, operator, -1); break;
+            case BANG_EQUAL:    emit(OpCode.NOT_EQUAL, operator, -1); break;
+            case EQUAL_EQUAL:   emit(OpCode.EQUAL, operator, -1); break;
+            case MINUS:         emit(OpCode.SUBTRACT, operator, -1); break;
+            case PLUS:          emit(OpCode.ADD, operator, -1); break;
+            case SLASH:         emit(OpCode.DIVIDE, operator, -1); break;
+            case STAR:          emit(OpCode.MULTIPLY, operator, -1); break;
+            default:            error(operator, "Unknown operator.");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Logical expression) {
+        compile(expression.left());
+
+        byte jump = expression.operator().type() == Token.Type.OR ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE;
+        int end = emitJump(jump, expression.operator());
+        emit(OpCode.POP, null, -1);
+        compile(expression.right());
+        patchJump(end, expression.operator());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Call expression) {
+        compile(expression.callee());
+
+        int count = expression.arguments().size();
+        for (var argument : expression.arguments()) {
+            compile(argument);
+        }
+
+        emit(OpCode.CALL, expression.paren(), -count);
+        emitByte(count);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Function expression) {
+        function(null, expression, FunctionType.FUNCTION);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Attribute expression) {
+        compile(expression.object());
+        emit(OpCode.GET_ATTRIBUTE, expression.name(), 0);
+        emitShort(makeConstant(expression.name(), expression.name()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Set expression) {
+        compile(expression.object());
+        compile(expression.value());
+        emit(OpCode.SET_ATTRIBUTE, expression.name(), -1);
+        emitShort(makeConstant(expression.name(), expression.name()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Self expression) {
+        namedVariable("self", expression.keyword(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Parent expression) {
+        namedVariable("self", expression.keyword(), false);
+        namedVariable("parent", expression.keyword(), false);
+        emit(OpCode.GET_PARENT, expression.method(), -1);
+        emitShort(makeConstant(expression.method(), expression.method()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Index expression) {
+        namedVariable(expression.name().lexeme(), expression.name(), false);
+        compile(expression.index());
+        emit(OpCode.GET_INDEX, expression.name(), -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.IndexGet expression) {
+        compile(expression.size());
+        emit(OpCode.NEW_ARRAY, null, 0);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.IndexSet expression) {
+        namedVariable(expression.name().lexeme(), expression.name(), false);
+        compile(expression.index());
+        compile(expression.value());
+        emit(OpCode.SET_INDEX, expression.name(), -2);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Block statement) {
+        beginScope();
+        for (var inner : statement.statements()) {
+            compile(inner);
+        }
+        endScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Expr statement) {
+        compile(statement.expression());
+        emit(OpCode.POP, null, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Node statement) {
+        Token name = statement.name();
+        boolean local = current.scopeDepth > 0;
+
+        declareVariable(name);
+        if (local) {
+            emit(OpCode.NULL, name, 1);
+            markInitialized();
+        }
+
+        Expression.Variable parent = statement.parent();
+        if (parent != null) {
+            beginScope();
+            compile(parent);
+            emit(OpCode.ASSERT_NODE, parent.name(), 0);
+            addLocal("parent", parent.name());
+            markInitialized();
+        }
+
+        int traits = traits(statement.traits());
+
+        for (var method : statement.methods()) {
+            FunctionType type = FunctionType.METHOD;
+            if (method.name().lexeme().equals("define")) {
+                type = FunctionType.DEFINITION;
+            }
+            function(method.name(), method.function(), type);
+        }
+
+        for (var method : statement.metaMethods()) {
+            function(method.name(), method.function(), FunctionType.METHOD);
+        }
+
+        int methods = statement.methods().size();
+        int metaMethods = statement.metaMethods().size();
+        emit(OpCode.NODE, name, 1 - traits - methods - metaMethods);
+        emitShort(makeConstant(name.lexeme(), name));
+        emitByte(parent != null ? 1 : 0);
+        emitByte(traits);
+        emitByte(methods);
+        emitByte(metaMethods);
+
+        if (local) {
+            namedVariable(name.lexeme(), name, true);
+            emit(OpCode.POP, null, -1);
+        } else {
+            emit(OpCode.DEFINE_GLOBAL, name, -1);
+            emitShort(global(name.lexeme(), name));
+        }
+
+        if (parent != null) {
+            endScope();
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Trait statement) {
+        Token name = statement.name();
+        declareVariable(name);
+
+        int traits = traits(statement.traits());
+        for (var method : statement.methods()) {
+            function(method.name(), method.function(), FunctionType.METHOD);
+        }
+
+        int methods = statement.methods().size();
+        emit(OpCode.TRAIT, name, 1 - traits - methods);
+        emitShort(makeConstant(name, name));
+        emitByte(traits);
+        emitByte(methods);
+
+        defineVariable(name);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Function statement) {
+        declareVariable(statement.name());
+        markInitialized();
+        function(statement.name(), statement.function(), FunctionType.FUNCTION);
+        defineVariable(statement.name());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Auto statement) {
+        declareVariable(statement.name());
+        if (statement.value() != null) {
+            compile(statement.value());
+        } else {
+            emit(OpCode.NULL, statement.name(), 1);
+        }
+        defineVariable(statement.name());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.If statement) {
+        compile(statement.condition());
+
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE, null);
+        emit(OpCode.POP, null, -1);
+        compile(statement.thenBranch());
+
+        int elseJump = emitJump(OpCode.JUMP, null);
+        patchJump(thenJump, null);
+
+        // the condition is still on the stack when the then branch is skipped
+        current.stackDepth++;
+        emit(OpCode.POP, null, -1);
+        if (statement.elseBranch() != null) {
+            compile(statement.elseBranch());
+        }
+        patchJump(elseJump, null);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Return statement) {
+        if (statement.value() != null) {
+            compile(statement.value());
+            emit(OpCode.RETURN, statement.keyword(), -1);
+        } else {
+            emitReturn(statement.keyword());
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.While statement) {
+        int loopStart = current.chunk.count();
+        compile(statement.condition());
+
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE, null);
+        emit(OpCode.POP, null, -1);
+
+        Loop loop = new Loop(current.loop, current.scopeDepth);
+        current.loop = loop;
+        compile(statement.body());
+        current.loop = loop.enclosing;
+
+        for (int jump : loop.continues) {
+            patchJump(jump, null);
+        }
+        if (statement.increment() != null) {
+            compile(statement.increment());
+            emit(OpCode.POP, null, -1);
+        }
+
+        emitLoop(loopStart);
+        patchJump(exitJump, null);
+
+        // the condition is still on the stack when the loop exits normally
+        current.stackDepth++;
+        emit(OpCode.POP, null, -1);
+
+        for (int jump : loop.breaks) {
+            patchJump(jump, null);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Break statement) {
+        if (current.loop != null) {
+            current.loop.breaks.add(leaveLoop(current.loop));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Continue statement) {
+        if (current.loop != null) {
+            current.loop.continues.add(leaveLoop(current.loop));
+        }
+
+        return null;
+    }
+
+    /*
+     * Discards the locals of every scope a jump out of the loop body leaves,
+     * but keeps them declared for the code that follows it in the same block.
+     */
+    private int leaveLoop(Loop loop) {
+        int depth = current.stackDepth;
+        for (int i = current.locals.size() - 1; i >= 0 && current.locals.get(i).depth > loop.scopeDepth; i--) {
+            emit(current.locals.get(i).captured ? OpCode.CLOSE_UPVALUE : OpCode.POP, null, -1);
+        }
+        int jump = emitJump(OpCode.JUMP, null);
+        current.stackDepth = depth;
+
+        return jump;
+    }
+
+    private int traits(List<Expression> traits) {
+        for (var trait : traits) {
+            compile(trait);
+            emit(OpCode.ASSERT_TRAIT, ((Expression.Variable) trait).name(), 0);
+        }
+
+        return traits.size();
+    }
+
+    private void function(Token name, Expression.Function function, FunctionType type) {
+        FunctionState state = new FunctionState(current, type, name);
+        current = state;
+
+        beginScope();
+        int arity = 0;
+        if (function.parameters() != null) {
+            for (var parameter : function.parameters()) {
+                addLocal(parameter.lexeme(), parameter);
+                markInitialized();
+                adjustStack(1);
+            }
+            arity = function.parameters().size();
+        }
+
+        for (var statement : function.body()) {
+            compile(statement);
+        }
+
+        FunctionPrototype prototype = endFunction(arity, function.parameters() == null);
+        current = state.enclosing;
+
+        emit(OpCode.CLOSURE, name, 1);
+        emitShort(makeConstant(prototype, name));
+        for (var upvalue : state.upvalues) {
+            emitByte(upvalue.local ? 1 : 0);
+            emitByte(upvalue.index);
+        }
+    }
+
+    private FunctionPrototype endFunction(int arity, boolean getter) {
+        emitReturn(null);
+        return new FunctionPrototype(current.name, arity, getter, current.upvalues.size(), current.maxStack, current.chunk);
+    }
+
+    private void emitReturn(Token token) {
+        if (current.type == FunctionType.DEFINITION) {
+            emit(OpCode.GET_LOCAL, token, 1);
+            emitByte(0);
+        } else {
+            emit(OpCode.NULL, token, 1);
+        }
+        emit(OpCode.RETURN, token, -1);
+    }
+
+    /*
+     * Compiles ++, --, +=, -=, *= and /=. As in the tree-walking interpreter,
+     * the result is only stored back when the target is a local or captured
+     * variable, in which case the expression itself evaluates to null; on a
+     * global, or anything else, it evaluates to the result and stores nothing.
+     */
+    private void compound(Expression target, Expression operand, byte operation, Token operator) {
+        compile(target);
+        if (operand == null) {
+            emitConstant(1L, operator);
+        } else {
+            compile(operand);
+        }
+        emit(operation, operator, -1);
+
+        if (target instanceof Expression.Variable && ((Expression.Variable) target).access() != Expression.Resolvable.Access.GLOBAL) {
+            Token name = ((Expression.Variable) target).name();
+            namedVariable(name.lexeme(), name, true);
+            emit(OpCode.POP, null, -1);
+            emit(OpCode.NULL, null, 1);
+        }
+    }
+
+    private void namedVariable(String name, Token token, boolean assign) {
+        int slot = resolveLocal(current, name);
+        if (slot != -1) {
+            emit(assign ? OpCode.SET_LOCAL : OpCode.GET_LOCAL, token, assign ? 0 : 1);
+            emitByte(slot);
+            return;
+        }
+
+        int index = resolveUpvalue(current, name, token);
+        if (index != -1) {
+            emit(assign ? OpCode.SET_UPVALUE : OpCode.GET_UPVALUE, token, assign ? 0 : 1);
+            emitByte(index);
+            return;
+        }
+
+        emit(assign ? OpCode.SET_GLOBAL : OpCode.GET_GLOBAL, token, assign ? 0 : 1);
+        emitShort(global(name, token));
+    }
+
+    private int resolveLocal(FunctionState state, String name) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int resolveUpvalue(FunctionState state, String name, Token token) {
+        if (state.enclosing == null) {
+            return -1;
+        }
+
+        int local = resolveLocal(state.enclosing, name);
+        if (local != -1) {
+            state.enclosing.locals.get(local).captured = true;
+            return addUpvalue(state, local, true, token);
+        }
+
+        int upvalue = resolveUpvalue(state.enclosing, name, token);
+        if (upvalue != -1) {
+            return addUpvalue(state, upvalue, false, token);
+        }
+
+        return -1;
+    }
+
+    private int addUpvalue(FunctionState state, int index, boolean local, Token token) {
+        for (int i = 0; i < state.upvalues.size(); i++) {
+            UpvalueReference upvalue = state.upvalues.get(i);
+            if (upvalue.index == index && upvalue.local == local) {
+                return i;
+            }
+        }
+
+        if (state.upvalues.size() == MAX_UPVALUES) {
+            error(token, "Too many closure variables in function.");
+            return 0;
+        }
+
+        state.upvalues.add(new UpvalueReference(index, local));
+        return state.upvalues.size() - 1;
+    }
+
+    private void declareVariable(Token name) {
+        if (current.scopeDepth == 0) {
+            return;
+        }
+
+        addLocal(name.lexeme(), name);
+    }
+
+    private void addLocal(String name, Token token) {
+        if (current.locals.size() == MAX_LOCALS) {
+            error(token, "Too many local variables in function.");
+            return;
+        }
+
+        current.locals.add(new Local(name, -1));
+    }
+
+    private void markInitialized() {
+        if (current.scopeDepth == 0) {
+            return;
+        }
+
+        current.locals.get(current.locals.size() - 1).depth = current.scopeDepth;
+    }
+
+    private void defineVariable(Token name) {
+        if (current.scopeDepth > 0) {
+            markInitialized();
+            return;
+        }
+
+        emit(OpCode.DEFINE_GLOBAL, name, -1);
+        emitShort(global(name.lexeme(), name));
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+
+        List<Local> locals = current.locals;
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emit(locals.get(locals.size() - 1).captured ? OpCode.CLOSE_UPVALUE : OpCode.POP, null, -1);
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    private void compile(Statement statement) {
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void emit(byte opcode, Token token, int stackEffect) {
+        current.chunk.write(opcode, token);
+        adjustStack(stackEffect);
+    }
+
+    private void emitByte(int value) {
+        current.chunk.write(value, null);
+    }
+
+    private void emitShort(int value) {
+        emitByte((value >> 8) & 0xff);
+        emitByte(value & 0xff);
+    }
+
+    private void emitConstant(Object value, Token token) {
+        emit(OpCode.CONSTANT, token, 1);
+        emitShort(makeConstant(value, token));
+    }
+
+    private int emitJump(byte opcode, Token token) {
+        emit(opcode, token, 0);
+        emitByte(0xff);
+        emitByte(0xff);
+        return current.chunk.count() - 2;
+    }
+
+    private void patchJump(int offset, Token token) {
+        int jump = current.chunk.count() - offset - 2;
+        if (jump > MAX_JUMP) {
+            error(token, "Too much code to jump over.");
+        }
+
+        current.chunk.patch(offset, (jump >> 8) & 0xff);
+        current.chunk.patch(offset + 1, jump & 0xff);
+    }
+
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP, null, 0);
+
+        int offset = current.chunk.count() - loopStart + 2;
+        if (offset > MAX_JUMP) {
+            error(null, "Loop body too large.");
+        }
+
+        emitShort(offset);
+    }
+
+    private int makeConstant(Object value, Token token) {
+        int index = current.chunk.addConstant(value);
+        if (index >= MAX_CONSTANTS) {
+            error(token, "Too many constants in one function.");
+            return 0;
+        }
+
+        return index;
+    }
+
+    private int global(String name, Token token) {
+        int index = globals.indexOf(name);
+        if (index >= MAX_GLOBALS) {
+            error(token, "Too many global variables.");
+            return 0;
+        }
+
+        return index;
+    }
+
+    private void adjustStack(int effect) {
+        current.stackDepth += effect;
+        if (current.stackDepth > current.maxStack) {
+            current.maxStack = current.stackDepth;
+        }
+    }
+
+    private void error(Token token, String message) {
+        if (token == null) {
+            Schema.reporter.error(message);
+        } else {
+            Schema.reporter.error(token, message);
+        }
+    }
+
+    private static final class FunctionState {
+
+        final FunctionState enclosing;
+        final FunctionType type;
+        final Token name;
+        final Chunk chunk;
+        final List<Local> locals;
+        final List<UpvalueReference> upvalues;
+        int scopeDepth;
+        int stackDepth;
+        int maxStack;
+        Loop loop;
+
+        FunctionState(FunctionState enclosing, FunctionType type, Token name) {
+            this.enclosing = enclosing;
+            this.type = type;
+            this.name = name;
+            this.chunk = new Chunk();
+            this.locals = new ArrayList<Local>();
+            this.upvalues = new ArrayList<UpvalueReference>();
+            this.scopeDepth = 0;
+            this.loop = null;
+
+            // slot zero holds the receiver of a method, or the callee itself
+            boolean method = type == FunctionType.METHOD || type == FunctionType.DEFINITION;
+            Local receiver = new Local(method ? "self" : "", 0);
+            this.locals.add(receiver);
+            this.stackDepth = 1;
+            this.maxStack = 1;
+        }
+    }
+
+    private static final class Local {
+
+        final String name;
+        int depth;
+        boolean captured;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+            this.captured = false;
+        }
+    }
+
+    private record UpvalueReference(int index, boolean local) {}
+
+    private static final class Loop {
+
+        final Loop enclosing;
+        final int scopeDepth;
+        final List<Integer> breaks;
+        final List<Integer> continues;
+
+        Loop(Loop enclosing, int scopeDepth) {
+            this.enclosing = enclosing;
+            this.scopeDepth = scopeDepth;
+            this.breaks = new ArrayList<Integer>();
+            this.continues = new ArrayList<Integer>();
+        }
+    }
+}
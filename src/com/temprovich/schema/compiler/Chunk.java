@@ -0,0 +1,73 @@
+package com.temprovich.schema.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Growable instruction buffer used while compiling a single function. Every
+ * opcode may be tagged with the token it originated from so the virtual
+ * machine can report runtime errors against the right source line.
+ */
+public final class Chunk {
+
+    private byte[] code;
+    private Token[] tokens;
+    private int count;
+    private final List<Object> constants;
+    private final Map<Object, Integer> constantIndices;
+
+    public Chunk() {
+        this.code = new byte[64];
+        this.tokens = new Token[64];
+        this.count = 0;
+        this.constants = new ArrayList<Object>();
+        this.constantIndices = new HashMap<Object, Integer>();
+    }
+
+    public int write(int value, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+
+        code[count] = (byte) value;
+        tokens[count] = token;
+        return count++;
+    }
+
+    public void patch(int offset, int value) {
+        code[offset] = (byte) value;
+    }
+
+    public int addConstant(Object value) {
+        Integer index = constantIndices.get(value);
+        if (index != null) {
+            return index;
+        }
+
+        constants.add(value);
+        constantIndices.put(value, constants.size() - 1);
+        return constants.size() - 1;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public byte[] code() {
+        return Arrays.copyOf(code, count);
+    }
+
+    public Token[] tokens() {
+        return Arrays.copyOf(tokens, count);
+    }
+
+    public Object[] constants() {
+        return constants.toArray();
+    }
+}
@@ -0,0 +1,45 @@
+package com.temprovich.schema.compiler;
+
+import java.util.List;
+
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.SchemaMethod;
+
+public final class Closure implements SchemaMethod {
+
+    final VirtualMachine vm;
+    final FunctionPrototype prototype;
+    final Upvalue[] upvalues;
+
+    Closure(VirtualMachine vm, FunctionPrototype prototype) {
+        this.vm = vm;
+        this.prototype = prototype;
+        this.upvalues = new Upvalue[prototype.upvalueCount];
+    }
+
+    @Override
+    public BoundMethod bind(SchemaInstance instance) {
+        return new BoundMethod(instance, this);
+    }
+
+    @Override
+    public boolean isGetter() {
+        return prototype.getter;
+    }
+
+    @Override
+    public int arity() {
+        return prototype.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return vm.invoke(this, this, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return prototype.toString();
+    }
+}
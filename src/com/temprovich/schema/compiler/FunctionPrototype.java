@@ -0,0 +1,48 @@
+package com.temprovich.schema.compiler;
+
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * The compiled, immutable form of a function body. A prototype is shared by
+ * every closure created from the same declaration.
+ */
+public final class FunctionPrototype {
+
+    final Token name;
+    final int arity;
+    final boolean getter;
+    final int upvalueCount;
+    final int maxStack;
+    final byte[] code;
+    final Token[] tokens;
+    final Object[] constants;
+
+    FunctionPrototype(Token name, int arity, boolean getter, int upvalueCount, int maxStack, Chunk chunk) {
+        this.name = name;
+        this.arity = arity;
+        this.getter = getter;
+        this.upvalueCount = upvalueCount;
+        this.maxStack = maxStack;
+        this.code = chunk.code();
+        this.tokens = chunk.tokens();
+        this.constants = chunk.constants();
+    }
+
+    /*
+     * Finds the token of the instruction that covers the given offset.
+     */
+    Token tokenAt(int offset) {
+        for (int i = Math.min(offset, tokens.length - 1); i >= 0; i--) {
+            if (tokens[i] != null) {
+                return tokens[i];
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "<script>" : "<fn + " + name.lexeme() + ">";
+    }
+}
@@ -0,0 +1,62 @@
+package com.temprovich.schema.compiler;
+
+/*
+ * Instruction set of the virtual machine. Operands follow the opcode inline;
+ * constant indices and jump offsets are two bytes (big endian), local slots,
+ * upvalue indices and argument counts are a single unsigned byte.
+ */
+public final class OpCode {
+
+    public static final byte CONSTANT       = 0;  // [u16 constant]
+    public static final byte NULL           = 1;
+    public static final byte TRUE           = 2;
+    public static final byte FALSE          = 3;
+    public static final byte POP            = 4;
+
+    public static final byte GET_LOCAL      = 5;  // [u8 slot]
+    public static final byte SET_LOCAL      = 6;  // [u8 slot]
+    public static final byte GET_UPVALUE    = 7;  // [u8 index]
+    public static final byte SET_UPVALUE    = 8;  // [u8 index]
+    public static final byte GET_GLOBAL     = 9;  // [u16 global]
+    public static final byte DEFINE_GLOBAL  = 10; // [u16 global]
+    public static final byte SET_GLOBAL     = 11; // [u16 global]
+
+    public static final byte GET_ATTRIBUTE  = 12; // [u16 name token]
+    public static final byte SET_ATTRIBUTE  = 13; // [u16 name token]
+    public static final byte GET_PARENT     = 14; // [u16 method token]
+    public static final byte GET_INDEX      = 15;
+    public static final byte SET_INDEX      = 16;
+    public static final byte NEW_ARRAY      = 17;
+
+    public static final byte EQUAL          = 18;
+    public static final byte NOT_EQUAL      = 19;
+    public static final byte GREATER        = 20;
+    public static final byte GREATER_EQUAL  = 21;
+    public static final byte LESS           = 22;
+    public static final byte LESS_EQUAL     = 23;
+    public static final byte ADD            = 24;
+    public static final byte SUBTRACT       = 25;
+    public static final byte MULTIPLY       = 26;
+    public static final byte DIVIDE         = 27;
+    public static final byte NOT            = 28;
+    public static final byte NEGATE         = 29;
+
+    public static final byte JUMP           = 30; // [u16 offset]
+    public static final byte JUMP_IF_FALSE  = 31; // [u16 offset]
+    public static final byte JUMP_IF_TRUE   = 32; // [u16 offset]
+    public static final byte LOOP           = 33; // [u16 offset]
+
+    public static final byte CALL           = 34; // [u8 argc]
+    public static final byte CLOSURE        = 35; // [u16 prototype] ([u8 local] [u8 index])*
+    public static final byte CLOSE_UPVALUE  = 36;
+    public static final byte RETURN         = 37;
+
+    public static final byte NODE           = 38; // [u16 name] [u8 parent] [u8 traits] [u8 methods] [u8 meta methods]
+    public static final byte TRAIT          = 39; // [u16 name token] [u8 traits] [u8 methods]
+    public static final byte ASSERT_NODE    = 40;
+    public static final byte ASSERT_TRAIT   = 41;
+
+    private OpCode() {
+        throw new AssertionError("No instances of OpCode");
+    }
+}
@@ -0,0 +1,20 @@
+package com.temprovich.schema.compiler;
+
+/*
+ * A variable captured by a closure. While the variable is still live on the
+ * virtual machine stack the upvalue is open and refers to its stack slot; once
+ * the slot goes out of scope the value is moved into the upvalue itself.
+ */
+final class Upvalue {
+
+    final int slot;
+    Object closed;
+    boolean open;
+    Upvalue next;
+
+    Upvalue(int slot, Upvalue next) {
+        this.slot = slot;
+        this.open = true;
+        this.next = next;
+    }
+}
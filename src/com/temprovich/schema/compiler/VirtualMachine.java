@@ -0,0 +1,651 @@
+package com.temprovich.schema.compiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.ExecutionEngine;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.SchemaTrait;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.SchemaArray;
+import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaInstance;
+import com.temprovich.schema.instance.SchemaMethod;
+import com.temprovich.schema.instance.SchemaNode;
+import com.temprovich.schema.lexer.Token;
+import com.temprovich.schema.natives.SchemaNative;
+import com.temprovich.schema.natives.SchemaNativeBase;
+import com.temprovich.schema.natives.SchemaNativeInternal;
+
+/*
+ * Stack based virtual machine executing the output of the BytecodeCompiler.
+ * All frames share one value stack; a frame's locals start at its base slot,
+ * which holds the callee (or the receiver of a method).
+ */
+public class VirtualMachine implements ExecutionEngine {
+
+    private static final int FRAMES_MAX = 1 << 16;
+
+    private static SchemaNative[] preincluded = new SchemaNative[] {
+        new SchemaNativeInternal(),
+        new SchemaNativeBase()
+    };
+
+    private final Globals globals;
+    private Object[] stack;
+    private int top;
+    private CallFrame[] frames;
+    private int frameCount;
+    private Upvalue openUpvalues;
+
+    public VirtualMachine() {
+        this.globals = new Globals();
+        for (var preinclude : preincluded) {
+            preinclude.inject(globals);
+        }
+        this.stack = new Object[256];
+        this.top = 0;
+        this.frames = new CallFrame[64];
+        this.frameCount = 0;
+        this.openUpvalues = null;
+    }
+
+    @Override
+    public Globals globals() {
+        return globals;
+    }
+
+    /*
+     * Compiles and runs a resolved program. The compiler lays out its own
+     * stack slots, so the resolver's frame size is not needed.
+     */
+    @Override
+    public void interpret(List<Statement> statements, int frameSize) {
+        BytecodeCompiler compiler = new BytecodeCompiler(globals);
+        FunctionPrototype script = compiler.compile(statements);
+
+        if (Schema.reporter.hadError()) {
+            return;
+        }
+
+        interpret(script);
+    }
+
+    public void interpret(FunctionPrototype script) {
+        try {
+            Closure closure = new Closure(this, script);
+            invoke(closure, closure, null);
+        } catch (SchemaRuntimeError error) {
+            top = 0;
+            frameCount = 0;
+            openUpvalues = null;
+            Schema.reporter.runtimeError(error);
+        }
+    }
+
+    /*
+     * Calls a closure from outside the dispatch loop and runs it to completion.
+     */
+    Object invoke(Closure closure, Object receiver, List<Object> arguments) {
+        int argc = arguments == null ? 0 : arguments.size();
+        int depth = frameCount;
+
+        ensureCapacity(top + argc + 1);
+        stack[top++] = receiver;
+        for (int i = 0; i < argc; i++) {
+            stack[top++] = arguments.get(i);
+        }
+
+        callClosure(closure, argc);
+        return run(depth);
+    }
+
+    private Object run(int exitDepth) {
+        CallFrame frame = frames[frameCount - 1];
+        Closure closure = frame.closure;
+        byte[] code = closure.prototype.code;
+        Object[] constants = closure.prototype.constants;
+        Object[] stack = this.stack;
+        int base = frame.base;
+        int ip = frame.ip;
+        int sp = top;
+
+        for (;;) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT: {
+                    stack[sp++] = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    break;
+                }
+                case OpCode.NULL:  stack[sp++] = null; break;
+                case OpCode.TRUE:  stack[sp++] = Boolean.TRUE; break;
+                case OpCode.FALSE: stack[sp++] = Boolean.FALSE; break;
+                case OpCode.POP:   sp--; break;
+
+                case OpCode.GET_LOCAL: stack[sp++] = stack[base + (code[ip++] & 0xff)]; break;
+                case OpCode.SET_LOCAL: stack[base + (code[ip++] & 0xff)] = stack[sp - 1]; break;
+                case OpCode.GET_UPVALUE: {
+                    Upvalue upvalue = closure.upvalues[code[ip++] & 0xff];
+                    stack[sp++] = upvalue.open ? stack[upvalue.slot] : upvalue.closed;
+                    break;
+                }
+                case OpCode.SET_UPVALUE: {
+                    Upvalue upvalue = closure.upvalues[code[ip++] & 0xff];
+                    if (upvalue.open) {
+                        stack[upvalue.slot] = stack[sp - 1];
+                    } else {
+                        upvalue.closed = stack[sp - 1];
+                    }
+                    break;
+                }
+                case OpCode.GET_GLOBAL: {
+                    Object value = globals.fetch(((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    ip += 2;
+                    if (value == Globals.UNDEFINED) {
+                        throw undefinedVariable(closure, ip);
+                    }
+                    stack[sp++] = value;
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL: {
+                    globals.store(((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff), stack[--sp]);
+                    ip += 2;
+                    break;
+                }
+                case OpCode.SET_GLOBAL: {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (!globals.isDefined(index)) {
+                        throw undefinedVariable(closure, ip);
+                    }
+                    globals.store(index, stack[sp - 1]);
+                    break;
+                }
+
+                case OpCode.GET_ATTRIBUTE: {
+                    Token name = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object object = stack[sp - 1];
+                    if (!(object instanceof SchemaInstance)) {
+                        throw new SchemaRuntimeError(name, "Only qualified instances have accessible attributes.");
+                    }
+
+                    Object value = ((SchemaInstance) object).get(name);
+                    if (!(value instanceof SchemaMethod) || !((SchemaMethod) value).isGetter()) {
+                        stack[sp - 1] = value;
+                        break;
+                    }
+
+                    // getters are called as soon as they are accessed
+                    frame.ip = ip;
+                    top = sp;
+                    if (value instanceof BoundMethod) {
+                        BoundMethod method = (BoundMethod) value;
+                        stack[sp - 1] = method.receiver;
+                        callClosure(method.method, 0);
+                    } else {
+                        stack[sp - 1] = ((SchemaMethod) value).call0(null);
+                    }
+
+                    frame = frames[frameCount - 1];
+                    closure = frame.closure;
+                    code = closure.prototype.code;
+                    constants = closure.prototype.constants;
+                    stack = this.stack;
+                    base = frame.base;
+                    ip = frame.ip;
+                    sp = top;
+                    break;
+                }
+                case OpCode.SET_ATTRIBUTE: {
+                    Token name = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object value = stack[--sp];
+                    Object object = stack[sp - 1];
+                    if (!(object instanceof SchemaInstance)) {
+                        throw new SchemaRuntimeError(name, "Only instances have fields.");
+                    }
+
+                    ((SchemaInstance) object).set(name, value);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case OpCode.GET_PARENT: {
+                    Token name = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    SchemaNode parent = (SchemaNode) stack[--sp];
+                    SchemaInstance instance = (SchemaInstance) stack[sp - 1];
+
+                    SchemaMethod method = parent.fetchMethod(name.lexeme());
+                    if (method == null) {
+                        throw new SchemaRuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
+                    }
+
+                    stack[sp - 1] = method.bind(instance);
+                    break;
+                }
+                case OpCode.GET_INDEX: {
+                    Object index = stack[--sp];
+                    SchemaArray array = array(closure, ip, stack[sp - 1]);
+                    stack[sp - 1] = array.getValue(index(closure, ip, array, index));
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Object value = stack[--sp];
+                    Object index = stack[--sp];
+                    SchemaArray array = array(closure, ip, stack[sp - 1]);
+                    array.setValue(index(closure, ip, array, index), value);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case OpCode.NEW_ARRAY: {
+                    if (!Arithmetic.isNumber(stack[sp - 1])) {
+                        throw error(closure, ip, "Array size must be a number.");
+                    }
+                    int length = Arithmetic.toIndex(stack[sp - 1]);
+                    if (length < 0) {
+                        throw error(closure, ip, "Array size must be a positive number.");
+                    }
+                    stack[sp - 1] = new SchemaArray(length);
+                    break;
+                }
+
+                case OpCode.EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.GREATER: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.greater(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.greaterEqual(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.LESS: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.less(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.lessEqual(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.add(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.subtract(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.multiply(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Arithmetic.divide(operator(closure, ip), stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.NOT: stack[sp - 1] = !predicate(stack[sp - 1]); break;
+                case OpCode.NEGATE: {
+                    stack[sp - 1] = Arithmetic.negate(operator(closure, ip), stack[sp - 1]);
+                    break;
+                }
+
+                case OpCode.JUMP: {
+                    ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                }
+                case OpCode.JUMP_IF_FALSE: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (!predicate(stack[sp - 1])) {
+                        ip += offset;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_TRUE: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (predicate(stack[sp - 1])) {
+                        ip += offset;
+                    }
+                    break;
+                }
+                case OpCode.LOOP: {
+                    ip -= (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) - 2;
+                    break;
+                }
+
+                case OpCode.CALL: {
+                    int argc = code[ip++] & 0xff;
+                    frame.ip = ip;
+                    top = sp;
+                    callValue(stack[sp - argc - 1], argc);
+
+                    frame = frames[frameCount - 1];
+                    closure = frame.closure;
+                    code = closure.prototype.code;
+                    constants = closure.prototype.constants;
+                    stack = this.stack;
+                    base = frame.base;
+                    ip = frame.ip;
+                    sp = top;
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    FunctionPrototype prototype = (FunctionPrototype) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Closure created = new Closure(this, prototype);
+                    for (int i = 0; i < created.upvalues.length; i++) {
+                        boolean local = code[ip++] == 1;
+                        int index = code[ip++] & 0xff;
+                        created.upvalues[i] = local ? captureUpvalue(base + index) : closure.upvalues[index];
+                    }
+                    stack[sp++] = created;
+                    break;
+                }
+                case OpCode.CLOSE_UPVALUE: {
+                    closeUpvalues(sp - 1);
+                    sp--;
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Object result = stack[--sp];
+                    closeUpvalues(base);
+                    sp = base;
+                    frameCount--;
+
+                    if (frameCount == exitDepth) {
+                        top = sp;
+                        return result;
+                    }
+
+                    stack[sp++] = result;
+                    frame = frames[frameCount - 1];
+                    closure = frame.closure;
+                    code = closure.prototype.code;
+                    constants = closure.prototype.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+
+                case OpCode.NODE: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    boolean inherits = code[ip + 2] == 1;
+                    int traitCount = code[ip + 3] & 0xff;
+                    int methodCount = code[ip + 4] & 0xff;
+                    int metaMethodCount = code[ip + 5] & 0xff;
+                    ip += 6;
+
+                    Token token = closure.prototype.tokenAt(ip - 7);
+                    int start = sp - traitCount - methodCount - metaMethodCount;
+                    SchemaNode parent = inherits ? (SchemaNode) stack[start - 1] : null;
+
+                    Map<String, SchemaMethod> traits = applyTraits(stack, start, traitCount, token);
+
+                    Map<String, SchemaMethod> metaMethods = new HashMap<String, SchemaMethod>(traits);
+                    for (int i = 0; i < metaMethodCount; i++) {
+                        Closure method = (Closure) stack[start + traitCount + methodCount + i];
+                        metaMethods.put(method.prototype.name.lexeme(), method);
+                    }
+                    SchemaNode metaNode = new SchemaNode(null, parent, name + ":metanode", metaMethods);
+
+                    Map<String, SchemaMethod> methods = new HashMap<String, SchemaMethod>(traits);
+                    for (int i = 0; i < methodCount; i++) {
+                        Closure method = (Closure) stack[start + traitCount + i];
+                        methods.put(method.prototype.name.lexeme(), method);
+                    }
+
+                    sp = start;
+                    stack[sp++] = new SchemaNode(metaNode, parent, name, methods);
+                    break;
+                }
+                case OpCode.TRAIT: {
+                    Token name = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    int traitCount = code[ip + 2] & 0xff;
+                    int methodCount = code[ip + 3] & 0xff;
+                    ip += 4;
+
+                    int start = sp - traitCount - methodCount;
+                    Map<String, SchemaMethod> methods = applyTraits(stack, start, traitCount, name);
+                    for (int i = 0; i < methodCount; i++) {
+                        Closure method = (Closure) stack[start + traitCount + i];
+                        if (methods.containsKey(method.prototype.name.lexeme())) {
+                            throw new SchemaRuntimeError(method.prototype.name, "Method '" + method.prototype.name.lexeme() + "' already defined.");
+                        }
+                        methods.put(method.prototype.name.lexeme(), method);
+                    }
+
+                    sp = start;
+                    stack[sp++] = new SchemaTrait(name, methods);
+                    break;
+                }
+                case OpCode.ASSERT_NODE: {
+                    if (!(stack[sp - 1] instanceof SchemaNode)) {
+                        throw error(closure, ip, "Parent must be a node.");
+                    }
+                    break;
+                }
+                case OpCode.ASSERT_TRAIT: {
+                    if (!(stack[sp - 1] instanceof SchemaTrait)) {
+                        throw error(closure, ip, "Only traits can be applied.");
+                    }
+                    break;
+                }
+
+                default:
+                    throw error(closure, ip, "Unknown opcode " + code[ip - 1] + ".");
+            }
+        }
+    }
+
+    private void callValue(Object callee, int argc) {
+        if (callee instanceof Closure) {
+            callClosure((Closure) callee, argc);
+            return;
+        }
+
+        if (callee instanceof BoundMethod) {
+            BoundMethod method = (BoundMethod) callee;
+            stack[top - argc - 1] = method.receiver;
+            callClosure(method.method, argc);
+            return;
+        }
+
+        if (!(callee instanceof SchemaCallable)) {
+            throw error("Can only call functions and classes.");
+        }
+
+        SchemaCallable function = (SchemaCallable) callee;
+        if (argc != function.arity() && !function.isVariadic()) {
+            throw error("Function received " + argc + " arguments, but expects " + function.arity() + ".");
+        }
+
+        if (callee instanceof SchemaNode) {
+            SchemaNode node = (SchemaNode) callee;
+            SchemaInstance instance = new SchemaInstance(node);
+            stack[top - argc - 1] = instance;
+
+            SchemaMethod initializer = node.fetchMethod("define");
+            if (initializer instanceof Closure) {
+                callClosure((Closure) initializer, argc);
+                return;
+            }
+            if (initializer != null) {
+                initializer.bind(instance).call(null, arguments(argc));
+            }
+
+            top -= argc;
+            return;
+        }
+
+        Object result;
+        try {
+            result = function.call(null, arguments(argc));
+        } catch (SchemaRuntimeError error) {
+            // natives and bound builtins raise their errors without a token
+            throw error.token() == null ? error(error.getMessage()) : error;
+        }
+        top -= argc + 1;
+        stack[top++] = result;
+    }
+
+    private void callClosure(Closure closure, int argc) {
+        FunctionPrototype prototype = closure.prototype;
+        if (argc != prototype.arity) {
+            throw error("Function received " + argc + " arguments, but expects " + prototype.arity + ".");
+        }
+
+        if (frameCount == frames.length) {
+            if (frameCount == FRAMES_MAX) {
+                throw error("Stack overflow.");
+            }
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+
+        int base = top - argc - 1;
+        ensureCapacity(base + prototype.maxStack);
+
+        CallFrame frame = frames[frameCount];
+        if (frame == null) {
+            frame = frames[frameCount] = new CallFrame();
+        }
+        frame.closure = closure;
+        frame.base = base;
+        frame.ip = 0;
+        frameCount++;
+    }
+
+    private Object[] arguments(int argc) {
+        return Arrays.copyOfRange(stack, top - argc, top);
+    }
+
+    private Map<String, SchemaMethod> applyTraits(Object[] stack, int start, int count, Token token) {
+        Map<String, SchemaMethod> methods = new HashMap<String, SchemaMethod>();
+
+        for (int i = start; i < start + count; i++) {
+            SchemaTrait trait = (SchemaTrait) stack[i];
+            for (var entry : trait.methods().entrySet()) {
+                if (methods.containsKey(entry.getKey())) {
+                    throw new SchemaRuntimeError(token, "Method '" + entry.getKey() + "' already defined.");
+                }
+
+                methods.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return methods;
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+
+        if (upvalue != null && upvalue.slot == slot) {
+            return upvalue;
+        }
+
+        Upvalue created = new Upvalue(slot, upvalue);
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+
+        return created;
+    }
+
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.open = false;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
+    }
+
+    private SchemaArray array(Closure closure, int ip, Object value) {
+        if (!(value instanceof SchemaArray)) {
+            throw error(closure, ip, "Only arrays can be indexed.");
+        }
+
+        return (SchemaArray) value;
+    }
+
+    private int index(Closure closure, int ip, SchemaArray array, Object index) {
+        if (!Arithmetic.isNumber(index)) {
+            throw error(closure, ip, "Array index must be a number.");
+        }
+
+        int i = Arithmetic.toIndex(index);
+        if (i < 0 || i >= array.length()) {
+            throw error(closure, ip, "Array index out of bounds.");
+        }
+
+        return i;
+    }
+
+    private static Token operator(Closure closure, int ip) {
+        return closure.prototype.tokenAt(ip - 1);
+    }
+
+    private static boolean predicate(Object value) {
+        return Arithmetic.isTruthy(value);
+    }
+
+    private static boolean isEqual(Object a, Object b) {
+        return Arithmetic.isEqual(a, b);
+    }
+
+    private SchemaRuntimeError undefinedVariable(Closure closure, int ip) {
+        Token name = closure.prototype.tokenAt(ip - 1);
+        return new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+    }
+
+    private SchemaRuntimeError error(String message) {
+        CallFrame frame = frames[frameCount - 1];
+        return error(frame.closure, frame.ip, message);
+    }
+
+    private SchemaRuntimeError error(Closure closure, int ip, String message) {
+        return new SchemaRuntimeError(closure.prototype.tokenAt(ip - 1), message);
+    }
+
+    private static final class CallFrame {
+
+        Closure closure;
+        int base;
+        int ip;
+    }
+}
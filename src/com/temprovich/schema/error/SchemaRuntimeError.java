@@ -19,4 +19,12 @@ public sealed class SchemaRuntimeError extends RuntimeException permits SchemaPa
     public Token token() {
         return token;
     }
+
+    /*
+     * This error, or the same one raised at the token if it has none, for
+     * the call of a native or builtin to report where it was called.
+     */
+    public SchemaRuntimeError at(Token token) {
+        return this.token != null ? this : new SchemaRuntimeError(token, getMessage());
+    }
 }
\ No newline at end of file
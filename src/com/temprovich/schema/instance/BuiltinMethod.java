@@ -0,0 +1,152 @@
+package com.temprovich.schema.instance;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+
+/*
+ * A method of a builtin instance type. There is one per type and name, kept
+ * in a static table of the type, and the receiver is passed to it on every
+ * call instead of being bound, so a call site that has looked one up calls
+ * it without allocating anything. Binding only happens when the method is
+ * read as a value.
+ */
+public abstract class BuiltinMethod {
+
+    private final String name;
+    private final int minArity;
+    private final int maxArity;
+
+    private BuiltinMethod(String name, int minArity, int maxArity) {
+        this.name = name;
+        this.minArity = minArity;
+        this.maxArity = maxArity;
+    }
+
+    public static Map<String, BuiltinMethod> table(BuiltinMethod... methods) {
+        Map<String, BuiltinMethod> table = new HashMap<String, BuiltinMethod>();
+        for (BuiltinMethod method : methods) {
+            table.put(method.name, method);
+        }
+
+        return table;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /*
+     * The number of arguments, or -1 for a method with optional arguments.
+     */
+    public int arity() {
+        return minArity == maxArity ? minArity : -1;
+    }
+
+    public boolean accepts(int count) {
+        return count >= minArity && count <= maxArity;
+    }
+
+    public String expected() {
+        return minArity == maxArity ? Integer.toString(minArity) : minArity + " to " + maxArity;
+    }
+
+    /*
+     * Callers check the argument count first; only the entry point matching
+     * it is ever called.
+     */
+    public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+        throw new AssertionError(name);
+    }
+
+    public Object call1(Interpreter interpreter, SchemaInstance receiver, Object a) {
+        throw new AssertionError(name);
+    }
+
+    public Object call2(Interpreter interpreter, SchemaInstance receiver, Object a, Object b) {
+        throw new AssertionError(name);
+    }
+
+    public Object call(Interpreter interpreter, SchemaInstance receiver, Object[] arguments) {
+        switch (arguments.length) {
+            case 0: return call0(interpreter, receiver);
+            case 1: return call1(interpreter, receiver, arguments[0]);
+            default: return call2(interpreter, receiver, arguments[0], arguments[1]);
+        }
+    }
+
+    public SchemaCallable bind(SchemaInstance receiver) {
+        BuiltinMethod method = this;
+        return new SchemaCallable() {
+
+            @Override
+            public int arity() { return method.arity(); }
+
+            // callers only check the count of arguments to methods without optional ones
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) { return call(interpreter, arguments.toArray()); }
+
+            @Override
+            public Object call(Interpreter interpreter, Object[] arguments) { check(arguments.length); return method.call(interpreter, receiver, arguments); }
+
+            @Override
+            public Object call0(Interpreter interpreter) { check(0); return method.call0(interpreter, receiver); }
+
+            @Override
+            public Object call1(Interpreter interpreter, Object a) { check(1); return method.call1(interpreter, receiver, a); }
+
+            @Override
+            public Object call2(Interpreter interpreter, Object a, Object b) { check(2); return method.call2(interpreter, receiver, a, b); }
+
+            @Override
+            public String toString() { return "<native method " + name + ">"; }
+        };
+    }
+
+    private void check(int count) {
+        if (!accepts(count)) {
+            throw new SchemaRuntimeError("Function received " + count + " arguments, but expects " + expected() + ".");
+        }
+    }
+
+    public static abstract class Method0 extends BuiltinMethod {
+
+        protected Method0(String name) { super(name, 0, 0); }
+
+        @Override
+        public abstract Object call0(Interpreter interpreter, SchemaInstance receiver);
+    }
+
+    public static abstract class Method1 extends BuiltinMethod {
+
+        protected Method1(String name) { super(name, 1, 1); }
+
+        @Override
+        public abstract Object call1(Interpreter interpreter, SchemaInstance receiver, Object a);
+    }
+
+    public static abstract class Method2 extends BuiltinMethod {
+
+        protected Method2(String name) { super(name, 2, 2); }
+
+        @Override
+        public abstract Object call2(Interpreter interpreter, SchemaInstance receiver, Object a, Object b);
+    }
+
+    /*
+     * A method taking one optional argument.
+     */
+    public static abstract class Method01 extends BuiltinMethod {
+
+        protected Method01(String name) { super(name, 0, 1); }
+
+        @Override
+        public abstract Object call0(Interpreter interpreter, SchemaInstance receiver);
+
+        @Override
+        public abstract Object call1(Interpreter interpreter, SchemaInstance receiver, Object a);
+    }
+}
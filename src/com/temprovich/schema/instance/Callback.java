@@ -0,0 +1,54 @@
+package com.temprovich.schema.instance;
+
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+
+/*
+ * A function passed to a native collection method, checked once for the
+ * number of arguments it is called with. Script functions of the tree
+ * engines take their arguments straight into a frame; any other callable
+ * gets them in an array the callback keeps and refills on every call, so
+ * a loop over a collection allocates nothing for its arguments.
+ */
+final class Callback {
+
+    private final Interpreter interpreter;
+    private final SchemaCallable function;
+    private final boolean direct;
+    private final Object[] arguments;
+
+    Callback(Interpreter interpreter, Object function, int count) {
+        if (!(function instanceof SchemaCallable)) {
+            throw new SchemaRuntimeError("Can only call functions and classes.");
+        }
+
+        SchemaCallable callable = (SchemaCallable) function;
+        if (callable.arity() != count && !callable.isVariadic()) {
+            throw new SchemaRuntimeError("Function received " + count + " arguments, but expects " + callable.arity() + ".");
+        }
+
+        this.interpreter = interpreter;
+        this.function = callable;
+        this.direct = function instanceof SchemaFunction;
+        this.arguments = new Object[count];
+    }
+
+    Object call(Object a) {
+        if (direct) {
+            return function.call1(interpreter, a);
+        }
+
+        arguments[0] = a;
+        return function.call(interpreter, arguments);
+    }
+
+    Object call(Object a, Object b) {
+        if (direct) {
+            return function.call2(interpreter, a, b);
+        }
+
+        arguments[0] = a;
+        arguments[1] = b;
+        return function.call(interpreter, arguments);
+    }
+}
@@ -0,0 +1,309 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.temprovich.schema.Arithmetic;
+
+/*
+ * The entries of a map, in an open-addressing table with linear probing.
+ * The table only holds entry numbers; the entries themselves sit in
+ * parallel arrays in the order they were first put, which is the order
+ * keys(), values() and toString() see them in.
+ *
+ * Keys compare as they do under ==: a float key with a whole value is
+ * stored as the integer it equals, so 1 and 1.0 are the same key. Integer
+ * and float keys are kept unboxed, as their bits, and are compared without
+ * calling equals().
+ */
+public final class HashStorage {
+
+    // markers in keys[] for numeric keys kept in numbers[], and for removed entries
+    private static final Object LONG_KEY = new Object();
+    private static final Object DOUBLE_KEY = new Object();
+    private static final Object REMOVED = new Object();
+
+    /*
+     * A slot is FREE, DELETED, or holds entry + 1 in the bits of the mask
+     * and the hash of the key in the bits above them, so most probes that
+     * are not for the key end without reading the entry. There are at most
+     * half as many entries as slots, so entry + 1 never fills the mask and
+     * a used slot is never equal to DELETED.
+     */
+    private static final int FREE = 0;
+    private static final int DELETED = -1;
+
+    private static final int MIN_SLOTS = 8;
+
+    private int[] slots;
+    private Object[] keys;
+    private long[] numbers;
+    private Object[] values;
+    private int count = 0;
+    private int size = 0;
+
+    public HashStorage() {
+        allocate(MIN_SLOTS);
+    }
+
+    public HashStorage(HashStorage storage) {
+        this.slots = storage.slots.clone();
+        this.keys = storage.keys.clone();
+        this.numbers = storage.numbers == null ? null : storage.numbers.clone();
+        this.values = storage.values.clone();
+        this.count = storage.count;
+        this.size = storage.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object key) {
+        key = Arithmetic.key(key);
+        int slot = find(key, hash(key));
+        return slot < 0 ? null : values[entry(slot)];
+    }
+
+    public boolean containsKey(Object key) {
+        key = Arithmetic.key(key);
+        return find(key, hash(key)) >= 0;
+    }
+
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i] != REMOVED && Arithmetic.isEqual(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the value the key had, or null.
+     */
+    public Object put(Object key, Object value) {
+        key = Arithmetic.key(key);
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            int entry = entry(slot);
+            Object previous = values[entry];
+            values[entry] = value;
+            return previous;
+        }
+
+        // every entry, removed or not, holds a slot, so this also bounds the load
+        if (count == keys.length) {
+            rebuild();
+            slot = ~find(key, hash);
+        } else {
+            slot = ~slot;
+        }
+
+        int entry = count++;
+        values[entry] = value;
+        if (key instanceof Long) {
+            keys[entry] = LONG_KEY;
+            numbers()[entry] = (long) key;
+        } else if (key instanceof Double) {
+            keys[entry] = DOUBLE_KEY;
+            numbers()[entry] = Double.doubleToLongBits((double) key);
+        } else {
+            keys[entry] = key;
+        }
+        store(slot, hash, entry);
+        size++;
+
+        return null;
+    }
+
+    public Object remove(Object key) {
+        key = Arithmetic.key(key);
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+
+        int entry = entry(slot);
+        Object previous = values[entry];
+        slots[slot] = DELETED;
+        keys[entry] = REMOVED;
+        values[entry] = null;
+        size--;
+
+        return previous;
+    }
+
+    public void clear() {
+        allocate(MIN_SLOTS);
+        count = 0;
+        size = 0;
+    }
+
+    public Object[] keys() {
+        Object[] result = new Object[size];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (keys[i] != REMOVED) {
+                result[j++] = key(i);
+            }
+        }
+        return result;
+    }
+
+    public Object[] values() {
+        Object[] result = new Object[size];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (keys[i] != REMOVED) {
+                result[j++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    private int entry(int slot) {
+        return (slots[slot] & (slots.length - 1)) - 1;
+    }
+
+    /*
+     * Returns the slot of the key or, when it is not there, the complement
+     * of the slot a put would store it in: the first deleted slot on its
+     * probe sequence, or else the free slot that ended it.
+     */
+    private int find(Object key, int hash) {
+        int mask = slots.length - 1;
+        int tag = hash & ~mask;
+        int reusable = -1;
+        int slot = hash & mask;
+        for (int s; (s = slots[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (s == DELETED) {
+                if (reusable < 0) {
+                    reusable = slot;
+                }
+                continue;
+            }
+            if ((s & ~mask) != tag) {
+                continue;
+            }
+
+            int entry = (s & mask) - 1;
+            Object stored = keys[entry];
+            if (key instanceof Long) {
+                if (stored == LONG_KEY && numbers[entry] == (long) key) {
+                    return slot;
+                }
+            } else if (key instanceof Double) {
+                if (stored == DOUBLE_KEY && numbers[entry] == Double.doubleToLongBits((double) key)) {
+                    return slot;
+                }
+            } else if (stored == key || key != null && stored != LONG_KEY && stored != DOUBLE_KEY && key.equals(stored)) {
+                return slot;
+            }
+        }
+
+        return ~(reusable >= 0 ? reusable : slot);
+    }
+
+    private void store(int slot, int hash, int entry) {
+        slots[slot] = (hash & ~(slots.length - 1)) | (entry + 1);
+    }
+
+    private Object key(int entry) {
+        Object stored = keys[entry];
+        if (stored == LONG_KEY) {
+            return numbers[entry];
+        }
+        if (stored == DOUBLE_KEY) {
+            return Double.longBitsToDouble(numbers[entry]);
+        }
+        return stored;
+    }
+
+    private static int hash(Object key) {
+        if (key instanceof Long) {
+            return mix((long) key);
+        }
+        if (key instanceof Double) {
+            return mix(Double.doubleToLongBits((double) key));
+        }
+        return mix(Objects.hashCode(key));
+    }
+
+    /*
+     * The hash of a stored key, without boxing it.
+     */
+    private int hash(int entry) {
+        Object stored = keys[entry];
+        return stored == LONG_KEY || stored == DOUBLE_KEY ? mix(numbers[entry]) : mix(Objects.hashCode(stored));
+    }
+
+    // Fibonacci hashing spreads sequential keys over the whole table
+    private static int mix(long bits) {
+        return (int) ((bits * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private long[] numbers() {
+        if (numbers == null) {
+            numbers = new long[keys.length];
+        }
+        return numbers;
+    }
+
+    private void allocate(int slotCount) {
+        slots = new int[slotCount];
+        keys = new Object[slotCount / 2];
+        values = new Object[slotCount / 2];
+        numbers = null;
+    }
+
+    /*
+     * Drops removed entries, doubles the table if the live ones would still
+     * fill more than half of the entries, and slots the entries in anew.
+     */
+    private void rebuild() {
+        int slotCount = slots.length;
+        if (size >= slotCount / 4) {
+            slotCount *= 2;
+        }
+
+        if (size < count) {
+            compact();
+        }
+        slots = new int[slotCount];
+        keys = Arrays.copyOf(keys, slotCount / 2);
+        values = Arrays.copyOf(values, slotCount / 2);
+        if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, slotCount / 2);
+        }
+
+        int mask = slotCount - 1;
+        for (int entry = 0; entry < count; entry++) {
+            int hash = hash(entry);
+            int slot = hash & mask;
+            while (slots[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            store(slot, hash, entry);
+        }
+    }
+
+    private void compact() {
+        int entry = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == REMOVED) {
+                continue;
+            }
+
+            keys[entry] = keys[i];
+            values[entry] = values[i];
+            if (numbers != null) {
+                numbers[entry] = numbers[i];
+            }
+            entry++;
+        }
+
+        Arrays.fill(keys, entry, count, null);
+        Arrays.fill(values, entry, count, null);
+        count = entry;
+    }
+}
@@ -0,0 +1,355 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.temprovich.schema.Arithmetic;
+
+/*
+ * An immutable map as a hash array mapped trie. Each node takes five bits
+ * of the key's hash and keeps, in a bitmap, which of its 32 branches are
+ * used, so its array only has room for those: a key and its value, or a
+ * subnode marker and the subnode. Keys whose whole hash is equal share a
+ * collision node. Updates copy the nodes on the path to the key and share
+ * the rest with the map they started from.
+ *
+ * Keys compare as they do under ==, so 1 and 1.0 are the same key: a
+ * float key with a whole value is stored as the integer it equals.
+ * Entries are visited in the order of their hashes.
+ */
+public final class PersistentMap {
+
+    public static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+    private static final Object SUBNODE = new Object();
+    private static final Object ABSENT = new Object();
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object key) {
+        key = Arithmetic.key(key);
+        Object value = root == null ? ABSENT : root.find(0, hash(key), key);
+        return value == ABSENT ? null : value;
+    }
+
+    public boolean containsKey(Object key) {
+        key = Arithmetic.key(key);
+        return root != null && root.find(0, hash(key), key) != ABSENT;
+    }
+
+    public boolean containsValue(Object value) {
+        for (Object element : values()) {
+            if (Arithmetic.isEqual(element, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns a map with the key bound to the value.
+     */
+    public PersistentMap put(Object key, Object value) {
+        key = Arithmetic.key(key);
+        boolean[] added = new boolean[1];
+        Node base = root != null ? root : BitmapNode.EMPTY;
+        Node newRoot = base.put(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+
+        return new PersistentMap(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /*
+     * Returns a map without the key.
+     */
+    public PersistentMap remove(Object key) {
+        if (root == null) {
+            return this;
+        }
+
+        key = Arithmetic.key(key);
+        Node newRoot = root.remove(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+
+        return newRoot == null ? EMPTY : new PersistentMap(newRoot, size - 1);
+    }
+
+    public Object[] keys() {
+        Object[] entries = entries();
+        Object[] keys = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = entries[2 * i];
+        }
+        return keys;
+    }
+
+    public Object[] values() {
+        Object[] entries = entries();
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = entries[2 * i + 1];
+        }
+        return values;
+    }
+
+    /*
+     * Keys and values, alternating.
+     */
+    private Object[] entries() {
+        Object[] entries = new Object[2 * size];
+        if (root != null) {
+            root.collect(entries, 0);
+        }
+        return entries;
+    }
+
+    private static int hash(Object key) {
+        int hash = Objects.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static abstract class Node {
+
+        /*
+         * Returns the value of the key, or ABSENT.
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /*
+         * Returns this node if nothing changed, and sets added[0] if the
+         * key was not there before.
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /*
+         * Returns this node if the key was not there, or null if nothing
+         * is left.
+         */
+        abstract Node remove(int shift, int hash, Object key);
+
+        /*
+         * Copies the entries, keys and values alternating, to the array at
+         * the offset, returning the offset after them.
+         */
+        abstract int collect(Object[] entries, int offset);
+    }
+
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return ABSENT;
+            }
+
+            int i = index(bit);
+            Object stored = array[i];
+            if (stored == SUBNODE) {
+                return ((Node) array[i + 1]).find(shift + 5, hash, key);
+            }
+            return Objects.equals(stored, key) ? array[i + 1] : ABSENT;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object stored = array[i];
+            if (stored == SUBNODE) {
+                Node subnode = (Node) array[i + 1];
+                Node newSubnode = subnode.put(shift + 5, hash, key, value, added);
+                return newSubnode == subnode ? this : with(i, SUBNODE, newSubnode);
+            }
+            if (Objects.equals(stored, key)) {
+                return array[i + 1] == value ? this : with(i, key, value);
+            }
+
+            added[0] = true;
+            return with(i, SUBNODE, pair(shift + 5, PersistentMap.hash(stored), stored, array[i + 1], hash, key, value));
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int i = index(bit);
+            Object stored = array[i];
+            if (stored == SUBNODE) {
+                Node subnode = (Node) array[i + 1];
+                Node newSubnode = subnode.remove(shift + 5, hash, key);
+                if (newSubnode == subnode) {
+                    return this;
+                }
+                if (newSubnode != null) {
+                    return with(i, SUBNODE, newSubnode);
+                }
+            } else if (!Objects.equals(stored, key)) {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        @Override
+        int collect(Object[] entries, int offset) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == SUBNODE) {
+                    offset = ((Node) array[i + 1]).collect(entries, offset);
+                } else {
+                    entries[offset++] = array[i];
+                    entries[offset++] = array[i + 1];
+                }
+            }
+            return offset;
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int index(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (Objects.equals(array[i], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = index(key);
+            return i < 0 ? ABSENT : array[i + 1];
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // a key that only shares part of the hash: this node moves a level down
+                BitmapNode parent = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] { SUBNODE, this });
+                return parent.put(shift, hash, key, value, added);
+            }
+
+            int i = index(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int i = index(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        int collect(Object[] entries, int offset) {
+            System.arraycopy(array, 0, entries, offset, array.length);
+            return offset + array.length;
+        }
+    }
+
+    /*
+     * A node holding two keys that collided at the level above.
+     */
+    private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2, Object value2) {
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        }
+
+        int bit1 = 1 << ((hash1 >>> shift) & 31);
+        int bit2 = 1 << ((hash2 >>> shift) & 31);
+        if (bit1 == bit2) {
+            return new BitmapNode(bit1, new Object[] { SUBNODE, pair(shift + 5, hash1, key1, value1, hash2, key2, value2) });
+        }
+        if (Integer.compareUnsigned(bit1, bit2) < 0) {
+            return new BitmapNode(bit1 | bit2, new Object[] { key1, value1, key2, value2 });
+        }
+        return new BitmapNode(bit1 | bit2, new Object[] { key2, value2, key1, value1 });
+    }
+}
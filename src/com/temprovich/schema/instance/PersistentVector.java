@@ -0,0 +1,197 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/*
+ * An immutable sequence as a trie of 32-element nodes, with the last up to
+ * 32 elements kept in a tail outside of it. Every update returns a new
+ * vector that shares all nodes but the ones on the path to the change, so
+ * reading stays a few array loads deep and an update copies at most one
+ * node per level, with the level count growing as log32 of the size.
+ */
+public final class PersistentVector {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    public static final PersistentVector EMPTY = new PersistentVector(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public static PersistentVector of(Iterable<?> elements) {
+        PersistentVector vector = EMPTY;
+        for (Object element : elements) {
+            vector = vector.add(element);
+        }
+        return vector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(int index) {
+        Objects.checkIndex(index, size);
+        return leaf(index)[index & MASK];
+    }
+
+    /*
+     * Returns a vector with the element appended.
+     */
+    public PersistentVector add(Object value) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new PersistentVector(size + 1, shift, root, newTail);
+        }
+
+        // the tail is full: it goes into the trie, which grows a level when that is full too
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = path(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+
+        return new PersistentVector(size + 1, newShift, newRoot, new Object[] { value });
+    }
+
+    /*
+     * Returns a vector with the element at the index replaced; an index
+     * one past the end appends.
+     */
+    public PersistentVector set(int index, Object value) {
+        if (index == size) {
+            return add(value);
+        }
+        Objects.checkIndex(index, size);
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new PersistentVector(size, shift, root, newTail);
+        }
+
+        return new PersistentVector(size, shift, set(shift, root, index, value), tail);
+    }
+
+    /*
+     * Returns a vector without its last element.
+     */
+    public PersistentVector removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is empty.");
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        if (size - tailOffset() > 1) {
+            return new PersistentVector(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        // the tail empties: the last leaf of the trie becomes the tail
+        Object[] newTail = leaf(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+
+        return new PersistentVector(size - 1, newShift, newRoot, newTail);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leaf(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[child] = tailNode;
+        } else {
+            Object[] existing = (Object[]) parent[child];
+            node[child] = existing != null ? pushTail(level - BITS, existing, tailNode) : path(level - BITS, tailNode);
+        }
+        return node;
+    }
+
+    private static Object[] path(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+
+        Object[] parent = new Object[WIDTH];
+        parent[0] = path(level - BITS, node);
+        return parent;
+    }
+
+    private static Object[] set(int level, Object[] parent, int index, Object value) {
+        Object[] node = parent.clone();
+        if (level == 0) {
+            node[index & MASK] = value;
+        } else {
+            int child = (index >>> level) & MASK;
+            node[child] = set(level - BITS, (Object[]) parent[child], index, value);
+        }
+        return node;
+    }
+
+    /*
+     * The trie without its last leaf, or null where that leaves a node empty.
+     */
+    private Object[] popTail(int level, Object[] parent) {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[]) parent[child]);
+            if (newChild == null && child == 0) {
+                return null;
+            }
+
+            Object[] node = parent.clone();
+            node[child] = newChild;
+            return node;
+        }
+        if (child == 0) {
+            return null;
+        }
+
+        Object[] node = parent.clone();
+        node[child] = null;
+        return node;
+    }
+}
@@ -1,29 +1,50 @@
 package com.temprovich.schema.instance;
 
+import java.util.Map;
+
 import com.temprovich.schema.error.SchemaRuntimeError;
 import com.temprovich.schema.lexer.Token;
 
 public class SchemaArray extends SchemaInstance {
 
-    private final Object[] elements;
+    private final Storage elements;
     private final int length;
 
     public SchemaArray(int length) {
         super(null);
-        this.elements = new Object[length];
+        this.elements = new Storage(length);
         this.length = length;
     }
 
-    public SchemaArray(Object[] elements) {
+    SchemaArray(Storage elements) {
         super(null);
         this.elements = elements;
-        this.length = elements.length;
+        this.length = elements.size();
+    }
+
+    private static final Map<String, BuiltinMethod> METHODS = BuiltinMethod.table(
+        SequenceMethods.MAP,
+        SequenceMethods.FILTER,
+        SequenceMethods.REDUCE,
+        SequenceMethods.FOR_EACH,
+        SequenceMethods.SORT,
+        SequenceMethods.SORT_BY
+    );
+
+    @Override
+    public BuiltinMethod builtin(String name) {
+        return METHODS.get(name);
     }
 
     @Override
     public Object get(Token name) {
         if (name.lexeme().equals("length")) {
-            return (double) length;
+            return (long) length;
+        }
+
+        BuiltinMethod method = METHODS.get(name.lexeme());
+        if (method != null) {
+            return method.bind(this);
         }
         
         throw new SchemaRuntimeError(name, "Undefined property '" + name.lexeme() + "'.");
@@ -35,14 +56,14 @@ public class SchemaArray extends SchemaInstance {
     }
 
     public Object getValue(int index) {
-        return elements[index];
+        return elements.get(index);
     }
 
     public void setValue(int index, Object value) {
-        elements[index] = value;
+        elements.put(index, value);
     }
 
-    public Object[] getElements() {
+    public Storage elements() {
         return elements;
     }
 
@@ -54,7 +75,7 @@ public class SchemaArray extends SchemaInstance {
         StringBuilder sb = new StringBuilder();
         sb.append("[");
         for (int i = 0; i < length; i++) {
-            sb.append(elements[i]);
+            sb.append(elements.get(i));
             if (i < length - 1) {
                 sb.append(", ");
             }
@@ -1,10 +1,13 @@
 package com.temprovich.schema.instance;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.temprovich.schema.Interpreter;
 
 public interface SchemaCallable {
+
+    public static final Object[] NO_ARGUMENTS = new Object[0];
     
     public abstract int arity();
 
@@ -12,6 +15,32 @@ public interface SchemaCallable {
 
     public abstract Object call(Interpreter interpreter, List<Object> arguments);
 
+    /*
+     * Arity-specialized entry points, used by the interpreter when the number
+     * of arguments is known so no argument list has to be built. Callables
+     * that can take their arguments directly override them; by default they
+     * fall back to the list form.
+     */
+    public default Object call(Interpreter interpreter, Object[] arguments) {
+        return call(interpreter, Arrays.asList(arguments));
+    }
+
+    public default Object call0(Interpreter interpreter) {
+        return call(interpreter, NO_ARGUMENTS);
+    }
+
+    public default Object call1(Interpreter interpreter, Object a) {
+        return call(interpreter, new Object[] { a });
+    }
+
+    public default Object call2(Interpreter interpreter, Object a, Object b) {
+        return call(interpreter, new Object[] { a, b });
+    }
+
+    public default Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        return call(interpreter, new Object[] { a, b, c });
+    }
+
     @Override
     public abstract String toString();
 }
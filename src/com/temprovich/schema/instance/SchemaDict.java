@@ -0,0 +1,172 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod.Method0;
+import com.temprovich.schema.instance.BuiltinMethod.Method1;
+import com.temprovich.schema.instance.BuiltinMethod.Method2;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * A map with the methods of SchemaMap over a PersistentMap, so that
+ * copying one is constant time and the copies share their entries until
+ * either is changed.
+ */
+public class SchemaDict extends SchemaInstance {
+
+    private PersistentMap elements;
+
+    public SchemaDict(List<Object> elements) {
+        super(null);
+        if (elements != null && elements.size() % 2 != 0) {
+            throw new SchemaRuntimeError("Dict initializer has " + elements.size() + " elements, but should have " + (elements.size() + 1) + " | " + (elements.size() - 1) + " elements.");
+        }
+        this.elements = PersistentMap.EMPTY;
+        if (elements != null) {
+            for (int i = 0; i < elements.size(); i += 2) {
+                this.elements = this.elements.put(elements.get(i), elements.get(i + 1));
+            }
+        }
+    }
+
+    public SchemaDict(SchemaDict dict) {
+        super(null);
+        this.elements = dict.elements;
+    }
+
+    private Object put(Object key, Object value) {
+        Object previous = elements.get(key);
+        elements = elements.put(key, value);
+        return previous;
+    }
+
+    private static final Map<String, BuiltinMethod> METHODS = BuiltinMethod.table(
+
+        // get(key)
+        new Method1("get") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                return ((SchemaDict) receiver).elements.get(key);
+            }
+        },
+
+        // set(key, value)
+        new Method2("set") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object key, Object value) {
+                return ((SchemaDict) receiver).put(key, value);
+            }
+        },
+
+        // size()
+        new Method0("size") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return (long) ((SchemaDict) receiver).elements.size();
+            }
+        },
+
+        // put(key, value)
+        new Method2("put") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object key, Object value) {
+                return ((SchemaDict) receiver).put(key, value);
+            }
+        },
+
+        // remove(key)
+        new Method1("remove") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                SchemaDict dict = (SchemaDict) receiver;
+                Object previous = dict.elements.get(key);
+                dict.elements = dict.elements.remove(key);
+                return previous;
+            }
+        },
+
+        // clear()
+        new Method0("clear") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                ((SchemaDict) receiver).elements = PersistentMap.EMPTY;
+                return null;
+            }
+        },
+
+        // has_key(key)
+        new Method1("has_key") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                return ((SchemaDict) receiver).elements.containsKey(key);
+            }
+        },
+
+        // has_value(value)
+        new Method1("has_value") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                return ((SchemaDict) receiver).elements.containsValue(value);
+            }
+        },
+
+        // keys()
+        new Method0("keys") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return new SchemaList(Arrays.asList(((SchemaDict) receiver).elements.keys()));
+            }
+        },
+
+        // values()
+        new Method0("values") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return new SchemaList(Arrays.asList(((SchemaDict) receiver).elements.values()));
+            }
+        }
+    );
+
+    @Override
+    public BuiltinMethod builtin(String name) {
+        return METHODS.get(name);
+    }
+
+    @Override
+    public Object get(Token name) {
+        BuiltinMethod method = METHODS.get(name.lexeme());
+        if (method != null) {
+            return method.bind(this);
+        }
+
+        throw new SchemaRuntimeError(name, "Undefined attribute '" + name.lexeme() + "'.");
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new SchemaRuntimeError(name, "Cannot add attributes to a dict.");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("dict[");
+        Object[] keys = elements.keys();
+        Object[] values = elements.values();
+        for (int i = 0; i < keys.length; i++) {
+            sb.append(Interpreter.stringify(keys[i]));
+            sb.append(": ");
+            sb.append(Interpreter.stringify(values[i]));
+            sb.append(", ");
+        }
+        if (sb.length() > 5) {
+            sb.delete(sb.length() - 2, sb.length());
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -2,27 +2,36 @@ package com.temprovich.schema.instance;
 
 import java.util.List;
 
+import com.temprovich.schema.Cell;
 import com.temprovich.schema.Environment;
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.Statement;
-import com.temprovich.schema.throwables.ReturnException;
+import com.temprovich.schema.jit.CompiledBody;
+import com.temprovich.schema.jit.JitInterpreter;
 
-public class SchemaFunction implements SchemaCallable {
+public class SchemaFunction implements SchemaMethod {
 
     private final Statement.Function declaration;
-    private final Environment closure;
+    private final Object[] upvalues;
+    private final SchemaInstance receiver;
     private final boolean isDefinition;
+    private int calls = 0;
+    private CompiledBody compiled = null;
 
-    public SchemaFunction(Statement.Function declaration, Environment closure, boolean isDefinition) {
+    public SchemaFunction(Statement.Function declaration, Object[] upvalues, boolean isDefinition) {
+        this(declaration, upvalues, null, isDefinition);
+    }
+
+    private SchemaFunction(Statement.Function declaration, Object[] upvalues, SchemaInstance receiver, boolean isDefinition) {
         this.declaration = declaration;
-        this.closure = closure;
+        this.upvalues = upvalues;
+        this.receiver = receiver;
         this.isDefinition = isDefinition;
     }
 
+    @Override
     public SchemaFunction bind(SchemaInstance e30Instance) {
-        Environment environment = new Environment(closure);
-        environment.define(e30Instance);
-        return new SchemaFunction(declaration, environment, isDefinition);
+        return new SchemaFunction(declaration, upvalues, e30Instance, isDefinition);
     }
     
     @Override
@@ -32,29 +41,114 @@ public class SchemaFunction implements SchemaCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
-        if (declaration.function().parameters() != null) {
-            int size = declaration.function().parameters().size();
-            for (int i = 0; i < size; i++) {
-                environment.define(arguments.get(i));
-            }       
-        }
+        return invoke(interpreter, receiver, arguments);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return invoke(interpreter, receiver, arguments);
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return execute(interpreter, frame());
+    }
 
-        try {
-            interpreter.executeBlock(declaration.function().body(), environment);
-        } catch (ReturnException returnValue) {
-            if (isDefinition) {
-                return closure.fetch(0, 0);
+    @Override
+    public Object call1(Interpreter interpreter, Object a) {
+        Environment frame = frame();
+        argument(frame, 0, a);
+        return execute(interpreter, frame);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a, Object b) {
+        Environment frame = frame();
+        argument(frame, 0, a);
+        argument(frame, 1, b);
+        return execute(interpreter, frame);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        Environment frame = frame();
+        argument(frame, 0, a);
+        argument(frame, 1, b);
+        argument(frame, 2, c);
+        return execute(interpreter, frame);
+    }
+
+    @Override
+    public Object invoke(Interpreter interpreter, SchemaInstance receiver, List<Object> arguments) {
+        Environment frame = frame(receiver);
+        if (arguments != null) {
+            for (int i = 0; i < arguments.size(); i++) {
+                argument(frame, i, arguments.get(i));
             }
-            return returnValue.value();
+        }
+
+        return execute(interpreter, frame);
+    }
+
+    @Override
+    public Object invoke(Interpreter interpreter, SchemaInstance receiver, Object[] arguments) {
+        Environment frame = frame(receiver);
+        for (int i = 0; i < arguments.length; i++) {
+            argument(frame, i, arguments[i]);
+        }
+
+        return execute(interpreter, frame);
+    }
+
+    /*
+     * A new call frame, holding the receiver in slot zero for methods. The
+     * interpreter fills in the arguments with argument() and then runs it
+     * with execute(), so a call allocates nothing but the frame.
+     */
+    public Environment frame() {
+        return frame(receiver);
+    }
+
+    public Environment frame(SchemaInstance receiver) {
+        var function = declaration.function();
+        Environment frame = new Environment(function.frameSize(), upvalues);
+        if (function.isMethod()) {
+            frame.assign(0, receiver);
+        }
+
+        return frame;
+    }
+
+    public void argument(Environment frame, int index, Object value) {
+        var function = declaration.function();
+        int slot = function.isMethod() ? index + 1 : index;
+        frame.assign(slot, function.isBoxedParameter(index) ? new Cell(value) : value);
+    }
+
+    /*
+     * Runs the body in a filled-in frame. Calls are counted until the
+     * function turns hot, when the interpreter gets one chance to compile
+     * it; compiled code then replaces the interpreted body for good.
+     */
+    public Object execute(Interpreter interpreter, Environment frame) {
+        if (calls < JitInterpreter.THRESHOLD && ++calls == JitInterpreter.THRESHOLD) {
+            compiled = interpreter.compile(declaration.function());
+        }
+
+        Object value;
+        if (compiled != null) {
+            value = compiled.execute(interpreter, frame);
+        } else {
+            value = interpreter.executeFunction(declaration.function(), frame);
         }
 
         if (isDefinition) {
-            return closure.fetch(0, 0);
+            return frame.fetch(0);
         }
-        return null;
+        return value;
     }
 
+    @Override
     public boolean isGetter() {
         return declaration.function().parameters() == null;
     }
@@ -1,27 +1,31 @@
 package com.temprovich.schema.instance;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import com.temprovich.schema.error.SchemaRuntimeError;
 import com.temprovich.schema.lexer.Token;
 
 public class SchemaInstance {
+
+    private static final Object[] NO_VALUES = new Object[0];
     
     private SchemaNode node;
-    private final Map<String, Object> fields;
+    private Shape shape;
+    private Object[] values;
 
     public SchemaInstance(SchemaNode node) {
         this.node = node;
-        this.fields = new HashMap<String, Object>();
+        this.shape = node == null ? Shape.EMPTY : node.rootShape();
+        this.values = shape.capacity() == 0 ? NO_VALUES : new Object[shape.capacity()];
     }
 
     public Object get(Token name) {
-        if (fields.containsKey(name.lexeme())) {
-            return fields.get(name.lexeme());
+        int index = shape.indexOf(name.lexeme());
+        if (index != -1) {
+            return values[index];
         }
 
-        SchemaFunction method = node.fetchMethod(name.lexeme());
+        SchemaMethod method = node.fetchMethod(name.lexeme());
         if (method != null) {
             return method.bind(this);
         }
@@ -30,10 +34,52 @@ public class SchemaInstance {
     }
 
     public void set(Token name, Object value) {
-        fields.put(name.lexeme(), value);
+        int index = shape.indexOf(name.lexeme());
+        if (index != -1) {
+            values[index] = value;
+            return;
+        }
+
+        extend(shape.withField(name.lexeme()), value);
+    }
+
+    public Shape shape() {
+        return shape;
+    }
+
+    public Object field(int index) {
+        return values[index];
+    }
+
+    public void field(int index, Object value) {
+        values[index] = value;
+    }
+
+    /*
+     * Moves to a shape that adds one field, storing the field's value.
+     */
+    public void extend(Shape next, Object value) {
+        int index = next.size() - 1;
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(next.capacity(), index + 1));
+        }
+        values[index] = value;
+        shape = next;
+    }
+
+    /*
+     * The method of this instance's builtin type with the given name, or null
+     * if there is none or the instance is not of a builtin type.
+     */
+    public BuiltinMethod builtin(String name) {
+        return null;
     }
 
-    SchemaNode node() {
+    /*
+     * The node whose methods this instance responds to, or null for builtin
+     * instances that resolve their attributes themselves.
+     */
+    public SchemaNode node() {
         return node;
     }
 
@@ -1,19 +1,22 @@
 package com.temprovich.schema.instance;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod.Method0;
+import com.temprovich.schema.instance.BuiltinMethod.Method1;
+import com.temprovich.schema.instance.BuiltinMethod.Method2;
 import com.temprovich.schema.lexer.Token;
 
 public class SchemaList extends SchemaInstance {
 
-    private final List<Object> elements;
+    private final Storage elements;
 
     public SchemaList(List<Object> elements) {
         super(null);
-        this.elements = new ArrayList<Object>();
+        this.elements = new Storage();
         if (elements != null) {
             for (var element : elements) {
                 this.elements.add(element);
@@ -23,126 +26,106 @@ public class SchemaList extends SchemaInstance {
 
     public SchemaList(SchemaList list) {
         super(null);
-        this.elements = new ArrayList<Object>();
-        for (var element : list.elements) {
-            this.elements.add(element);
-        }
+        this.elements = new Storage(list.elements);
     }
 
-    @Override
-    public Object get(Token name) {
-        // get(index)
-        if (name.lexeme().equals("get")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int index = (int)(double) arguments.get(0);
-                    return elements.get(index);
-                }
-            };
+    SchemaList(Storage elements) {
+        super(null);
+        this.elements = elements;
+    }
+
+    public Storage elements() {
+        return elements;
+    }
+
+    // get(index)
+    public static final BuiltinMethod GET = new Method1("get") {
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object index) {
+            return ((SchemaList) receiver).elements.get(((Number) index).intValue());
         }
+    };
+
+    private static final Map<String, BuiltinMethod> METHODS = BuiltinMethod.table(
+
+        GET,
 
         // set(index, value)
-        if (name.lexeme().equals("set")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 2; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int index = (int)(double) arguments.get(0);
-                    Object value = arguments.get(1);
-                    return elements.set(index, value);
-                }
-            };
-        }
+        new Method2("set") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object index, Object value) {
+                return ((SchemaList) receiver).elements.set(((Number) index).intValue(), value);
+            }
+        },
 
         // size()
-        if (name.lexeme().equals("size")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return (double) elements.size();
-                }
-            };
-        }
+        new Method0("size") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return (long) ((SchemaList) receiver).elements.size();
+            }
+        },
 
         // add(value)
-        if (name.lexeme().equals("add")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object value = arguments.get(0);
-                    elements.add(value);
-                    return null;
-                }
-            };
-        }
+        new Method1("add") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                ((SchemaList) receiver).elements.add(value);
+                return null;
+            }
+        },
 
         // remove(index)
-        if (name.lexeme().equals("remove")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int index = (int)(double) arguments.get(0);
-                    return elements.remove(index);
-                }
-            };
-        }
+        new Method1("remove") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object index) {
+                return ((SchemaList) receiver).elements.remove(((Number) index).intValue());
+            }
+        },
 
         // clear()
-        if (name.lexeme().equals("clear")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    elements.clear();
-                    return null;
-                }
-            };
-        }
+        new Method0("clear") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                ((SchemaList) receiver).elements.clear();
+                return null;
+            }
+        },
 
         // has(value)
-        if (name.lexeme().equals("has")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object value = arguments.get(0);
-                    return elements.contains(value);
-                }
-            };
-        }
+        new Method1("has") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                return ((SchemaList) receiver).elements.contains(value);
+            }
+        },
 
         // slice(start, end)
-        if (name.lexeme().equals("slice")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 2; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int start = (int)(double) arguments.get(0);
-                    int end = (int)(double) arguments.get(1);
-                    return new SchemaList(elements.subList(start, end));
-                }
-            };
+        new Method2("slice") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object start, Object end) {
+                return new SchemaList(((SchemaList) receiver).elements.slice(((Number) start).intValue(), ((Number) end).intValue()));
+            }
+        },
+
+        SequenceMethods.MAP,
+        SequenceMethods.FILTER,
+        SequenceMethods.REDUCE,
+        SequenceMethods.FOR_EACH,
+        SequenceMethods.SORT,
+        SequenceMethods.SORT_BY
+    );
+
+    @Override
+    public BuiltinMethod builtin(String name) {
+        return METHODS.get(name);
+    }
+
+    @Override
+    public Object get(Token name) {
+        BuiltinMethod method = METHODS.get(name.lexeme());
+        if (method != null) {
+            return method.bind(this);
         }
 
         throw new SchemaRuntimeError(name, "Undefined attribute '" + name.lexeme() + "'.");
@@ -1,24 +1,26 @@
 package com.temprovich.schema.instance;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod.Method0;
+import com.temprovich.schema.instance.BuiltinMethod.Method1;
+import com.temprovich.schema.instance.BuiltinMethod.Method2;
 import com.temprovich.schema.lexer.Token;
 
 public class SchemaMap extends SchemaInstance {
 
-    private final Map<Object, Object> elements;
+    private final HashStorage elements;
 
     public SchemaMap(List<Object> elements) {
         super(null);
-        if (elements.size() % 2 != 0) {
+        if (elements != null && elements.size() % 2 != 0) {
             throw new SchemaRuntimeError("Map initializer has " + elements.size() + " elements, but should have " + (elements.size() + 1) + " | " + (elements.size() - 1) + " elements.");
         }
-        this.elements = new HashMap<Object, Object>();
+        this.elements = new HashStorage();
         if (elements != null) {
             for (int i = 0; i < elements.size(); i += 2) {
                 this.elements.put(elements.get(i), elements.get(i + 1));
@@ -28,151 +30,103 @@ public class SchemaMap extends SchemaInstance {
     
     public SchemaMap(SchemaMap map) {
         super(null);
-        this.elements = new HashMap<Object, Object>();
-        for (var entry : map.elements.entrySet()) {
-            this.elements.put(entry.getKey(), entry.getValue());
-        }
+        this.elements = new HashStorage(map.elements);
     }
 
-    @Override
-    public Object get(Token name) {
+    private static final Map<String, BuiltinMethod> METHODS = BuiltinMethod.table(
+
         // get(key)
-        if (name.lexeme().equals("get")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object key = arguments.get(0);
-                    return elements.getOrDefault(key, null);
-                }
-            };
-        }
+        new Method1("get") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                return ((SchemaMap) receiver).elements.get(key);
+            }
+        },
 
         // set(key, value)
-        if (name.lexeme().equals("set")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 2; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object key = arguments.get(0);
-                    Object value = arguments.get(1);
-                    return elements.put(key, value);
-                }
-            };
-        }
+        new Method2("set") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object key, Object value) {
+                return ((SchemaMap) receiver).elements.put(key, value);
+            }
+        },
 
         // size()
-        if (name.lexeme().equals("size")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return (double) elements.size();
-                }
-            };
-        }
+        new Method0("size") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return (long) ((SchemaMap) receiver).elements.size();
+            }
+        },
 
         // put(key, value)
-        if (name.lexeme().equals("put")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 2; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object key = arguments.get(0);
-                    Object value = arguments.get(1);
-                    return elements.put(key, value);
-                }
-            };
-        }
+        new Method2("put") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object key, Object value) {
+                return ((SchemaMap) receiver).elements.put(key, value);
+            }
+        },
 
         // remove(key)
-        if (name.lexeme().equals("remove")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object key = arguments.get(0);
-                    return elements.remove(key);
-                }
-            };
-        }
+        new Method1("remove") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                return ((SchemaMap) receiver).elements.remove(key);
+            }
+        },
 
         // clear()
-        if (name.lexeme().equals("clear")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    elements.clear();
-                    return null;
-                }
-            };
-        }
+        new Method0("clear") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                ((SchemaMap) receiver).elements.clear();
+                return null;
+            }
+        },
 
-        // hasKey(key)
-        if (name.lexeme().equals("has_key")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object key = arguments.get(0);
-                    return elements.containsKey(key);
-                }
-            };
-        }
+        // has_key(key)
+        new Method1("has_key") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+                return ((SchemaMap) receiver).elements.containsKey(key);
+            }
+        },
 
-        // hasValue(value)
-        if (name.lexeme().equals("has_value")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 1; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    Object value = arguments.get(0);
-                    return elements.containsValue(value);
-                }
-            };
-        }
+        // has_value(value)
+        new Method1("has_value") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                return ((SchemaMap) receiver).elements.containsValue(value);
+            }
+        },
 
         // keys()
-        if (name.lexeme().equals("keys")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return new SchemaList(Arrays.asList(elements.keySet().toArray()));
-                }
-            };
-        }
+        new Method0("keys") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return new SchemaList(Arrays.asList(((SchemaMap) receiver).elements.keys()));
+            }
+        },
 
         // values()
-        if (name.lexeme().equals("values")) {
-            return new SchemaCallable() {
-                @Override
-                public int arity() { return 0; }
-
-                @Override
-                public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return new SchemaList(Arrays.asList(elements.values().toArray()));
-                }
-            };
+        new Method0("values") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return new SchemaList(Arrays.asList(((SchemaMap) receiver).elements.values()));
+            }
+        }
+    );
+
+    @Override
+    public BuiltinMethod builtin(String name) {
+        return METHODS.get(name);
+    }
+
+    @Override
+    public Object get(Token name) {
+        BuiltinMethod method = METHODS.get(name.lexeme());
+        if (method != null) {
+            return method.bind(this);
         }
 
         throw new SchemaRuntimeError("Undefined attribute '" + name.lexeme() + "'.");
@@ -187,10 +141,12 @@ public class SchemaMap extends SchemaInstance {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("map[");
-        for (var entry : elements.entrySet()) {
-            sb.append(Interpreter.stringify(entry.getKey()));
+        Object[] keys = elements.keys();
+        Object[] values = elements.values();
+        for (int i = 0; i < keys.length; i++) {
+            sb.append(Interpreter.stringify(keys[i]));
             sb.append(": ");
-            sb.append(Interpreter.stringify(entry.getValue()));
+            sb.append(Interpreter.stringify(values[i]));
             sb.append(", ");
         }
         if (sb.length() > 4) {
@@ -0,0 +1,24 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.temprovich.schema.Interpreter;
+
+public interface SchemaMethod extends SchemaCallable {
+
+    public abstract SchemaMethod bind(SchemaInstance instance);
+
+    public abstract boolean isGetter();
+
+    /*
+     * Calls the method on a receiver without binding it first.
+     */
+    public default Object invoke(Interpreter interpreter, SchemaInstance receiver, List<Object> arguments) {
+        return bind(receiver).call(interpreter, arguments);
+    }
+
+    public default Object invoke(Interpreter interpreter, SchemaInstance receiver, Object[] arguments) {
+        return invoke(interpreter, receiver, Arrays.asList(arguments));
+    }
+}
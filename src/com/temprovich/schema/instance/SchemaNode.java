@@ -1,5 +1,6 @@
 package com.temprovich.schema.instance;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -8,31 +9,50 @@ import com.temprovich.schema.Interpreter;
 public class SchemaNode extends SchemaInstance implements SchemaCallable {
     
     private final String name;
-    private final SchemaNode parent;
-    private final Map<String, SchemaFunction> methods;
+    private final Map<String, SchemaMethod> methods;
+    private Shape rootShape;
 
-    public SchemaNode(SchemaNode metaNode, SchemaNode parent, String name, Map<String, SchemaFunction> methods) {
+    /*
+     * The node takes ownership of the methods map, which already holds the
+     * applied traits overridden by the node's own methods.
+     */
+    public SchemaNode(SchemaNode metaNode, SchemaNode parent, String name, Map<String, SchemaMethod> methods) {
         super(metaNode);
         this.name = name;
-        this.parent = parent;
-        this.methods = methods;
+        this.methods = flatten(parent, methods);
     }
 
-    public SchemaFunction fetchMethod(String name) {
-        SchemaFunction method = methods.get(name);
-        if (method != null) {
-            return method;
+    /*
+     * Builds the complete method table once, inherited methods included, so
+     * a lookup is a single probe whatever the depth of the hierarchy.
+     */
+    private static Map<String, SchemaMethod> flatten(SchemaNode parent, Map<String, SchemaMethod> methods) {
+        if (parent == null) {
+            return methods;
         }
-        if (parent != null) {
-            return parent.fetchMethod(name);
+
+        Map<String, SchemaMethod> table = new HashMap<String, SchemaMethod>(parent.methods);
+        table.putAll(methods);
+        return table;
+    }
+
+    public SchemaMethod fetchMethod(String name) {
+        return methods.get(name);
+    }
+
+    /*
+     * Shape new instances of this node start from.
+     */
+    Shape rootShape() {
+        if (rootShape == null) {
+            rootShape = Shape.root(this);
         }
-        
-        return null;
+        return rootShape;
     }
 
     @Override
     public int arity() {
-        SchemaFunction definition = methods.get("define");
+        SchemaMethod definition = fetchMethod("define");
         if (definition == null) {
             return 0;
         }
@@ -42,9 +62,20 @@ public class SchemaNode extends SchemaInstance implements SchemaCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         SchemaInstance instance = new SchemaInstance(this);
-        SchemaFunction initializer = fetchMethod("define");
+        SchemaMethod initializer = fetchMethod("define");
+        if (initializer != null) {
+            initializer.invoke(interpreter, instance, arguments);
+        }
+        
+        return instance;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        SchemaInstance instance = new SchemaInstance(this);
+        SchemaMethod initializer = fetchMethod("define");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            initializer.invoke(interpreter, instance, arguments);
         }
         
         return instance;
@@ -0,0 +1,230 @@
+package com.temprovich.schema.instance;
+
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod.Method0;
+import com.temprovich.schema.instance.BuiltinMethod.Method1;
+import com.temprovich.schema.instance.BuiltinMethod.Method2;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * A list with the methods of SchemaList over a PersistentVector, so that
+ * copying one or slicing it is constant time and the copies share their
+ * elements until either is changed. A vector is a view of the elements
+ * from an offset of its persistent vector, which is what lets a slice
+ * share the vector it was cut from.
+ */
+public class SchemaVector extends SchemaInstance {
+
+    private PersistentVector elements;
+    private int start;
+    private int size;
+
+    public SchemaVector(List<Object> elements) {
+        this(elements == null ? PersistentVector.EMPTY : PersistentVector.of(elements), 0, elements == null ? 0 : elements.size());
+    }
+
+    public SchemaVector(SchemaVector vector) {
+        this(vector.elements, vector.start, vector.size);
+    }
+
+    private SchemaVector(PersistentVector elements, int start, int size) {
+        super(null);
+        this.elements = elements;
+        this.start = start;
+        this.size = size;
+    }
+
+    private Object element(int index) {
+        return elements.get(start + index);
+    }
+
+    /*
+     * An index passed to a method, which has to be a whole number below the
+     * bound. Like every builtin, the errors are reported at the call.
+     */
+    private static int index(Object index, int bound) {
+        long i;
+        if (index instanceof Long) {
+            i = (long) index;
+        } else if (index instanceof Double) {
+            double value = (double) index;
+            if (value != Math.rint(value) || Double.isInfinite(value)) {
+                throw new SchemaRuntimeError("Index must be a whole number.");
+            }
+            i = (long) value;
+        } else {
+            throw new SchemaRuntimeError("Index must be a number.");
+        }
+
+        if (i < 0 || i >= bound) {
+            throw new SchemaRuntimeError("Index out of bounds.");
+        }
+        return (int) i;
+    }
+
+    private Object replace(int index, Object value) {
+        Object previous = element(index);
+        elements = elements.set(start + index, value);
+        return previous;
+    }
+
+    private void add(Object value) {
+        // past the end of a slice the elements of the vector it was cut from are overwritten in a new version
+        elements = elements.set(start + size, value);
+        size++;
+    }
+
+    private Object remove(int index) {
+        Object previous = element(index);
+        if (index == size - 1 && start + size == elements.size()) {
+            elements = elements.removeLast();
+        } else {
+            PersistentVector rest = PersistentVector.EMPTY;
+            for (int i = 0; i < size; i++) {
+                if (i != index) {
+                    rest = rest.add(element(i));
+                }
+            }
+            elements = rest;
+            start = 0;
+        }
+        size--;
+
+        return previous;
+    }
+
+    private boolean contains(Object value) {
+        for (int i = 0; i < size; i++) {
+            if (Arithmetic.isEqual(element(i), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SchemaVector slice(Object start, Object end) {
+        // both ends may be the size, the end being past the last element
+        int from = index(start, size + 1);
+        int to = index(end, size + 1);
+        if (from > to) {
+            throw new SchemaRuntimeError("Index out of bounds.");
+        }
+        return new SchemaVector(elements, this.start + from, to - from);
+    }
+
+    private static final Map<String, BuiltinMethod> METHODS = BuiltinMethod.table(
+
+        // get(index)
+        new Method1("get") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object index) {
+                SchemaVector vector = (SchemaVector) receiver;
+                return vector.element(index(index, vector.size));
+            }
+        },
+
+        // set(index, value)
+        new Method2("set") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object index, Object value) {
+                SchemaVector vector = (SchemaVector) receiver;
+                return vector.replace(index(index, vector.size), value);
+            }
+        },
+
+        // size()
+        new Method0("size") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                return (long) ((SchemaVector) receiver).size;
+            }
+        },
+
+        // add(value)
+        new Method1("add") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                ((SchemaVector) receiver).add(value);
+                return null;
+            }
+        },
+
+        // remove(index)
+        new Method1("remove") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object index) {
+                SchemaVector vector = (SchemaVector) receiver;
+                return vector.remove(index(index, vector.size));
+            }
+        },
+
+        // clear()
+        new Method0("clear") {
+            @Override
+            public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+                SchemaVector vector = (SchemaVector) receiver;
+                vector.elements = PersistentVector.EMPTY;
+                vector.start = 0;
+                vector.size = 0;
+                return null;
+            }
+        },
+
+        // has(value)
+        new Method1("has") {
+            @Override
+            public Object call1(Interpreter interpreter, SchemaInstance receiver, Object value) {
+                return ((SchemaVector) receiver).contains(value);
+            }
+        },
+
+        // slice(start, end)
+        new Method2("slice") {
+            @Override
+            public Object call2(Interpreter interpreter, SchemaInstance receiver, Object start, Object end) {
+                return ((SchemaVector) receiver).slice(start, end);
+            }
+        }
+    );
+
+    @Override
+    public BuiltinMethod builtin(String name) {
+        return METHODS.get(name);
+    }
+
+    @Override
+    public Object get(Token name) {
+        BuiltinMethod method = METHODS.get(name.lexeme());
+        if (method != null) {
+            return method.bind(this);
+        }
+
+        throw new SchemaRuntimeError(name, "Undefined attribute '" + name.lexeme() + "'.");
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new SchemaRuntimeError(name, "Cannot add attributes to a vector.");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("vector[");
+
+        for (int i = 0; i < size; i++) {
+            sb.append(Interpreter.stringify(element(i)));
+            if (i < size - 1) {
+                sb.append(", ");
+            }
+        }
+
+        sb.append("]");
+        return sb.toString();
+    }
+}
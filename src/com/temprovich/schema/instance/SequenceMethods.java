@@ -0,0 +1,180 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.BuiltinMethod.Method01;
+import com.temprovich.schema.instance.BuiltinMethod.Method1;
+import com.temprovich.schema.instance.BuiltinMethod.Method2;
+
+/*
+ * The higher-order methods lists and arrays share. They loop in Java and
+ * call back into the script once per element, and map and filter give
+ * back a collection of the receiver's kind. sort and sort_by work in
+ * place; without a comparator numbers sort by value and strings by their
+ * characters, and numbers held unboxed are sorted without boxing them.
+ */
+final class SequenceMethods {
+
+    private SequenceMethods() {
+    }
+
+    private static Storage elements(SchemaInstance receiver) {
+        return receiver instanceof SchemaList ? ((SchemaList) receiver).elements() : ((SchemaArray) receiver).elements();
+    }
+
+    private static SchemaInstance wrap(SchemaInstance receiver, Storage elements) {
+        return receiver instanceof SchemaList ? new SchemaList(elements) : new SchemaArray(elements);
+    }
+
+    // map(function)
+    static final BuiltinMethod MAP = new Method1("map") {
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object function) {
+            Callback callback = new Callback(interpreter, function, 1);
+            Storage elements = elements(receiver);
+            Storage result = new Storage();
+            for (int i = 0; i < elements.size(); i++) {
+                result.add(callback.call(elements.get(i)));
+            }
+            return wrap(receiver, result);
+        }
+    };
+
+    // filter(predicate)
+    static final BuiltinMethod FILTER = new Method1("filter") {
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object predicate) {
+            Callback callback = new Callback(interpreter, predicate, 1);
+            Storage elements = elements(receiver);
+            Storage result = new Storage();
+            for (int i = 0; i < elements.size(); i++) {
+                Object element = elements.get(i);
+                if (Arithmetic.isTruthy(callback.call(element))) {
+                    result.add(element);
+                }
+            }
+            return wrap(receiver, result);
+        }
+    };
+
+    // reduce(function, initial)
+    static final BuiltinMethod REDUCE = new Method2("reduce") {
+        @Override
+        public Object call2(Interpreter interpreter, SchemaInstance receiver, Object function, Object initial) {
+            Callback callback = new Callback(interpreter, function, 2);
+            Storage elements = elements(receiver);
+            Object accumulator = initial;
+            for (int i = 0; i < elements.size(); i++) {
+                accumulator = callback.call(accumulator, elements.get(i));
+            }
+            return accumulator;
+        }
+    };
+
+    // for_each(function)
+    static final BuiltinMethod FOR_EACH = new Method1("for_each") {
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object function) {
+            Callback callback = new Callback(interpreter, function, 1);
+            Storage elements = elements(receiver);
+            for (int i = 0; i < elements.size(); i++) {
+                callback.call(elements.get(i));
+            }
+            return null;
+        }
+    };
+
+    // sort(), sort(comparator)
+    static final BuiltinMethod SORT = new Method01("sort") {
+        @Override
+        public Object call0(Interpreter interpreter, SchemaInstance receiver) {
+            Storage elements = elements(receiver);
+            if (!elements.sortUnboxed()) {
+                sort(elements, SequenceMethods::compare);
+            }
+            return null;
+        }
+
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object comparator) {
+            Callback callback = new Callback(interpreter, comparator, 2);
+            sort(elements(receiver), (a, b) -> {
+                Object order = callback.call(a, b);
+                if (!Arithmetic.isNumber(order)) {
+                    throw new SchemaRuntimeError("Comparator must return a number.");
+                }
+                double sign = Arithmetic.toDouble(order);
+                return sign < 0 ? -1 : sign > 0 ? 1 : 0;
+            });
+            return null;
+        }
+    };
+
+    // sort_by(key)
+    static final BuiltinMethod SORT_BY = new Method1("sort_by") {
+        @Override
+        public Object call1(Interpreter interpreter, SchemaInstance receiver, Object key) {
+            Callback callback = new Callback(interpreter, key, 1);
+            Storage elements = elements(receiver);
+            Object[] values = elements.toArray();
+
+            // every key is computed once, then the positions are sorted by them
+            Object[] keys = new Object[values.length];
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = callback.call(values[i]);
+                order[i] = i;
+            }
+            sort(order, (a, b) -> compare(keys[a], keys[b]));
+
+            check(elements, values.length);
+            for (int i = 0; i < values.length; i++) {
+                elements.put(i, values[order[i]]);
+            }
+            return null;
+        }
+    };
+
+    private static void sort(Storage elements, Comparator<Object> comparator) {
+        Object[] values = elements.toArray();
+        sort(values, comparator);
+
+        check(elements, values.length);
+        for (int i = 0; i < values.length; i++) {
+            elements.put(i, values[i]);
+        }
+    }
+
+    private static <T> void sort(T[] values, Comparator<? super T> comparator) {
+        try {
+            Arrays.sort(values, comparator);
+        } catch (IllegalArgumentException e) {
+            throw new SchemaRuntimeError("Comparator does not order the elements consistently.");
+        }
+    }
+
+    // a comparator or key function could have added or removed elements
+    private static void check(Storage elements, int size) {
+        if (elements.size() != size) {
+            throw new SchemaRuntimeError("Collection changed size while it was sorted.");
+        }
+    }
+
+    private static int compare(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) {
+            return Long.compare((long) a, (long) b);
+        }
+        if (Arithmetic.isNumber(a) && Arithmetic.isNumber(b)) {
+            return Double.compare(Arithmetic.toDouble(a), Arithmetic.toDouble(b));
+        }
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        }
+
+        throw new SchemaRuntimeError("Can only sort numbers or strings without a comparator.");
+    }
+}
@@ -0,0 +1,77 @@
+package com.temprovich.schema.instance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * The layout of an instance's fields: which name lives at which index of
+ * its value array. Instances of a node start from the node's root shape and
+ * move along a shared transition tree as fields are added, so instances
+ * that assign the same fields in the same order share a shape.
+ */
+public final class Shape {
+
+    static final Shape EMPTY = new Shape(null, null, new HashMap<String, Integer>());
+
+    private final SchemaNode node;
+    private final Shape root;
+    private final Map<String, Integer> indices;
+    private Map<String, Shape> transitions;
+    private int capacity;
+
+    private Shape(SchemaNode node, Shape root, Map<String, Integer> indices) {
+        this.node = node;
+        this.root = root == null ? this : root;
+        this.indices = indices;
+        this.transitions = null;
+        this.capacity = 0;
+    }
+
+    static Shape root(SchemaNode node) {
+        return new Shape(node, null, new HashMap<String, Integer>());
+    }
+
+    /*
+     * The node whose instances use this shape, or null for builtin instances.
+     */
+    public SchemaNode node() {
+        return node;
+    }
+
+    public int size() {
+        return indices.size();
+    }
+
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /*
+     * The shape reached by adding a field, which is stored at the last index.
+     */
+    public Shape withField(String name) {
+        if (transitions == null) {
+            transitions = new HashMap<String, Shape>();
+        }
+
+        Shape next = transitions.get(name);
+        if (next == null) {
+            Map<String, Integer> extended = new HashMap<String, Integer>(indices);
+            extended.put(name, indices.size());
+            next = new Shape(node, root, extended);
+            transitions.put(name, next);
+            root.capacity = Math.max(root.capacity, extended.size());
+        }
+
+        return next;
+    }
+
+    /*
+     * Largest number of fields any instance of the node has had so far, used
+     * to size new value arrays.
+     */
+    int capacity() {
+        return root.capacity;
+    }
+}
@@ -0,0 +1,352 @@
+package com.temprovich.schema.instance;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.temprovich.schema.Arithmetic;
+
+/*
+ * The elements of a list or an array. While every element is an integer,
+ * or every element a float, they are kept unboxed in a long[] or double[];
+ * storing anything else moves them to an Object[] for good. A storage with
+ * nothing but nulls in it has no array at all yet.
+ *
+ * Nulls among unboxed elements are marked by a value no number is stored
+ * as: Long.MIN_VALUE, and a NaN with a payload arithmetic never produces.
+ * Storing one of those exact numbers moves the elements to an Object[].
+ */
+public final class Storage {
+
+    private static final int EMPTY = 0;
+    private static final int LONGS = 1;
+    private static final int DOUBLES = 2;
+    private static final int OBJECTS = 3;
+
+    private static final long LONG_HOLE = Long.MIN_VALUE;
+    private static final long DOUBLE_HOLE = 0x7ff8_0000_0000_0001L;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int kind = EMPTY;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int size;
+
+    public Storage() {
+        this(0);
+    }
+
+    /*
+     * Holds the given number of nulls.
+     */
+    public Storage(int size) {
+        this.size = size;
+    }
+
+    public Storage(Storage storage) {
+        this(storage, 0, storage.size);
+    }
+
+    private Storage(Storage storage, int from, int to) {
+        this.kind = storage.kind;
+        this.size = to - from;
+        switch (kind) {
+            case LONGS: longs = Arrays.copyOfRange(storage.longs, from, to); break;
+            case DOUBLES: doubles = Arrays.copyOfRange(storage.doubles, from, to); break;
+            case OBJECTS: objects = Arrays.copyOfRange(storage.objects, from, to); break;
+            default: break;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(int index) {
+        Objects.checkIndex(index, size);
+        return load(index);
+    }
+
+    /*
+     * Stores an element, returning the one it replaces.
+     */
+    public Object set(int index, Object value) {
+        Objects.checkIndex(index, size);
+        Object previous = load(index);
+        store(index, value);
+        return previous;
+    }
+
+    /*
+     * Stores an element without boxing the one it replaces.
+     */
+    public void put(int index, Object value) {
+        Objects.checkIndex(index, size);
+        store(index, value);
+    }
+
+    public void add(Object value) {
+        if (kind != EMPTY && size == capacity()) {
+            grow();
+        }
+
+        size++;
+        store(size - 1, value);
+    }
+
+    public Object remove(int index) {
+        Objects.checkIndex(index, size);
+        Object previous = load(index);
+
+        int moved = size - index - 1;
+        switch (kind) {
+            case LONGS: System.arraycopy(longs, index + 1, longs, index, moved); break;
+            case DOUBLES: System.arraycopy(doubles, index + 1, doubles, index, moved); break;
+            case OBJECTS:
+                System.arraycopy(objects, index + 1, objects, index, moved);
+                objects[size - 1] = null;
+                break;
+            default: break;
+        }
+        size--;
+
+        return previous;
+    }
+
+    /*
+     * Empties the storage, which may then specialize anew.
+     */
+    public void clear() {
+        kind = EMPTY;
+        longs = null;
+        doubles = null;
+        objects = null;
+        size = 0;
+    }
+
+    /*
+     * Whether an element equals the value under ==, so an integer is found
+     * among floats and a whole float among integers.
+     */
+    public boolean contains(Object value) {
+        switch (kind) {
+            case LONGS:
+                if (value == null || value instanceof Long) {
+                    long bits = value == null ? LONG_HOLE : (long) value;
+                    for (int i = 0; i < size; i++) {
+                        if (longs[i] == bits) {
+                            return true;
+                        }
+                    }
+                } else if (value instanceof Double) {
+                    double d = (double) value;
+                    for (int i = 0; i < size; i++) {
+                        if (longs[i] != LONG_HOLE && (double) longs[i] == d) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            case DOUBLES:
+                if (value == null || value instanceof Double) {
+                    // Double.equals compares the canonical bits: NaN equals NaN, 0.0 does not equal -0.0
+                    for (int i = 0; i < size; i++) {
+                        long raw = Double.doubleToRawLongBits(doubles[i]);
+                        if (value == null ? raw == DOUBLE_HOLE : raw != DOUBLE_HOLE && Double.doubleToLongBits(doubles[i]) == Double.doubleToLongBits((double) value)) {
+                            return true;
+                        }
+                    }
+                } else if (value instanceof Long) {
+                    double d = (double) (long) value;
+                    for (int i = 0; i < size; i++) {
+                        if (doubles[i] == d) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            case OBJECTS:
+                for (int i = 0; i < size; i++) {
+                    if (Arithmetic.isEqual(objects[i], value)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return value == null && size > 0;
+        }
+    }
+
+    public Storage slice(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        return new Storage(this, from, to);
+    }
+
+    public Object[] toArray() {
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = load(i);
+        }
+        return elements;
+    }
+
+    /*
+     * Sorts the elements in place if they are all unboxed numbers, without
+     * boxing them, and tells whether it did.
+     */
+    public boolean sortUnboxed() {
+        switch (kind) {
+            case LONGS:
+                for (int i = 0; i < size; i++) {
+                    if (longs[i] == LONG_HOLE) {
+                        return false;
+                    }
+                }
+                Arrays.sort(longs, 0, size);
+                return true;
+            case DOUBLES:
+                for (int i = 0; i < size; i++) {
+                    if (Double.doubleToRawLongBits(doubles[i]) == DOUBLE_HOLE) {
+                        return false;
+                    }
+                }
+                // orders as Double.compare does: -0.0 before 0.0, NaN last
+                Arrays.sort(doubles, 0, size);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Unboxed reads, for callers that have checked the index is in range.
+     * isLong and isDouble tell whether the element is held unboxed as that
+     * kind of number, and only then can getLong or getDouble read it.
+     */
+    public boolean isLong(int index) {
+        return kind == LONGS && longs[index] != LONG_HOLE;
+    }
+
+    public long getLong(int index) {
+        return longs[index];
+    }
+
+    public boolean isDouble(int index) {
+        return kind == DOUBLES && Double.doubleToRawLongBits(doubles[index]) != DOUBLE_HOLE;
+    }
+
+    public double getDouble(int index) {
+        return doubles[index];
+    }
+
+    private Object load(int index) {
+        switch (kind) {
+            case LONGS: {
+                long value = longs[index];
+                if (value == LONG_HOLE) {
+                    return null;
+                }
+                return value;
+            }
+            case DOUBLES: {
+                double value = doubles[index];
+                if (Double.doubleToRawLongBits(value) == DOUBLE_HOLE) {
+                    return null;
+                }
+                return value;
+            }
+            case OBJECTS:
+                return objects[index];
+            default:
+                return null;
+        }
+    }
+
+    private void store(int index, Object value) {
+        switch (kind) {
+            case LONGS:
+                if (value == null) {
+                    longs[index] = LONG_HOLE;
+                    return;
+                }
+                if (value instanceof Long && (long) value != LONG_HOLE) {
+                    longs[index] = (long) value;
+                    return;
+                }
+                break;
+            case DOUBLES:
+                if (value == null) {
+                    doubles[index] = Double.longBitsToDouble(DOUBLE_HOLE);
+                    return;
+                }
+                if (value instanceof Double && Double.doubleToRawLongBits((double) value) != DOUBLE_HOLE) {
+                    doubles[index] = (double) value;
+                    return;
+                }
+                break;
+            case OBJECTS:
+                objects[index] = value;
+                return;
+            default:
+                if (value == null) {
+                    return;
+                }
+                specialize(value);
+                store(index, value);
+                return;
+        }
+
+        generalize();
+        objects[index] = value;
+    }
+
+    /*
+     * Leaves EMPTY for the kind that holds the first element stored.
+     */
+    private void specialize(Object value) {
+        int capacity = Math.max(size, MIN_CAPACITY);
+        if (value instanceof Long) {
+            kind = LONGS;
+            longs = new long[capacity];
+            Arrays.fill(longs, LONG_HOLE);
+        } else if (value instanceof Double) {
+            kind = DOUBLES;
+            doubles = new double[capacity];
+            Arrays.fill(doubles, Double.longBitsToDouble(DOUBLE_HOLE));
+        } else {
+            kind = OBJECTS;
+            objects = new Object[capacity];
+        }
+    }
+
+    private void generalize() {
+        Object[] boxed = new Object[capacity()];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = load(i);
+        }
+
+        kind = OBJECTS;
+        objects = boxed;
+        longs = null;
+        doubles = null;
+    }
+
+    private int capacity() {
+        switch (kind) {
+            case LONGS: return longs.length;
+            case DOUBLES: return doubles.length;
+            case OBJECTS: return objects.length;
+            default: return size;
+        }
+    }
+
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, capacity() + (capacity() >> 1));
+        switch (kind) {
+            case LONGS: longs = Arrays.copyOf(longs, capacity); break;
+            case DOUBLES: doubles = Arrays.copyOf(doubles, capacity); break;
+            default: objects = Arrays.copyOf(objects, capacity); break;
+        }
+    }
+}
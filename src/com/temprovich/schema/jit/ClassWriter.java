@@ -0,0 +1,185 @@
+package com.temprovich.schema.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Just enough of a class file writer for the JIT: a constant pool, fields
+ * and methods with a Code attribute. Classes are written as version 49, so
+ * the JVM verifies them by type inference and no StackMapTable is needed.
+ */
+final class ClassWriter {
+
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+    private int poolSize = 1;
+
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<byte[]>();
+    private final List<Code> methods = new ArrayList<Code>();
+
+    ClassWriter(int access, String name, String superName, String... interfaceNames) {
+        this.access = access;
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return entry("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(utf8);
+        });
+    }
+
+    int integer(int value) {
+        return entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int field(String owner, String name, String descriptor) {
+        return member(9, owner, name, descriptor);
+    }
+
+    int method(String owner, String name, String descriptor) {
+        return member(10, owner, name, descriptor);
+    }
+
+    int interfaceMethod(String owner, String name, String descriptor) {
+        return member(11, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return entry(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    Code addMethod(int access, String name, String descriptor, int maxLocals) {
+        Code code = new Code(this, access, utf8(name), utf8(descriptor), maxLocals);
+        utf8("Code");
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        // method bodies may still add constants, so they are written first
+        List<byte[]> methodBytes = new ArrayList<byte[]>();
+        for (Code method : methods) {
+            methodBytes.add(method.toByteArray(utf8("Code")));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            out.write(pool.toByteArray());
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methodBytes.size());
+            for (byte[] method : methodBytes) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int entry(String key, Entry entry) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        if (poolSize > 0xFFFF) {
+            throw new FunctionCompiler.Unsupported("Constant pool too large");
+        }
+        entries.put(key, poolSize);
+        return poolSize++;
+    }
+
+    @FunctionalInterface
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,258 @@
+package com.temprovich.schema.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The body of one method. Tracks the operand stack depth as instructions
+ * are emitted, which is all max_stack needs since the JIT only generates
+ * structured control flow: whatever is on the stack at a jump is on the
+ * stack where it lands.
+ */
+final class Code {
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+
+    private static final int MAX_LENGTH = 0xFFFF;
+
+    private final ClassWriter writer;
+    private final int access;
+    private final int name;
+    private final int descriptor;
+    private final int maxLocals;
+
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+
+    Code(ClassWriter writer, int access, int name, int descriptor, int maxLocals) {
+        this.writer = writer;
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.maxLocals = maxLocals;
+    }
+
+    static final class Label {
+
+        private int position = -1;
+        private int stack = -1;
+        private final List<int[]> references = new ArrayList<int[]>();
+    }
+
+    void op(int opcode) {
+        switch (opcode) {
+            case ACONST_NULL:
+            case ICONST_0:
+            case ICONST_1:
+            case DUP:
+                push(1);
+                break;
+            case POP:
+            case IXOR:
+            case AALOAD:
+            case ARETURN:
+                push(-1);
+                break;
+            case AASTORE:
+                push(-3);
+                break;
+            default:
+                break;
+        }
+        u1(opcode);
+    }
+
+    void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else {
+            u1(SIPUSH);
+            u2(value);
+        }
+        push(1);
+    }
+
+    void ldc(int index) {
+        if (index <= 0xFF) {
+            u1(LDC);
+            u1(index);
+        } else {
+            u1(LDC_W);
+            u2(index);
+        }
+        push(1);
+    }
+
+    void aload(int local) {
+        u1(ALOAD);
+        u1(local);
+        push(1);
+    }
+
+    void astore(int local) {
+        u1(ASTORE);
+        u1(local);
+        push(-1);
+    }
+
+    void type(int opcode, String internalName) {
+        u1(opcode);
+        u2(writer.classRef(internalName));
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(writer.field(owner, name, descriptor));
+        switch (opcode) {
+            case GETSTATIC: push(1); break;
+            case PUTFIELD: push(-2); break;
+            default: break;
+        }
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(writer.method(owner, name, descriptor));
+        push(slots(descriptor) - (opcode == INVOKESTATIC ? 0 : 1));
+    }
+
+    Label label() {
+        return new Label();
+    }
+
+    void jump(int opcode, Label target) {
+        int at = length;
+        push(opcode == GOTO ? 0 : -1);
+        u1(opcode);
+        if (target.position >= 0) {
+            u2(offset(target.position - at));
+        } else {
+            target.references.add(new int[] { at, length });
+            u2(0);
+        }
+        target.stack = stack;
+    }
+
+    void mark(Label label) {
+        label.position = length;
+        if (label.stack >= 0) {
+            stack = label.stack;
+        }
+        label.stack = stack;
+        for (int[] reference : label.references) {
+            int offset = offset(length - reference[0]);
+            code[reference[1]] = (byte) (offset >> 8);
+            code[reference[1] + 1] = (byte) offset;
+        }
+        label.references.clear();
+    }
+
+    byte[] toByteArray(int codeAttribute) {
+        if (length > MAX_LENGTH) {
+            throw new FunctionCompiler.Unsupported("Method too large");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int offset(int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new FunctionCompiler.Unsupported("Branch out of range");
+        }
+        return offset;
+    }
+
+    /*
+     * Net stack effect of a call with the given descriptor, not counting a
+     * receiver. The JIT only passes references, ints and booleans.
+     */
+    private static int slots(String descriptor) {
+        int effect = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            effect--;
+            i++;
+        }
+
+        return descriptor.charAt(i + 1) == 'V' ? effect : effect + 1;
+    }
+
+    private void push(int effect) {
+        stack += effect;
+        if (stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    private void u1(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+}
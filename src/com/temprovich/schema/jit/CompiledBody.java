@@ -0,0 +1,13 @@
+package com.temprovich.schema.jit;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Interpreter;
+
+/*
+ * A function body compiled to JVM bytecode. Takes the frame the caller
+ * filled with arguments and returns what the body returns, or null.
+ */
+public interface CompiledBody {
+
+    Object execute(Interpreter interpreter, Environment frame);
+}
@@ -0,0 +1,578 @@
+package com.temprovich.schema.jit;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Translates the body of one function into the execute method of a class
+ * implementing CompiledBody. Every slot of the frame becomes a JVM local,
+ * so only the parameters are read from the Environment the caller filled
+ * in. Operators call Arithmetic, and conditions are computed as unboxed
+ * booleans and branched on directly.
+ *
+ * Only functions that never touch a Cell are compiled: anything capturing
+ * or captured, methods using self or parent, attributes, indexing and
+ * nested declarations make compile() throw Unsupported, and the function
+ * stays with the tree walker. So does a body past the limits of a class
+ * file on code size, branch offsets or constants.
+ */
+public final class FunctionCompiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String ARITHMETIC = "com/temprovich/schema/Arithmetic";
+    private static final String RUNTIME = "com/temprovich/schema/jit/JitRuntime";
+    private static final String ENVIRONMENT = "com/temprovich/schema/Environment";
+
+    private static final String OBJECT_TYPE = "Ljava/lang/Object;";
+    private static final String TOKEN_TYPE = "Lcom/temprovich/schema/lexer/Token;";
+    private static final String GLOBALS_TYPE = "Lcom/temprovich/schema/Globals;";
+    private static final String INTERPRETER_TYPE = "Lcom/temprovich/schema/Interpreter;";
+
+    private static final String BINARY = "(" + TOKEN_TYPE + OBJECT_TYPE + OBJECT_TYPE + ")" + OBJECT_TYPE;
+    private static final String COMPARISON = "(" + TOKEN_TYPE + OBJECT_TYPE + OBJECT_TYPE + ")Z";
+
+    private static final int THIS = 0;
+    private static final int INTERPRETER = 1;
+    private static final int FRAME = 2;
+    private static final int LOCALS = 3;
+
+    // leaves room for the operand stack's own needs in the 255 addressable locals
+    private static final int MAX_FRAME = 250;
+
+    private final Globals globals;
+    private final String name;
+    private final ClassWriter writer;
+    private final Map<Object, Integer> constantIndices = new IdentityHashMap<Object, Integer>();
+    private final List<Object> constants = new ArrayList<Object>();
+    private Code code;
+    private Loop loop = null;
+
+    private record Loop(Code.Label continueLabel, Code.Label breakLabel, Loop enclosing) {}
+
+    public static final class Unsupported extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String construct) {
+            super(construct, null, false, false);
+        }
+    }
+
+    /*
+     * The class is named with its internal name, and has to be in this
+     * package to reach JitRuntime.
+     */
+    public FunctionCompiler(Globals globals, String name) {
+        this.globals = globals;
+        this.name = name;
+        this.writer = new ClassWriter(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_FINAL | ClassWriter.ACC_SUPER, name, OBJECT, "com/temprovich/schema/jit/CompiledBody");
+    }
+
+    public byte[] compile(Expression.Function function) {
+        if (function.captures().length > 0) {
+            throw new Unsupported("closure");
+        }
+        if (function.frameSize() > MAX_FRAME) {
+            throw new Unsupported("frame");
+        }
+
+        int parameters = function.parameters() == null ? 0 : function.parameters().size();
+        for (int i = 0; i < parameters; i++) {
+            if (function.isBoxedParameter(i)) {
+                throw new Unsupported("captured parameter");
+            }
+        }
+        if (function.isMethod()) {
+            parameters++;
+        }
+
+        code = writer.addMethod(ClassWriter.ACC_PUBLIC, "execute", "(" + INTERPRETER_TYPE + "L" + ENVIRONMENT + ";)" + OBJECT_TYPE, LOCALS + function.frameSize());
+        for (int slot = 0; slot < function.frameSize(); slot++) {
+            if (slot < parameters) {
+                code.aload(FRAME);
+                code.iconst(slot);
+                code.invoke(Code.INVOKEVIRTUAL, ENVIRONMENT, "fetch", "(I)" + OBJECT_TYPE);
+            } else {
+                code.op(Code.ACONST_NULL);
+            }
+            code.astore(LOCALS + slot);
+        }
+
+        for (Statement statement : function.body()) {
+            statement.accept(this);
+        }
+        code.op(Code.ACONST_NULL);
+        code.op(Code.ARETURN);
+
+        constructor();
+        return writer.toByteArray();
+    }
+
+    /*
+     * The values the constructor of the compiled class takes, in order.
+     */
+    public Object[] constants() {
+        return constants.toArray();
+    }
+
+    /*
+     * Copies the constants handed to the constructor into one final field
+     * each, typed so that no cast is needed where they are used.
+     */
+    private void constructor() {
+        Code init = writer.addMethod(ClassWriter.ACC_PUBLIC, "<init>", "([" + OBJECT_TYPE + ")V", 2);
+        init.aload(THIS);
+        init.invoke(Code.INVOKESPECIAL, OBJECT, "<init>", "()V");
+        for (int i = 0; i < constants.size(); i++) {
+            String type = internalName(constants.get(i));
+            writer.addField(ClassWriter.ACC_PRIVATE | ClassWriter.ACC_FINAL, "c" + i, "L" + type + ";");
+            init.aload(THIS);
+            init.aload(1);
+            init.iconst(i);
+            init.op(Code.AALOAD);
+            init.type(Code.CHECKCAST, type);
+            init.field(Code.PUTFIELD, name, "c" + i, "L" + type + ";");
+        }
+        init.op(Code.RETURN);
+    }
+
+    private static String internalName(Object constant) {
+        return constant.getClass().getName().replace('.', '/');
+    }
+
+    private void constant(Object value) {
+        Integer index = constantIndices.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndices.put(value, index);
+        }
+
+        code.aload(THIS);
+        code.field(Code.GETFIELD, name, "c" + index, "L" + internalName(value) + ";");
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void box() {
+        code.invoke(Code.INVOKESTATIC, BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;");
+    }
+
+    /*
+     * Leaves the truth of the expression on the stack as an int, without
+     * boxing comparisons or going through isTruthy for them.
+     */
+    private void condition(Expression expression) {
+        if (expression instanceof Expression.Grouping) {
+            condition(((Expression.Grouping) expression).expression());
+            return;
+        }
+
+        if (expression instanceof Expression.Unary) {
+            var unary = (Expression.Unary) expression;
+            if (unary.operator().type() == Token.Type.BANG) {
+                condition(unary.right());
+                code.op(Code.ICONST_1);
+                code.op(Code.IXOR);
+                return;
+            }
+        }
+
+        if (expression instanceof Expression.Logical) {
+            var logical = (Expression.Logical) expression;
+            Code.Label end = code.label();
+            condition(logical.left());
+            code.op(Code.DUP);
+            code.jump(logical.operator().type() == Token.Type.OR ? Code.IFNE : Code.IFEQ, end);
+            code.op(Code.POP);
+            condition(logical.right());
+            code.mark(end);
+            return;
+        }
+
+        if (expression instanceof Expression.Binary) {
+            var binary = (Expression.Binary) expression;
+            Token operator = binary.operator();
+            String method = null;
+            switch (operator.type()) {
+                case GREATER: method = "greater"; break;
+                case GREATER_EQUAL: method = "greaterEqual"; break;
+                case LESS: method = "less"; break;
+                case LESS_EQUAL: method = "lessEqual"; break;
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    compile(binary.left());
+                    compile(binary.right());
+                    code.invoke(Code.INVOKESTATIC, ARITHMETIC, "isEqual", "(" + OBJECT_TYPE + OBJECT_TYPE + ")Z");
+                    if (operator.type() == Token.Type.BANG_EQUAL) {
+                        code.op(Code.ICONST_1);
+                        code.op(Code.IXOR);
+                    }
+                    return;
+                default: break;
+            }
+
+            if (method != null) {
+                constant(operator);
+                compile(binary.left());
+                compile(binary.right());
+                code.invoke(Code.INVOKESTATIC, ARITHMETIC, method, COMPARISON);
+                return;
+            }
+        }
+
+        compile(expression);
+        code.invoke(Code.INVOKESTATIC, ARITHMETIC, "isTruthy", "(" + OBJECT_TYPE + ")Z");
+    }
+
+    @Override
+    public Void visit(Statement.Block statement) {
+        for (Statement inner : statement.statements()) {
+            inner.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Expr statement) {
+        compile(statement.expression());
+        code.op(Code.POP);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Node statement) {
+        throw new Unsupported("node");
+    }
+
+    @Override
+    public Void visit(Statement.Trait statement) {
+        throw new Unsupported("trait");
+    }
+
+    @Override
+    public Void visit(Statement.Function statement) {
+        throw new Unsupported("function");
+    }
+
+    @Override
+    public Void visit(Statement.Auto statement) {
+        if (!statement.isLocal() || statement.isBoxed()) {
+            throw new Unsupported("captured local");
+        }
+
+        if (statement.value() != null) {
+            compile(statement.value());
+        } else {
+            code.op(Code.ACONST_NULL);
+        }
+        code.astore(LOCALS + statement.slot());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.If statement) {
+        Code.Label otherwise = code.label();
+        condition(statement.condition());
+        code.jump(Code.IFEQ, otherwise);
+        statement.thenBranch().accept(this);
+        if (statement.elseBranch() != null) {
+            Code.Label end = code.label();
+            code.jump(Code.GOTO, end);
+            code.mark(otherwise);
+            statement.elseBranch().accept(this);
+            code.mark(end);
+        } else {
+            code.mark(otherwise);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Return statement) {
+        if (statement.value() != null) {
+            compile(statement.value());
+        } else {
+            code.op(Code.ACONST_NULL);
+        }
+        code.op(Code.ARETURN);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.While statement) {
+        Code.Label start = code.label();
+        Code.Label next = code.label();
+        Code.Label end = code.label();
+
+        code.mark(start);
+        condition(statement.condition());
+        code.jump(Code.IFEQ, end);
+
+        loop = new Loop(next, end, loop);
+        statement.body().accept(this);
+        loop = loop.enclosing();
+
+        code.mark(next);
+        if (statement.increment() != null) {
+            compile(statement.increment());
+            code.op(Code.POP);
+        }
+        code.jump(Code.GOTO, start);
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Break statement) {
+        code.jump(Code.GOTO, loop.breakLabel());
+        return null;
+    }
+
+    @Override
+    public Void visit(Statement.Continue statement) {
+        code.jump(Code.GOTO, loop.continueLabel());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Literal expression) {
+        Object value = expression.value();
+        if (value == null) {
+            code.op(Code.ACONST_NULL);
+        } else if (value instanceof Boolean) {
+            code.field(Code.GETSTATIC, BOOLEAN, (boolean) value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        } else if (value instanceof String) {
+            code.ldc(writer.string((String) value));
+        } else {
+            constant(value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Grouping expression) {
+        compile(expression.expression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Variable expression) {
+        switch (expression.access()) {
+            case LOCAL:
+                code.aload(LOCALS + expression.slot());
+                return null;
+            case UPVALUE:
+                code.aload(FRAME);
+                code.iconst(expression.slot());
+                code.invoke(Code.INVOKEVIRTUAL, ENVIRONMENT, "upvalue", "(I)" + OBJECT_TYPE);
+                return null;
+            case GLOBAL:
+                constant(globals);
+                code.iconst(expression.slot());
+                constant(expression.name());
+                code.invoke(Code.INVOKESTATIC, RUNTIME, "global", "(" + GLOBALS_TYPE + "I" + TOKEN_TYPE + ")" + OBJECT_TYPE);
+                return null;
+            default:
+                throw new Unsupported("cell");
+        }
+    }
+
+    @Override
+    public Void visit(Expression.Assign expression) {
+        switch (expression.access()) {
+            case LOCAL:
+                compile(expression.value());
+                code.op(Code.DUP);
+                code.astore(LOCALS + expression.slot());
+                return null;
+            case GLOBAL:
+                constant(globals);
+                code.iconst(expression.slot());
+                constant(expression.name());
+                compile(expression.value());
+                code.invoke(Code.INVOKESTATIC, RUNTIME, "assignGlobal", "(" + GLOBALS_TYPE + "I" + TOKEN_TYPE + OBJECT_TYPE + ")" + OBJECT_TYPE);
+                return null;
+            default:
+                throw new Unsupported("cell");
+        }
+    }
+
+    @Override
+    public Void visit(Expression.Unary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case MINUS:
+                constant(operator);
+                compile(expression.right());
+                code.invoke(Code.INVOKESTATIC, ARITHMETIC, "negate", "(" + TOKEN_TYPE + OBJECT_TYPE + ")" + OBJECT_TYPE);
+                return null;
+            case BANG:
+                condition(expression);
+                box();
+                return null;
+            case PLUS_PLUS:
+                update(operator, "add", expression.right(), Long.valueOf(1));
+                return null;
+            case MINUS_MINUS:
+                update(operator, "subtract", expression.right(), Long.valueOf(1));
+                return null;
+            default:
+                throw new Unsupported(operator.lexeme());
+        }
+    }
+
+    @Override
+    public Void visit(Expression.Binary expression) {
+        Token operator = expression.operator();
+        switch (operator.type()) {
+            case PLUS: arithmetic(operator, "add", expression); return null;
+            case MINUS: arithmetic(operator, "subtract", expression); return null;
+            case STAR: arithmetic(operator, "multiply", expression); return null;
+            case SLASH: arithmetic(operator, "divide", expression); return null;
+            case PLUS_EQUAL: update(operator, "add", expression.left(), expression.right()); return null;
+            case MINUS_EQUAL: update(operator, "subtract", expression.left(), expression.right()); return null;
+            case STAR_EQUAL: update(operator, "multiply", expression.left(), expression.right()); return null;
+            case SLASH_EQUAL: update(operator, "divide", expression.left(), expression.right()); return null;
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+            case EQUAL_EQUAL:
+            case BANG_EQUAL:
+                condition(expression);
+                box();
+                return null;
+            default:
+                throw new Unsupported(operator.lexeme());
+        }
+    }
+
+    private void arithmetic(Token operator, String method, Expression.Binary expression) {
+        constant(operator);
+        compile(expression.left());
+        compile(expression.right());
+        code.invoke(Code.INVOKESTATIC, ARITHMETIC, method, BINARY);
+    }
+
+    /*
+     * ++, -- and the compound assignments: like the tree walker, they store
+     * into a local variable and evaluate to null. Anything else they could
+     * apply to is left to the tree walker.
+     */
+    private void update(Token operator, String method, Expression target, Object operand) {
+        if (!(target instanceof Expression.Variable) || ((Expression.Variable) target).access() != Expression.Resolvable.Access.LOCAL) {
+            throw new Unsupported(operator.lexeme());
+        }
+
+        int local = LOCALS + ((Expression.Variable) target).slot();
+        constant(operator);
+        code.aload(local);
+        if (operand instanceof Expression) {
+            compile((Expression) operand);
+        } else {
+            constant(operand);
+        }
+        code.invoke(Code.INVOKESTATIC, ARITHMETIC, method, BINARY);
+        code.astore(local);
+        code.op(Code.ACONST_NULL);
+    }
+
+    @Override
+    public Void visit(Expression.Logical expression) {
+        Code.Label end = code.label();
+        compile(expression.left());
+        code.op(Code.DUP);
+        code.invoke(Code.INVOKESTATIC, ARITHMETIC, "isTruthy", "(" + OBJECT_TYPE + ")Z");
+        code.jump(expression.operator().type() == Token.Type.OR ? Code.IFNE : Code.IFEQ, end);
+        code.op(Code.POP);
+        compile(expression.right());
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Call expression) {
+        if (expression.callee() instanceof Expression.Attribute) {
+            throw new Unsupported("method call");
+        }
+
+        var arguments = expression.arguments();
+        code.aload(INTERPRETER);
+        compile(expression.callee());
+        constant(expression.paren());
+
+        // the arguments are evaluated before the runtime checks the callee
+        if (arguments.size() <= 3) {
+            StringBuilder descriptor = new StringBuilder("(" + INTERPRETER_TYPE + OBJECT_TYPE + TOKEN_TYPE);
+            for (Expression argument : arguments) {
+                compile(argument);
+                descriptor.append(OBJECT_TYPE);
+            }
+            descriptor.append(")").append(OBJECT_TYPE);
+            code.invoke(Code.INVOKESTATIC, RUNTIME, "call" + arguments.size(), descriptor.toString());
+            return null;
+        }
+
+        code.iconst(arguments.size());
+        code.type(Code.ANEWARRAY, OBJECT);
+        for (int i = 0; i < arguments.size(); i++) {
+            code.op(Code.DUP);
+            code.iconst(i);
+            compile(arguments.get(i));
+            code.op(Code.AASTORE);
+        }
+        code.invoke(Code.INVOKESTATIC, RUNTIME, "call", "(" + INTERPRETER_TYPE + OBJECT_TYPE + TOKEN_TYPE + "[" + OBJECT_TYPE + ")" + OBJECT_TYPE);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expression.Function expression) {
+        throw new Unsupported("function");
+    }
+
+    @Override
+    public Void visit(Expression.Attribute expression) {
+        throw new Unsupported("attribute");
+    }
+
+    @Override
+    public Void visit(Expression.Set expression) {
+        throw new Unsupported("attribute");
+    }
+
+    @Override
+    public Void visit(Expression.Self expression) {
+        throw new Unsupported("self");
+    }
+
+    @Override
+    public Void visit(Expression.Parent expression) {
+        throw new Unsupported("parent");
+    }
+
+    @Override
+    public Void visit(Expression.Index expression) {
+        throw new Unsupported("index");
+    }
+
+    @Override
+    public Void visit(Expression.IndexGet expression) {
+        throw new Unsupported("index");
+    }
+
+    @Override
+    public Void visit(Expression.IndexSet expression) {
+        throw new Unsupported("index");
+    }
+}
@@ -0,0 +1,72 @@
+package com.temprovich.schema.jit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Interpreter;
+
+/*
+ * The tree walker with a second tier: once a function has been called
+ * THRESHOLD times its body is compiled to JVM bytecode, loaded as a hidden
+ * class, and every later call of it runs the compiled code. Bodies the
+ * compiler does not support keep being interpreted.
+ */
+public class JitInterpreter extends Interpreter {
+
+    public static final int THRESHOLD = 50;
+
+    private static final String NAME = "com/temprovich/schema/jit/CompiledFunction";
+
+    private static final CompiledBody UNSUPPORTED = (interpreter, frame) -> null;
+
+    private final Map<Expression.Function, CompiledBody> bodies;
+    private final Map<Expression.Function, Supplier<CompiledBody>> installed;
+
+    public JitInterpreter() {
+        this.bodies = new IdentityHashMap<Expression.Function, CompiledBody>();
+        this.installed = new IdentityHashMap<Expression.Function, Supplier<CompiledBody>>();
+    }
+
+    @Override
+    public CompiledBody compile(Expression.Function function) {
+        CompiledBody body = bodies.get(function);
+        if (body == null) {
+            var supplier = installed.remove(function);
+            body = supplier != null ? supplier.get() : define(function);
+            bodies.put(function, body);
+        }
+
+        return body == UNSUPPORTED ? null : body;
+    }
+
+    /*
+     * Supplies the compiled body of a function ahead of time. It is only
+     * asked for once the function turns hot, and used instead of compiling
+     * the function then.
+     */
+    public void install(Expression.Function function, Supplier<CompiledBody> body) {
+        installed.put(function, body);
+    }
+
+    private CompiledBody define(Expression.Function function) {
+        FunctionCompiler compiler = new FunctionCompiler(globals(), NAME);
+        byte[] bytes;
+        try {
+            bytes = compiler.compile(function);
+        } catch (FunctionCompiler.Unsupported e) {
+            return UNSUPPORTED;
+        }
+
+        try {
+            var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class));
+            return (CompiledBody) constructor.invoke(compiler.constants());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to load compiled function", e);
+        }
+    }
+}
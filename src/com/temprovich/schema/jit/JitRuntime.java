@@ -0,0 +1,128 @@
+package com.temprovich.schema.jit;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaFunction;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * What compiled code calls for everything that is not plain arithmetic.
+ * The checks and messages are the tree walker's.
+ */
+final class JitRuntime {
+
+    private JitRuntime() {}
+
+    static Object global(Globals globals, int slot, Token name) {
+        Object value = globals.fetch(slot);
+        if (value != Globals.UNDEFINED) {
+            return value;
+        }
+
+        throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+    }
+
+    static Object assignGlobal(Globals globals, int slot, Token name, Object value) {
+        if (!globals.isDefined(slot)) {
+            throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        }
+
+        globals.store(slot, value);
+        return value;
+    }
+
+    /*
+     * Checks what is about to be called once its arguments are evaluated,
+     * as the tree walker does: compiled code evaluates the callee, then the
+     * arguments, and only then reaches one of the calls below. Natives and
+     * bound builtins raise their errors without a token, so the calls give
+     * them the call's.
+     */
+    private static void check(Object callee, Token paren, int count) {
+        if (!(callee instanceof SchemaCallable)) {
+            throw new SchemaRuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        var function = (SchemaCallable) callee;
+        if (count != function.arity() && !function.isVariadic()) {
+            throw new SchemaRuntimeError(paren, "Function received " + count + " arguments, but expects " + function.arity() + ".");
+        }
+    }
+
+    static Object call0(Interpreter interpreter, Object callee, Token paren) {
+        check(callee, paren, 0);
+        if (callee instanceof SchemaFunction) {
+            var function = (SchemaFunction) callee;
+            return function.execute(interpreter, function.frame());
+        }
+
+        try {
+            return ((SchemaCallable) callee).call0(interpreter);
+        } catch (SchemaRuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    static Object call1(Interpreter interpreter, Object callee, Token paren, Object a) {
+        check(callee, paren, 1);
+        if (callee instanceof SchemaFunction) {
+            var function = (SchemaFunction) callee;
+            Environment frame = function.frame();
+            function.argument(frame, 0, a);
+            return function.execute(interpreter, frame);
+        }
+
+        try {
+            return ((SchemaCallable) callee).call1(interpreter, a);
+        } catch (SchemaRuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    static Object call2(Interpreter interpreter, Object callee, Token paren, Object a, Object b) {
+        check(callee, paren, 2);
+        if (callee instanceof SchemaFunction) {
+            var function = (SchemaFunction) callee;
+            Environment frame = function.frame();
+            function.argument(frame, 0, a);
+            function.argument(frame, 1, b);
+            return function.execute(interpreter, frame);
+        }
+
+        try {
+            return ((SchemaCallable) callee).call2(interpreter, a, b);
+        } catch (SchemaRuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    static Object call3(Interpreter interpreter, Object callee, Token paren, Object a, Object b, Object c) {
+        check(callee, paren, 3);
+        if (callee instanceof SchemaFunction) {
+            var function = (SchemaFunction) callee;
+            Environment frame = function.frame();
+            function.argument(frame, 0, a);
+            function.argument(frame, 1, b);
+            function.argument(frame, 2, c);
+            return function.execute(interpreter, frame);
+        }
+
+        try {
+            return ((SchemaCallable) callee).call3(interpreter, a, b, c);
+        } catch (SchemaRuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+
+    static Object call(Interpreter interpreter, Object callee, Token paren, Object[] arguments) {
+        check(callee, paren, arguments.length);
+        try {
+            return ((SchemaCallable) callee).call(interpreter, arguments);
+        } catch (SchemaRuntimeError error) {
+            throw error.at(paren);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.temprovich.schema.lexer;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.temprovich.schema.Schema;
@@ -33,6 +32,9 @@ public final class Lexer {
 
     private static final Map<String, Token.Type> keywords;
 
+    // keywords by their first letter, to look an identifier up in place
+    private static final String[][] keywordsByInitial = new String[128][];
+
     static {
         keywords = new HashMap<String, Token.Type>();
         keywords.put(KW_AND, Token.Type.AND);
@@ -56,26 +58,35 @@ public final class Lexer {
         keywords.put(KW_WITH, Token.Type.WITH);
         keywords.put(KW_ARRAY, Token.Type.ARRAY);
         keywords.put(KW_USE, Token.Type.USE);
+
+        for (String keyword : keywords.keySet()) {
+            String[] bucket = keywordsByInitial[keyword.charAt(0)];
+            bucket = bucket == null ? new String[1] : Arrays.copyOf(bucket, bucket.length + 1);
+            bucket[bucket.length - 1] = keyword;
+            keywordsByInitial[keyword.charAt(0)] = bucket;
+        }
     }
     
     private final String source;
-    private final List<Token> tokens;
+    private final TokenStream tokens;
     private int start = 0;
     private int current = 0;
     private int line = 1;
     
     public Lexer(String source) {
         this.source = source;
-        this.tokens = new ArrayList<Token>();
+        this.tokens = new TokenStream(source);
     }
 
-    public List<Token> tokenize() {
+    public TokenStream tokenize() {
         while (!atEnd()) {
             start = current;
             scanToken();
         }
 
-        tokens.add(new Token(Token.Type.EOF, "", null, line));
+        start = current;
+        addToken(Token.Type.EOF);
+        tokens.trim();
         return tokens;
     }
 
@@ -161,8 +172,7 @@ public final class Lexer {
         }
         
         advance();
-        String value = source.substring(start + 1, current - 1);
-        addToken(Token.Type.STRING, value);
+        addToken(Token.Type.STRING);
     }
 
     private void number() {
@@ -177,8 +187,9 @@ public final class Lexer {
                 advance();
             }
         }
-        
-        addToken(Token.Type.NUMBER, Double.parseDouble(source.substring(start, current)));
+
+        // the value is only parsed if the parser keeps the token
+        addToken(Token.Type.NUMBER);
     }
 
     private void identifier() {
@@ -186,14 +197,21 @@ public final class Lexer {
             advance();
         }
         
-        String text = source.substring(start, current);
-        Token.Type type = keywords.get(text);
+        addToken(keyword());
+    }
 
-        if (type == null) {
-            type = Token.Type.IDENTIFIER;
+    private Token.Type keyword() {
+        String[] candidates = keywordsByInitial[source.charAt(start)];
+        if (candidates != null) {
+            int length = current - start;
+            for (String keyword : candidates) {
+                if (keyword.length() == length && source.startsWith(keyword, start)) {
+                    return keywords.get(keyword);
+                }
+            }
         }
 
-        addToken(type);
+        return Token.Type.IDENTIFIER;
     }
 
     // Utility methods
@@ -207,12 +225,7 @@ public final class Lexer {
     }
 
     private void addToken(Token.Type type) {
-        addToken(type, null);
-    }
-
-    private void addToken(Token.Type type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        tokens.add(type, start, current - start, line);
     }
 
     private boolean match(char expected) {
@@ -0,0 +1,102 @@
+package com.temprovich.schema.lexer;
+
+import java.util.Arrays;
+
+/*
+ * The tokens of a source, kept as parallel arrays of type, offset, length
+ * and line over the source string itself. Nothing is allocated per token
+ * until the parser asks for one as a Token, which it only does for the
+ * tokens it keeps in the tree; lexemes and literals are cut from the
+ * source at that point.
+ */
+public final class TokenStream {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final String source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int size = 0;
+
+    TokenStream(String source) {
+        this.source = source;
+
+        // about one token per four characters in typical code
+        int capacity = Math.max(16, source.length() / 4);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+    }
+
+    void add(Token.Type type, int start, int length, int line) {
+        if (size == types.length) {
+            resize(size + (size >> 1));
+        }
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    /*
+     * Drops the spare capacity once the lexer is done.
+     */
+    void trim() {
+        if (size < types.length) {
+            resize(size);
+        }
+    }
+
+    private void resize(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Token.Type type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public String lexeme(int index) {
+        return source.substring(starts[index], starts[index] + lengths[index]);
+    }
+
+    public Object literal(int index) {
+        switch (type(index)) {
+            case STRING:
+                return source.substring(starts[index] + 1, starts[index] + lengths[index] - 1);
+            case NUMBER:
+                String text = lexeme(index);
+                if (text.indexOf('.') >= 0) {
+                    return Double.parseDouble(text);
+                }
+
+                // literals without a fraction are integers, unless they are too large for a long
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(text);
+                }
+            default:
+                return null;
+        }
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index]);
+    }
+}
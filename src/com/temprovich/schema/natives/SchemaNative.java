@@ -1,22 +1,84 @@
 package com.temprovich.schema.natives;
 
-import java.util.Map;
+import java.util.List;
+
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.instance.SchemaCallable;
 
 public interface SchemaNative {
     
-    public abstract void inject(Map<String, Object> environment);
+    public abstract void inject(Globals globals);
 
     public record ConstantDefinition(String name, Object value) implements SchemaNative {
         @Override
-        public void inject(Map<String, Object> environment) {
-            environment.put(name, value);
+        public void inject(Globals globals) {
+            globals.define(name, value);
         }
     }
 
     public record Definition(String name, Object value) {
 
-        public void inject(Map<String, Object> environment) {
-            environment.put(name, value);
+        public void inject(Globals globals) {
+            globals.define(name, value);
         }
     }
+
+    /*
+     * Natives of a fixed arity receive their arguments directly through the
+     * matching callN entry point; the list forms only unpack into it.
+     */
+    public static abstract class Function0 implements SchemaCallable {
+
+        @Override
+        public int arity() { return 0; }
+
+        @Override
+        public abstract Object call0(Interpreter interpreter);
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) { return call0(interpreter); }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments) { return call0(interpreter); }
+
+        @Override
+        public String toString() { return "<native function>"; }
+    }
+
+    public static abstract class Function1 implements SchemaCallable {
+
+        @Override
+        public int arity() { return 1; }
+
+        @Override
+        public abstract Object call1(Interpreter interpreter, Object a);
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) { return call1(interpreter, arguments.get(0)); }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments) { return call1(interpreter, arguments[0]); }
+
+        @Override
+        public String toString() { return "<native function>"; }
+    }
+
+    public static abstract class Function2 implements SchemaCallable {
+
+        @Override
+        public int arity() { return 2; }
+
+        @Override
+        public abstract Object call2(Interpreter interpreter, Object a, Object b);
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) { return call2(interpreter, arguments.get(0), arguments.get(1)); }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments) { return call2(interpreter, arguments[0], arguments[1]); }
+
+        @Override
+        public String toString() { return "<native function>"; }
+    }
 }
@@ -5,14 +5,16 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
 
+import com.temprovich.schema.Globals;
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.Schema;
 import com.temprovich.schema.error.SchemaRuntimeError;
 import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaDict;
 import com.temprovich.schema.instance.SchemaList;
 import com.temprovich.schema.instance.SchemaMap;
+import com.temprovich.schema.instance.SchemaVector;
 
 public final class SchemaNativeBase implements SchemaNative {
     
@@ -22,113 +24,77 @@ public final class SchemaNativeBase implements SchemaNative {
     /*
      * abort(): Stops a program abnormally.
      */
-    private static final Definition ABORT_0 = new Definition("abort", new SchemaCallable() {
+    private static final Definition ABORT_0 = new Definition("abort", new Function0() {
 
         @Override
-        public int arity() { return 0; }
-        
-        @Override
-        public Void call(Interpreter interpreter, List<Object> arguments) {
+        public Void call0(Interpreter interpreter) {
             System.exit(Schema.EXIT_CODE__ABORT);
             return null;
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
 
     /*
      * abort(x): Stops a program abnormally with a specified error code.
      */
-    private static final Definition ABORT_1 = new Definition("abort", new SchemaCallable() {
+    private static final Definition ABORT_1 = new Definition("abort", new Function1() {
 
         @Override
-        public int arity() { return 1; }
-        
-        @Override
-        public Void call(Interpreter interpreter, List<Object> arguments) {
-            System.exit((int) arguments.get(0));
+        public Void call1(Interpreter interpreter, Object code) {
+            System.exit(((Number) code).intValue());
             return null;
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
 
     /*
      * exit() exits the program normally
      */
-    private static final Definition EXIT = new Definition("exit", new SchemaCallable() {
+    private static final Definition EXIT = new Definition("exit", new Function0() {
 
         @Override
-        public int arity() { return 0; }
-        
-        @Override
-        public Void call(Interpreter interpreter, List<Object> arguments) {
+        public Void call0(Interpreter interpreter) {
             System.exit(Schema.EXIT_CODE__SUCCESS);
             return null;
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
     
     /*
      * print(x): Prints a value to the console.
      */
-    private static final Definition PRINT = new Definition("print", new SchemaCallable() {
+    private static final Definition PRINT = new Definition("print", new Function1() {
 
         @Override
-        public int arity() { return 1; }
-        
-        @Override
-        public Void call(Interpreter interpreter, List<Object> arguments) {
-            System.out.println(Interpreter.stringify(arguments.get(0)));
+        public Void call1(Interpreter interpreter, Object value) {
+            System.out.println(Interpreter.stringify(value));
             return null;
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
 
     /*
      * read_file(path): Reads a file from the filesystem and returns its contents as a string.
      */
-    private static final Definition READ_FILE = new Definition("read_file", new SchemaCallable() {
+    private static final Definition READ_FILE = new Definition("read_file", new Function1() {
 
         @Override
-        public int arity() { return 1; }
-        
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments) {
+        public Object call1(Interpreter interpreter, Object file) {
             try {
-                String path = (String) arguments.get(0);
+                String path = (String) file;
                 byte[] bytes = Files.readAllBytes(Paths.get(path));
                 return new String(bytes, Charset.defaultCharset());
             } catch (IOException e) {
                 throw new SchemaRuntimeError("Could not read file: " + e.getMessage());
             }
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
 
     /*
      * now(): Returns the current time in milliseconds.
      */
-    private static final Definition NOW = new Definition("now", new SchemaCallable() {
+    private static final Definition NOW = new Definition("now", new Function0() {
 
         @Override
-        public int arity() { return 0; }
-        
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments) {
-            return (double) System.currentTimeMillis();
+        public Object call0(Interpreter interpreter) {
+            return System.currentTimeMillis();
         }
-
-        @Override
-        public String toString() { return "<native function>"; }
     });
 
     private static final Definition LIST = new Definition("create_list", new SchemaCallable() {
@@ -174,22 +140,23 @@ public final class SchemaNativeBase implements SchemaNative {
     });
 
     /*
-     * wait(x): Waits for x milliseconds.
+     * create_vector(...): A list whose copies and slices share its elements.
      */
-    private static final Definition WAIT = new Definition("wait", new SchemaCallable() {
+    private static final Definition VECTOR = new Definition("create_vector", new SchemaCallable() {
 
         @Override
-        public int arity() { return 1; }
-        
+        public int arity() { return -1; } // variadic
+
         @Override
-        public Void call(Interpreter interpreter, List<Object> arguments) {
-            try {
-                double millis = (Double) arguments.get(0);
-                Thread.sleep((long) millis);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.size() == 1) {
+                // check for vector
+                if (arguments.get(0) instanceof SchemaVector) {
+                    return new SchemaVector((SchemaVector) arguments.get(0));
+                }
             }
-            return null;
+
+            return new SchemaVector(arguments.size() > 0 ? arguments : null);
         }
 
         @Override
@@ -197,32 +164,68 @@ public final class SchemaNativeBase implements SchemaNative {
     });
 
     /*
-     * type(x): Returns the type of a value.
+     * create_dict(...): A map whose copies share its entries.
      */
-    private static final Definition TYPE = new Definition("type", new SchemaCallable() {
+    private static final Definition DICT = new Definition("create_dict", new SchemaCallable() {
 
         @Override
-        public int arity() { return 1; }
-        
+        public int arity() { return -1; } // variadic
+
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            return Interpreter.typeOf(arguments.get(0));
+            if (arguments.size() == 1) {
+                // check for dict
+                if (arguments.get(0) instanceof SchemaDict) {
+                    return new SchemaDict((SchemaDict) arguments.get(0));
+                }
+            }
+
+            return new SchemaDict(arguments.size() > 0 ? arguments : null);
         }
 
         @Override
         public String toString() { return "<native function>"; }
     });
 
-    public void inject(Map<String, Object> environment) {
-        ABORT_0.inject(environment);
-        ABORT_1.inject(environment);
-        EXIT.inject(environment);
-        PRINT.inject(environment);
-        READ_FILE.inject(environment);
-        NOW.inject(environment);
-        LIST.inject(environment);
-        MAP.inject(environment);
-        WAIT.inject(environment);
-        TYPE.inject(environment);
+    /*
+     * wait(x): Waits for x milliseconds.
+     */
+    private static final Definition WAIT = new Definition("wait", new Function1() {
+
+        @Override
+        public Void call1(Interpreter interpreter, Object duration) {
+            try {
+                Thread.sleep(((Number) duration).longValue());
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+    });
+
+    /*
+     * type(x): Returns the type of a value.
+     */
+    private static final Definition TYPE = new Definition("type", new Function1() {
+
+        @Override
+        public Object call1(Interpreter interpreter, Object value) {
+            return Interpreter.typeOf(value);
+        }
+    });
+
+    public void inject(Globals globals) {
+        ABORT_0.inject(globals);
+        ABORT_1.inject(globals);
+        EXIT.inject(globals);
+        PRINT.inject(globals);
+        READ_FILE.inject(globals);
+        NOW.inject(globals);
+        LIST.inject(globals);
+        MAP.inject(globals);
+        VECTOR.inject(globals);
+        DICT.inject(globals);
+        WAIT.inject(globals);
+        TYPE.inject(globals);
     }
 }
@@ -1,8 +1,8 @@
 package com.temprovich.schema.natives;
 
 import java.util.List;
-import java.util.Map;
 
+import com.temprovich.schema.Globals;
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.instance.SchemaCallable;
 
@@ -29,7 +29,7 @@ public class SchemaNativeIO implements SchemaNative {
     });
 
     @Override
-    public void inject(Map<String, Object> environment) {
-        SCAN.inject(environment);
+    public void inject(Globals globals) {
+        SCAN.inject(globals);
     }
 }
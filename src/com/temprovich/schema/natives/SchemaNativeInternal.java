@@ -1,10 +1,13 @@
 package com.temprovich.schema.natives;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.InlineCache;
 import com.temprovich.schema.Interpreter;
 import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaMap;
 
 public class SchemaNativeInternal implements SchemaNative {
 
@@ -30,8 +33,30 @@ public class SchemaNativeInternal implements SchemaNative {
         public String toString() { return "<native function>"; }
     });
 
+    /*
+     * cache_stats(): Returns the inline cache hit, miss and megamorphic transition counts.
+     */
+    private static final Definition CACHE_STATS = new Definition("cache_stats", new SchemaCallable() {
+        
+        @Override
+        public int arity() { return 0; }
+        
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return new SchemaMap(Arrays.asList(
+                "hits", InlineCache.hits(),
+                "misses", InlineCache.misses(),
+                "megamorphic", InlineCache.megamorphicTransitions()
+            ));
+        }
+        
+        @Override
+        public String toString() { return "<native function>"; }
+    });
+
     @Override
-    public void inject(Map<String, Object> environment) {
-        CLEAR.inject(environment);
+    public void inject(Globals globals) {
+        CLEAR.inject(globals);
+        CACHE_STATS.inject(globals);
     }   
 }
@@ -1,6 +1,6 @@
 package com.temprovich.schema.natives;
 
-import java.util.Map;
+import com.temprovich.schema.Globals;
 
 public class SchemaNativeMath implements SchemaNative {
 
@@ -10,7 +10,7 @@ public class SchemaNativeMath implements SchemaNative {
     private static final Definition PI = new Definition("PI", Math.PI);
 
     @Override
-    public void inject(Map<String, Object> environment) {
-        environment.put(PI.name(), PI.value());
+    public void inject(Globals globals) {
+        globals.define(PI.name(), PI.value());
     }
 }
@@ -2,6 +2,7 @@ package com.temprovich.schema.report;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.temprovich.schema.error.SchemaParseError;
 import com.temprovich.schema.error.SchemaRuntimeError;
 import com.temprovich.schema.lexer.Token;
 
@@ -39,7 +40,17 @@ public final class ErrorReporter {
     }
 
     public void runtimeError(SchemaRuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token().line() + "]");
+        // a body parsed on its first call reported its syntax errors then
+        if (error instanceof SchemaParseError) {
+            return;
+        }
+
+        // a few checks, such as those of array indices, know no token to point at
+        if (error.token() == null) {
+            System.err.println(error.getMessage());
+        } else {
+            System.err.println(error.getMessage() + "\n[line " + error.token().line() + "]");
+        }
         hadRuntimeError.set(true);
     }
 
@@ -7,7 +7,10 @@ public final class ReportLibrary {
     //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
     public static final String MALFORMED_RUNTIME_ARGS = "Invalid use of runtime arguments.\n"
-                                                        + "\t- Usage: schema <script>";
+                                                        + "\t- Usage: schema [--engine=<name>] [--cache=<dir>] [--strict-parse] <script>\n"
+                                                        + "\t- Usage: schema compile <script> [-o <jar>]";
+
+    public static final String UNKNOWN_ENGINE = "Unknown execution engine '{0}'. Available engines: {1}.";
 
     public static final String NULL_FILE_NAME = "Source files name cannot be null.";
     
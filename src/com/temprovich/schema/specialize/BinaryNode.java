@@ -0,0 +1,494 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * A binary operator. Every operator starts out Uninitialized, looks at its
+ * first pair of operands and rewrites itself to the node for that pair of
+ * kinds, such as AddLong or LessDouble. A specialized node that meets any
+ * other kind of operand rewrites itself to Generic, which handles every
+ * combination and never changes again.
+ */
+abstract class BinaryNode extends ExpressionNode {
+
+    protected final Token operator;
+    protected ExpressionNode left;
+    protected ExpressionNode right;
+
+    BinaryNode(Token operator, ExpressionNode left, ExpressionNode right) {
+        this.operator = operator;
+        this.left = adopt(left);
+        this.right = adopt(right);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (left == child) {
+            left = (ExpressionNode) replacement;
+            return true;
+        }
+        if (right == child) {
+            right = (ExpressionNode) replacement;
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Rewrites this node to Generic and completes the operation on operands
+     * that were already evaluated.
+     */
+    protected final Object generalize(Object l, Object r) {
+        if (isCurrent()) {
+            replace(new Generic(operator, left, right));
+        }
+        return Generic.compute(operator, l, r);
+    }
+
+    static final class Uninitialized extends BinaryNode {
+
+        Uninitialized(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            if (isCurrent()) {
+                replace(specialize(l, r));
+            }
+            return Generic.compute(operator, l, r);
+        }
+
+        private BinaryNode specialize(Object l, Object r) {
+            boolean longs = l instanceof Long && r instanceof Long;
+            boolean doubles = l instanceof Double && r instanceof Double;
+
+            switch (operator.type()) {
+                case PLUS:
+                    if (longs) return new AddLong(operator, left, right);
+                    if (doubles) return new AddDouble(operator, left, right);
+                    if (l instanceof String || r instanceof String) return new AddString(operator, left, right);
+                    break;
+                case MINUS:
+                    if (longs) return new SubtractLong(operator, left, right);
+                    if (doubles) return new SubtractDouble(operator, left, right);
+                    break;
+                case STAR:
+                    if (longs) return new MultiplyLong(operator, left, right);
+                    if (doubles) return new MultiplyDouble(operator, left, right);
+                    break;
+                case SLASH:
+                    // two integers do not always divide to an integer
+                    if (doubles) return new DivideDouble(operator, left, right);
+                    break;
+                case LESS:
+                    if (longs) return new LessLong(operator, left, right);
+                    if (doubles) return new LessDouble(operator, left, right);
+                    break;
+                case LESS_EQUAL:
+                    if (longs) return new LessEqualLong(operator, left, right);
+                    if (doubles) return new LessEqualDouble(operator, left, right);
+                    break;
+                case GREATER:
+                    if (longs) return new GreaterLong(operator, left, right);
+                    if (doubles) return new GreaterDouble(operator, left, right);
+                    break;
+                case GREATER_EQUAL:
+                    if (longs) return new GreaterEqualLong(operator, left, right);
+                    if (doubles) return new GreaterEqualDouble(operator, left, right);
+                    break;
+                default:
+                    break;
+            }
+
+            return new Generic(operator, left, right);
+        }
+    }
+
+    static final class Generic extends BinaryNode {
+
+        Generic(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            return compute(operator, l, r);
+        }
+
+        static Object compute(Token operator, Object l, Object r) {
+            switch (operator.type()) {
+                case PLUS:          return Arithmetic.add(operator, l, r);
+                case MINUS:         return Arithmetic.subtract(operator, l, r);
+                case STAR:          return Arithmetic.multiply(operator, l, r);
+                case SLASH:         return Arithmetic.divide(operator, l, r);
+                case LESS:          return Arithmetic.less(operator, l, r);
+                case LESS_EQUAL:    return Arithmetic.lessEqual(operator, l, r);
+                case GREATER:       return Arithmetic.greater(operator, l, r);
+                case GREATER_EQUAL: return Arithmetic.greaterEqual(operator, l, r);
+                case EQUAL_EQUAL:   return Arithmetic.isEqual(l, r);
+                case BANG_EQUAL:    return !Arithmetic.isEqual(l, r);
+                default:
+                    throw new SchemaRuntimeError(operator, "unknown operator");
+            }
+        }
+    }
+
+    static final class AddString extends BinaryNode {
+
+        AddString(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            if (l instanceof String || r instanceof String) {
+                return Interpreter.stringify(l) + Interpreter.stringify(r);
+            }
+
+            return generalize(l, r);
+        }
+    }
+
+    /*
+     * Arithmetic on two integers. An operand of another kind or a result
+     * that overflows sends the node to Generic, which promotes to doubles.
+     */
+    abstract static class LongArithmetic extends BinaryNode {
+
+        LongArithmetic(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        abstract long compute(long l, long r);
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result();
+            }
+        }
+
+        @Override
+        long executeLong(Environment frame) throws UnexpectedResultException {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(e.result(), right.execute(frame)));
+            }
+
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result()));
+            }
+
+            try {
+                return compute(l, r);
+            } catch (ArithmeticException overflow) {
+                throw new UnexpectedResultException(generalize(l, r));
+            }
+        }
+    }
+
+    static final class AddLong extends LongArithmetic {
+
+        AddLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        long compute(long l, long r) {
+            return Math.addExact(l, r);
+        }
+    }
+
+    static final class SubtractLong extends LongArithmetic {
+
+        SubtractLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        long compute(long l, long r) {
+            return Math.subtractExact(l, r);
+        }
+    }
+
+    static final class MultiplyLong extends LongArithmetic {
+
+        MultiplyLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        long compute(long l, long r) {
+            return Math.multiplyExact(l, r);
+        }
+    }
+
+    abstract static class DoubleArithmetic extends BinaryNode {
+
+        DoubleArithmetic(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        abstract double compute(double l, double r);
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result();
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(e.result(), right.execute(frame)));
+            }
+
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result()));
+            }
+
+            return compute(l, r);
+        }
+    }
+
+    static final class AddDouble extends DoubleArithmetic {
+
+        AddDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double compute(double l, double r) {
+            return l + r;
+        }
+    }
+
+    static final class SubtractDouble extends DoubleArithmetic {
+
+        SubtractDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double compute(double l, double r) {
+            return l - r;
+        }
+    }
+
+    static final class MultiplyDouble extends DoubleArithmetic {
+
+        MultiplyDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double compute(double l, double r) {
+            return l * r;
+        }
+    }
+
+    static final class DivideDouble extends DoubleArithmetic {
+
+        DivideDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double compute(double l, double r) {
+            return l / r;
+        }
+    }
+
+    /*
+     * Comparisons produce their result as an unboxed condition, so a loop
+     * or branch testing one never allocates a Boolean.
+     */
+    abstract static class LongComparison extends BinaryNode {
+
+        LongComparison(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        abstract boolean compare(long l, long r);
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(generalize(e.result(), right.execute(frame)));
+            }
+
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(generalize(l, e.result()));
+            }
+
+            return compare(l, r);
+        }
+    }
+
+    static final class LessLong extends LongComparison {
+
+        LessLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(long l, long r) {
+            return l < r;
+        }
+    }
+
+    static final class LessEqualLong extends LongComparison {
+
+        LessEqualLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(long l, long r) {
+            return l <= r;
+        }
+    }
+
+    static final class GreaterLong extends LongComparison {
+
+        GreaterLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(long l, long r) {
+            return l > r;
+        }
+    }
+
+    static final class GreaterEqualLong extends LongComparison {
+
+        GreaterEqualLong(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(long l, long r) {
+            return l >= r;
+        }
+    }
+
+    abstract static class DoubleComparison extends BinaryNode {
+
+        DoubleComparison(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        abstract boolean compare(double l, double r);
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(generalize(e.result(), right.execute(frame)));
+            }
+
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return Arithmetic.isTruthy(generalize(l, e.result()));
+            }
+
+            return compare(l, r);
+        }
+    }
+
+    static final class LessDouble extends DoubleComparison {
+
+        LessDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double l, double r) {
+            return l < r;
+        }
+    }
+
+    static final class LessEqualDouble extends DoubleComparison {
+
+        LessEqualDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double l, double r) {
+            return l <= r;
+        }
+    }
+
+    static final class GreaterDouble extends DoubleComparison {
+
+        GreaterDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double l, double r) {
+            return l > r;
+        }
+    }
+
+    static final class GreaterEqualDouble extends DoubleComparison {
+
+        GreaterEqualDouble(Token operator, ExpressionNode left, ExpressionNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        boolean compare(double l, double r) {
+            return l >= r;
+        }
+    }
+}
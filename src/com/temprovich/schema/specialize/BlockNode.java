@@ -0,0 +1,23 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Environment;
+
+final class BlockNode extends StatementNode {
+
+    private final StatementNode[] statements;
+
+    BlockNode(StatementNode[] statements) {
+        this.statements = adopt(statements);
+    }
+
+    @Override
+    int execute(Environment frame) {
+        for (var statement : statements) {
+            int completion = statement.execute(frame);
+            if (completion != NORMAL) {
+                return completion;
+            }
+        }
+        return NORMAL;
+    }
+}
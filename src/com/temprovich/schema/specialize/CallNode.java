@@ -0,0 +1,102 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.SchemaCallable;
+import com.temprovich.schema.instance.SchemaFunction;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * A call of anything but a method. User functions get their arguments
+ * evaluated straight into the new frame; other callables go through the
+ * fixed-arity entry points.
+ */
+final class CallNode extends ExpressionNode {
+
+    private final SpecializingInterpreter interpreter;
+    private final Token paren;
+    private ExpressionNode callee;
+    private final ExpressionNode[] arguments;
+
+    CallNode(SpecializingInterpreter interpreter, Token paren, ExpressionNode callee, ExpressionNode[] arguments) {
+        this.interpreter = interpreter;
+        this.paren = paren;
+        this.callee = adopt(callee);
+        this.arguments = adopt(arguments);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (callee == child) {
+            callee = (ExpressionNode) replacement;
+            return true;
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] == child) {
+                arguments[i] = (ExpressionNode) replacement;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    Object execute(Environment frame) {
+        Object value = callee.execute(frame);
+
+        if (value instanceof SchemaFunction && ((SchemaFunction) value).arity() == arguments.length) {
+            var function = (SchemaFunction) value;
+            Environment callFrame = function.frame();
+            for (int i = 0; i < arguments.length; i++) {
+                function.argument(callFrame, i, arguments[i].execute(frame));
+            }
+
+            return function.execute(interpreter, callFrame);
+        }
+
+        // the arguments are evaluated before the callee is checked, as the tree walker does
+        try {
+            switch (arguments.length) {
+                case 0: return callable(value).call0(interpreter);
+                case 1: {
+                    Object a = arguments[0].execute(frame);
+                    return callable(value).call1(interpreter, a);
+                }
+                case 2: {
+                    Object a = arguments[0].execute(frame);
+                    Object b = arguments[1].execute(frame);
+                    return callable(value).call2(interpreter, a, b);
+                }
+                case 3: {
+                    Object a = arguments[0].execute(frame);
+                    Object b = arguments[1].execute(frame);
+                    Object c = arguments[2].execute(frame);
+                    return callable(value).call3(interpreter, a, b, c);
+                }
+                default: {
+                    Object[] values = new Object[arguments.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = arguments[i].execute(frame);
+                    }
+                    return callable(value).call(interpreter, values);
+                }
+            }
+        } catch (SchemaRuntimeError error) {
+            // natives and bound builtins raise their errors without a token
+            throw error.at(paren);
+        }
+    }
+
+    private SchemaCallable callable(Object value) {
+        if (!(value instanceof SchemaCallable)) {
+            throw new SchemaRuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        var function = (SchemaCallable) value;
+        if (arguments.length != function.arity() && !function.isVariadic()) {
+            throw new SchemaRuntimeError(paren, "Function received " + arguments.length + " arguments, but expects " + function.arity() + ".");
+        }
+        return function;
+    }
+}
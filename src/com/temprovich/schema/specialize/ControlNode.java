@@ -0,0 +1,199 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Cell;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * The statements other than blocks: expression statements, variable
+ * declarations and the control flow statements.
+ */
+abstract class ControlNode extends StatementNode {
+
+    static final class Evaluate extends ControlNode {
+
+        private ExpressionNode expression;
+
+        Evaluate(ExpressionNode expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (expression == child) {
+                expression = (ExpressionNode) replacement;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            expression.execute(frame);
+            return NORMAL;
+        }
+    }
+
+    /*
+     * An 'auto' declaration. A boxed local gets its Cell before the
+     * initializer runs, so closures created by the initializer share it.
+     */
+    static final class Declare extends ControlNode {
+
+        private final Globals globals;
+        private final Token name;
+        private final int slot;
+        private final boolean boxed;
+        private ExpressionNode value;
+
+        Declare(Globals globals, Token name, int slot, boolean boxed, ExpressionNode value) {
+            this.globals = globals;
+            this.name = name;
+            this.slot = slot;
+            this.boxed = boxed;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (value == child) {
+                value = (ExpressionNode) replacement;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            if (slot == Statement.Declaration.GLOBAL) {
+                globals.define(name.lexeme(), value == null ? null : value.execute(frame));
+            } else if (boxed) {
+                Cell cell = new Cell(null);
+                frame.assign(slot, cell);
+                cell.value = value == null ? null : value.execute(frame);
+            } else {
+                frame.assign(slot, value == null ? null : value.execute(frame));
+            }
+            return NORMAL;
+        }
+    }
+
+    static final class If extends ControlNode {
+
+        private ExpressionNode condition;
+        private final StatementNode thenBranch;
+        private final StatementNode elseBranch;
+
+        If(ExpressionNode condition, StatementNode thenBranch, StatementNode elseBranch) {
+            this.condition = adopt(condition);
+            this.thenBranch = adopt(thenBranch);
+            this.elseBranch = adopt(elseBranch);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (condition == child) {
+                condition = (ExpressionNode) replacement;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            if (condition.executeCondition(frame)) {
+                return thenBranch.execute(frame);
+            }
+            if (elseBranch != null) {
+                return elseBranch.execute(frame);
+            }
+            return NORMAL;
+        }
+    }
+
+    static final class While extends ControlNode {
+
+        private ExpressionNode condition;
+        private final StatementNode body;
+        private ExpressionNode increment;
+
+        While(ExpressionNode condition, StatementNode body, ExpressionNode increment) {
+            this.condition = adopt(condition);
+            this.body = adopt(body);
+            this.increment = adopt(increment);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (condition == child) {
+                condition = (ExpressionNode) replacement;
+                return true;
+            }
+            if (increment == child) {
+                increment = (ExpressionNode) replacement;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            while (condition.executeCondition(frame)) {
+                int completion = body.execute(frame);
+                if (completion == RETURN) {
+                    return RETURN;
+                }
+                if (completion == BREAK) {
+                    break;
+                }
+
+                if (increment != null) {
+                    increment.execute(frame);
+                }
+            }
+            return NORMAL;
+        }
+    }
+
+    static final class Return extends ControlNode {
+
+        private final SpecializingInterpreter interpreter;
+        private ExpressionNode value;
+
+        Return(SpecializingInterpreter interpreter, ExpressionNode value) {
+            this.interpreter = interpreter;
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (value == child) {
+                value = (ExpressionNode) replacement;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            interpreter.returnValue(value == null ? null : value.execute(frame));
+            return RETURN;
+        }
+    }
+
+    static final class Jump extends ControlNode {
+
+        private final int completion;
+
+        Jump(int completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            return completion;
+        }
+    }
+}
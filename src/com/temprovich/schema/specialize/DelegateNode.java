@@ -0,0 +1,48 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.Statement;
+
+/*
+ * Hands a construct the executable tree does not specialize back to the
+ * tree-walking visitors. The interpreter always has the current frame
+ * entered, so the visitors see the same locals as the surrounding nodes.
+ */
+final class DelegateNode extends ExpressionNode {
+
+    private final Interpreter interpreter;
+    private final Expression expression;
+
+    DelegateNode(Interpreter interpreter, Expression expression) {
+        this.interpreter = interpreter;
+        this.expression = expression;
+    }
+
+    @Override
+    Object execute(Environment frame) {
+        return expression.accept(interpreter);
+    }
+
+    /*
+     * Declarations of functions, nodes and traits. They run once per
+     * execution of the enclosing body and never complete abruptly.
+     */
+    static final class Declaration extends StatementNode {
+
+        private final Interpreter interpreter;
+        private final Statement statement;
+
+        Declaration(Interpreter interpreter, Statement statement) {
+            this.interpreter = interpreter;
+            this.statement = statement;
+        }
+
+        @Override
+        int execute(Environment frame) {
+            statement.accept(interpreter);
+            return NORMAL;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Environment;
+
+/*
+ * An expression in the executable tree. Besides the boxed execute(), nodes
+ * can be asked for an unboxed long, double or condition; specialized nodes
+ * override these to skip boxing, the defaults unbox the result of execute()
+ * or report the value through UnexpectedResultException.
+ */
+abstract class ExpressionNode extends Node {
+
+    abstract Object execute(Environment frame);
+
+    long executeLong(Environment frame) throws UnexpectedResultException {
+        Object value = execute(frame);
+        if (value instanceof Long) {
+            return (long) value;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+
+    double executeDouble(Environment frame) throws UnexpectedResultException {
+        Object value = execute(frame);
+        if (value instanceof Double) {
+            return (double) value;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+
+    boolean executeCondition(Environment frame) {
+        return Arithmetic.isTruthy(execute(frame));
+    }
+}
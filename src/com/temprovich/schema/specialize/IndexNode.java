@@ -0,0 +1,122 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.instance.SchemaArray;
+import com.temprovich.schema.instance.Storage;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Element access of an array variable. Reads of arrays holding unboxed
+ * numbers hand them to the arithmetic nodes through executeLong and
+ * executeDouble without boxing them first.
+ */
+abstract class IndexNode extends ExpressionNode {
+
+    protected final Token name;
+    protected final ExpressionNode array;
+    protected ExpressionNode index;
+
+    IndexNode(Token name, ExpressionNode array, ExpressionNode index) {
+        this.name = name;
+        this.array = adopt(array);
+        this.index = adopt(index);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (index == child) {
+            index = (ExpressionNode) replacement;
+            return true;
+        }
+        return false;
+    }
+
+    protected final SchemaArray array(Environment frame) {
+        Object value = array.execute(frame);
+        if (!(value instanceof SchemaArray)) {
+            throw new SchemaRuntimeError(name, "Only arrays can be indexed.");
+        }
+
+        return (SchemaArray) value;
+    }
+
+    protected final int index(Environment frame, SchemaArray array) {
+        Object value = index.execute(frame);
+        if (!Arithmetic.isNumber(value)) {
+            throw new SchemaRuntimeError("Array index must be a number.");
+        }
+
+        int i = Arithmetic.toIndex(value);
+        if (i < 0 || i >= array.length()) {
+            throw new SchemaRuntimeError("Array index out of bounds.");
+        }
+        return i;
+    }
+
+    static final class Read extends IndexNode {
+
+        Read(Token name, ExpressionNode array, ExpressionNode index) {
+            super(name, array, index);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            SchemaArray array = array(frame);
+            return array.getValue(index(frame, array));
+        }
+
+        @Override
+        long executeLong(Environment frame) throws UnexpectedResultException {
+            SchemaArray array = array(frame);
+            int i = index(frame, array);
+            Storage elements = array.elements();
+            if (elements.isLong(i)) {
+                return elements.getLong(i);
+            }
+
+            throw new UnexpectedResultException(elements.get(i));
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            SchemaArray array = array(frame);
+            int i = index(frame, array);
+            Storage elements = array.elements();
+            if (elements.isDouble(i)) {
+                return elements.getDouble(i);
+            }
+
+            throw new UnexpectedResultException(elements.get(i));
+        }
+    }
+
+    static final class Write extends IndexNode {
+
+        private ExpressionNode value;
+
+        Write(Token name, ExpressionNode array, ExpressionNode index, ExpressionNode value) {
+            super(name, array, index);
+            this.value = adopt(value);
+        }
+
+        @Override
+        protected boolean replaceChild(Node child, Node replacement) {
+            if (value == child) {
+                value = (ExpressionNode) replacement;
+                return true;
+            }
+            return super.replaceChild(child, replacement);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            SchemaArray array = array(frame);
+            int i = index(frame, array);
+            Object result = value.execute(frame);
+            array.setValue(i, result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Environment;
+
+/*
+ * A constant. Integer and float literals keep an unboxed copy of their
+ * value for specialized parents and a boxed one for everybody else.
+ */
+abstract class LiteralNode extends ExpressionNode {
+
+    static LiteralNode of(Object value) {
+        if (value instanceof Long) {
+            return new LongLiteral((long) value);
+        }
+        if (value instanceof Double) {
+            return new DoubleLiteral((double) value);
+        }
+        return new ObjectLiteral(value);
+    }
+
+    static final class LongLiteral extends LiteralNode {
+
+        private final long value;
+        private final Object boxed;
+
+        LongLiteral(long value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return boxed;
+        }
+
+        @Override
+        long executeLong(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class DoubleLiteral extends LiteralNode {
+
+        private final double value;
+        private final Object boxed;
+
+        DoubleLiteral(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            return value;
+        }
+    }
+
+    static final class ObjectLiteral extends LiteralNode {
+
+        private final Object value;
+
+        ObjectLiteral(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Environment;
+
+/*
+ * The short-circuiting 'and' and 'or'. Both evaluate to the operand that
+ * decided the result, but as a condition they never box it.
+ */
+abstract class LogicalNode extends ExpressionNode {
+
+    protected ExpressionNode left;
+    protected ExpressionNode right;
+
+    LogicalNode(ExpressionNode left, ExpressionNode right) {
+        this.left = adopt(left);
+        this.right = adopt(right);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (left == child) {
+            left = (ExpressionNode) replacement;
+            return true;
+        }
+        if (right == child) {
+            right = (ExpressionNode) replacement;
+            return true;
+        }
+        return false;
+    }
+
+    static final class And extends LogicalNode {
+
+        And(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = left.execute(frame);
+            return Arithmetic.isTruthy(value) ? right.execute(frame) : value;
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return left.executeCondition(frame) && right.executeCondition(frame);
+        }
+    }
+
+    static final class Or extends LogicalNode {
+
+        Or(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = left.execute(frame);
+            return Arithmetic.isTruthy(value) ? value : right.execute(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return left.executeCondition(frame) || right.executeCondition(frame);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.temprovich.schema.specialize;
+
+/*
+ * Base of the executable tree. Every node knows its parent, so a node can
+ * swap itself for a more specialized or a more general version of itself
+ * while the program runs. Parents hold their children in plain fields and
+ * update them in replaceChild().
+ */
+abstract class Node {
+
+    private Node parent = null;
+
+    protected final <T extends Node> T adopt(T child) {
+        if (child != null) {
+            ((Node) child).parent = this;
+        }
+        return child;
+    }
+
+    protected final <T extends Node> T[] adopt(T[] children) {
+        for (var child : children) {
+            adopt(child);
+        }
+        return children;
+    }
+
+    /*
+     * Puts the replacement where this node was and returns it. The node
+     * being replaced may still be running; it simply finishes its current
+     * execution and is never entered again.
+     */
+    protected final <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, replacement);
+        ((Node) replacement).parent = parent;
+        return replacement;
+    }
+
+    /*
+     * Whether this node is still part of the tree. A recursive call can run
+     * a node and rewrite it while an outer activation of the same node is
+     * still executing; the outer one must not rewrite it a second time.
+     */
+    protected final boolean isCurrent() {
+        return parent.replaceChild(this, this);
+    }
+
+    protected boolean replaceChild(Node child, Node replacement) {
+        return false;
+    }
+}
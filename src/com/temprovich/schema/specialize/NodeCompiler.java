@@ -0,0 +1,242 @@
+package com.temprovich.schema.specialize;
+
+import java.util.List;
+
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * Turns resolved statements into the executable tree. Operators start out
+ * uninitialized and specialize themselves when they first run; variable
+ * accesses are specialized here, from what the SemanticResolver decided.
+ * Method calls, attributes, array creation and declarations of functions,
+ * nodes and traits are left to the tree-walking visitors through
+ * DelegateNode.
+ */
+final class NodeCompiler implements Expression.Visitor<ExpressionNode>,
+                                    Statement.Visitor<StatementNode> {
+
+    private final SpecializingInterpreter interpreter;
+    private final Globals globals;
+
+    NodeCompiler(SpecializingInterpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals();
+    }
+
+    BlockNode compile(List<Statement> statements) {
+        StatementNode[] nodes = new StatementNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(statements.get(i));
+        }
+
+        return new BlockNode(nodes);
+    }
+
+    private StatementNode compile(Statement statement) {
+        return statement == null ? null : statement.accept(this);
+    }
+
+    private ExpressionNode compile(Expression expression) {
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private ExpressionNode delegate(Expression expression) {
+        return new DelegateNode(interpreter, expression);
+    }
+
+    @Override
+    public StatementNode visit(Statement.Block statement) {
+        return compile(statement.statements());
+    }
+
+    @Override
+    public StatementNode visit(Statement.Expr statement) {
+        return new ControlNode.Evaluate(compile(statement.expression()));
+    }
+
+    @Override
+    public StatementNode visit(Statement.Node statement) {
+        return new DelegateNode.Declaration(interpreter, statement);
+    }
+
+    @Override
+    public StatementNode visit(Statement.Trait statement) {
+        return new DelegateNode.Declaration(interpreter, statement);
+    }
+
+    @Override
+    public StatementNode visit(Statement.Function statement) {
+        return new DelegateNode.Declaration(interpreter, statement);
+    }
+
+    @Override
+    public StatementNode visit(Statement.Auto statement) {
+        return new ControlNode.Declare(globals, statement.name(), statement.slot(), statement.isBoxed(), compile(statement.value()));
+    }
+
+    @Override
+    public StatementNode visit(Statement.If statement) {
+        return new ControlNode.If(compile(statement.condition()), compile(statement.thenBranch()), compile(statement.elseBranch()));
+    }
+
+    @Override
+    public StatementNode visit(Statement.Return statement) {
+        return new ControlNode.Return(interpreter, compile(statement.value()));
+    }
+
+    @Override
+    public StatementNode visit(Statement.While statement) {
+        return new ControlNode.While(compile(statement.condition()), compile(statement.body()), compile(statement.increment()));
+    }
+
+    @Override
+    public StatementNode visit(Statement.Break statement) {
+        return new ControlNode.Jump(StatementNode.BREAK);
+    }
+
+    @Override
+    public StatementNode visit(Statement.Continue statement) {
+        return new ControlNode.Jump(StatementNode.CONTINUE);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Literal expression) {
+        return LiteralNode.of(expression.value());
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Grouping expression) {
+        return compile(expression.expression());
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Variable expression) {
+        return read(expression, expression.name());
+    }
+
+    private ExpressionNode read(Expression.Resolvable expression, Token name) {
+        int slot = expression.slot();
+        switch (expression.access()) {
+            case LOCAL: return new ReadNode.Local(slot);
+            case LOCAL_CELL: return new ReadNode.LocalCell(slot);
+            case UPVALUE: return new ReadNode.Upvalue(slot);
+            case UPVALUE_CELL: return new ReadNode.UpvalueCell(slot);
+            default: return new ReadNode.Global(globals, name, slot);
+        }
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Assign expression) {
+        int slot = expression.slot();
+        switch (expression.access()) {
+            case LOCAL: return new WriteNode.Local(slot, compile(expression.value()));
+            case LOCAL_CELL: return new WriteNode.LocalCell(slot, compile(expression.value()));
+            case UPVALUE_CELL: return new WriteNode.UpvalueCell(slot, compile(expression.value()));
+            case GLOBAL: return new WriteNode.Global(globals, expression.name(), slot, compile(expression.value()));
+            default: return delegate(expression);
+        }
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Unary expression) {
+        var operator = expression.operator();
+        switch (operator.type()) {
+            case MINUS: return new UnaryNode.Negate(operator, compile(expression.right()));
+            case BANG: return new UnaryNode.Not(operator, compile(expression.right()));
+            case PLUS_PLUS:
+            case MINUS_MINUS:
+                if (expression.right() instanceof Expression.Variable) {
+                    var variable = (Expression.Variable) expression.right();
+                    if (variable.access() == Expression.Resolvable.Access.LOCAL) {
+                        return new UnaryNode.IncrementLocal(operator, variable.slot(), operator.type() == Token.Type.PLUS_PLUS ? 1 : -1);
+                    }
+                }
+                return delegate(expression);
+            default:
+                return delegate(expression);
+        }
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Binary expression) {
+        switch (expression.operator().type()) {
+            case PLUS_EQUAL:
+            case MINUS_EQUAL:
+            case STAR_EQUAL:
+            case SLASH_EQUAL:
+                // compound assignments store through the tree walker
+                return delegate(expression);
+            default:
+                return new BinaryNode.Uninitialized(expression.operator(), compile(expression.left()), compile(expression.right()));
+        }
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Logical expression) {
+        var left = compile(expression.left());
+        var right = compile(expression.right());
+        switch (expression.operator().type()) {
+            case OR: return new LogicalNode.Or(left, right);
+            default: return new LogicalNode.And(left, right);
+        }
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Call expression) {
+        if (expression.callee() instanceof Expression.Attribute) {
+            // keep the interpreter's inline caches for method calls
+            return delegate(expression);
+        }
+
+        var arguments = expression.arguments();
+        ExpressionNode[] nodes = new ExpressionNode[arguments.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(arguments.get(i));
+        }
+
+        return new CallNode(interpreter, expression.paren(), compile(expression.callee()), nodes);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Function expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Attribute expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Set expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Self expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Parent expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.Index expression) {
+        return new IndexNode.Read(expression.name(), read(expression, expression.name()), compile(expression.index()));
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.IndexGet expression) {
+        return delegate(expression);
+    }
+
+    @Override
+    public ExpressionNode visit(Expression.IndexSet expression) {
+        return new IndexNode.Write(expression.name(), read(expression, expression.name()), compile(expression.index()), compile(expression.value()));
+    }
+}
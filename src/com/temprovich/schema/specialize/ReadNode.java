@@ -0,0 +1,91 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Cell;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * A variable read. The SemanticResolver has already decided where every
+ * variable lives, so each kind of access gets its own node and never has to
+ * look at the access again.
+ */
+abstract class ReadNode extends ExpressionNode {
+
+    protected final int slot;
+
+    ReadNode(int slot) {
+        this.slot = slot;
+    }
+
+    static final class Local extends ReadNode {
+
+        Local(int slot) {
+            super(slot);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.fetch(slot);
+        }
+    }
+
+    static final class LocalCell extends ReadNode {
+
+        LocalCell(int slot) {
+            super(slot);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return ((Cell) frame.fetch(slot)).value;
+        }
+    }
+
+    static final class Upvalue extends ReadNode {
+
+        Upvalue(int slot) {
+            super(slot);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.upvalue(slot);
+        }
+    }
+
+    static final class UpvalueCell extends ReadNode {
+
+        UpvalueCell(int slot) {
+            super(slot);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return ((Cell) frame.upvalue(slot)).value;
+        }
+    }
+
+    static final class Global extends ReadNode {
+
+        private final Globals globals;
+        private final Token name;
+
+        Global(Globals globals, Token name, int slot) {
+            super(slot);
+            this.globals = globals;
+            this.name = name;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = globals.fetch(slot);
+            if (value != Globals.UNDEFINED) {
+                return value;
+            }
+
+            throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        }
+    }
+}
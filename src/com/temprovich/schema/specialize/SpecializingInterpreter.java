@@ -0,0 +1,68 @@
+package com.temprovich.schema.specialize;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Expression;
+import com.temprovich.schema.Interpreter;
+import com.temprovich.schema.Schema;
+import com.temprovich.schema.Statement;
+import com.temprovich.schema.error.SchemaRuntimeError;
+
+/*
+ * An interpreter that runs function bodies as trees of self-specializing
+ * nodes instead of visiting the AST. A body is turned into nodes the first
+ * time it is called; from then on its operators rewrite themselves to suit
+ * the values they actually see. Frames, functions and instances are those
+ * of the tree walker, which still runs whatever the nodes delegate to it.
+ */
+public class SpecializingInterpreter extends Interpreter {
+
+    private final NodeCompiler compiler;
+    private final Map<Expression.Function, BlockNode> bodies;
+    private Object returnValue = null;
+
+    public SpecializingInterpreter() {
+        this.compiler = new NodeCompiler(this);
+        this.bodies = new IdentityHashMap<Expression.Function, BlockNode>();
+    }
+
+    @Override
+    public void interpret(List<Statement> statements, int frameSize) {
+        Environment frame = new Environment(frameSize, null);
+        enter(frame);
+        try {
+            compiler.compile(statements).execute(frame);
+        } catch (SchemaRuntimeError error) {
+            Schema.reporter.runtimeError(error);
+        }
+    }
+
+    @Override
+    public Object executeFunction(Expression.Function function, Environment frame) {
+        BlockNode body = bodies.get(function);
+        if (body == null) {
+            body = compiler.compile(function.body());
+            bodies.put(function, body);
+        }
+
+        Environment previous = enter(frame);
+        try {
+            if (body.execute(frame) != StatementNode.RETURN) {
+                return null;
+            }
+
+            Object value = returnValue;
+            returnValue = null;
+            return value;
+        } finally {
+            enter(previous);
+        }
+    }
+
+    void returnValue(Object value) {
+        this.returnValue = value;
+    }
+}
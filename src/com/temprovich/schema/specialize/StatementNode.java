@@ -0,0 +1,17 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Environment;
+
+/*
+ * A statement in the executable tree. Executing it returns how it
+ * completed; anything but NORMAL stops the enclosing statement list.
+ */
+abstract class StatementNode extends Node {
+
+    static final int NORMAL = 0;
+    static final int BREAK = 1;
+    static final int CONTINUE = 2;
+    static final int RETURN = 3;
+
+    abstract int execute(Environment frame);
+}
@@ -0,0 +1,87 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Arithmetic;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.lexer.Token;
+
+abstract class UnaryNode extends ExpressionNode {
+
+    protected final Token operator;
+    protected ExpressionNode operand;
+
+    UnaryNode(Token operator, ExpressionNode operand) {
+        this.operator = operator;
+        this.operand = adopt(operand);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (operand == child) {
+            operand = (ExpressionNode) replacement;
+            return true;
+        }
+        return false;
+    }
+
+    static final class Negate extends UnaryNode {
+
+        Negate(Token operator, ExpressionNode operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return Arithmetic.negate(operator, operand.execute(frame));
+        }
+    }
+
+    static final class Not extends UnaryNode {
+
+        Not(Token operator, ExpressionNode operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return !operand.executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return !operand.executeCondition(frame);
+        }
+    }
+
+    /*
+     * ++ and -- on a plain local, the usual loop counter. Like the tree
+     * walker it updates the slot in place and evaluates to null.
+     */
+    static final class IncrementLocal extends ExpressionNode {
+
+        private final Token operator;
+        private final int slot;
+        private final long delta;
+
+        IncrementLocal(Token operator, int slot, long delta) {
+            this.operator = operator;
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = frame.fetch(slot);
+            if (value instanceof Long) {
+                long current = (long) value;
+                long next = current + delta;
+                if (((current ^ next) & (delta ^ next)) >= 0) {
+                    frame.assign(slot, next);
+                    return null;
+                }
+            }
+
+            frame.assign(slot, Arithmetic.add(operator, value, delta));
+            return null;
+        }
+    }
+}
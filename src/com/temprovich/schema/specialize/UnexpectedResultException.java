@@ -0,0 +1,22 @@
+package com.temprovich.schema.specialize;
+
+/*
+ * Carries the value of a node that was asked for an unboxed result of the
+ * wrong kind. Thrown only when a specialization fails, so it skips the
+ * stack trace.
+ */
+final class UnexpectedResultException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object result;
+
+    UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    Object result() {
+        return result;
+    }
+}
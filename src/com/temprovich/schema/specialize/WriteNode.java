@@ -0,0 +1,96 @@
+package com.temprovich.schema.specialize;
+
+import com.temprovich.schema.Cell;
+import com.temprovich.schema.Environment;
+import com.temprovich.schema.Globals;
+import com.temprovich.schema.error.SchemaRuntimeError;
+import com.temprovich.schema.lexer.Token;
+
+/*
+ * An assignment, split by access like ReadNode. Evaluates to the value
+ * assigned.
+ */
+abstract class WriteNode extends ExpressionNode {
+
+    protected final int slot;
+    protected ExpressionNode value;
+
+    WriteNode(int slot, ExpressionNode value) {
+        this.slot = slot;
+        this.value = adopt(value);
+    }
+
+    @Override
+    protected boolean replaceChild(Node child, Node replacement) {
+        if (value == child) {
+            value = (ExpressionNode) replacement;
+            return true;
+        }
+        return false;
+    }
+
+    static final class Local extends WriteNode {
+
+        Local(int slot, ExpressionNode value) {
+            super(slot, value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            frame.assign(slot, result);
+            return result;
+        }
+    }
+
+    static final class LocalCell extends WriteNode {
+
+        LocalCell(int slot, ExpressionNode value) {
+            super(slot, value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            ((Cell) frame.fetch(slot)).value = result;
+            return result;
+        }
+    }
+
+    static final class UpvalueCell extends WriteNode {
+
+        UpvalueCell(int slot, ExpressionNode value) {
+            super(slot, value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            ((Cell) frame.upvalue(slot)).value = result;
+            return result;
+        }
+    }
+
+    static final class Global extends WriteNode {
+
+        private final Globals globals;
+        private final Token name;
+
+        Global(Globals globals, Token name, int slot, ExpressionNode value) {
+            super(slot, value);
+            this.globals = globals;
+            this.name = name;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            if (!globals.isDefined(slot)) {
+                throw new SchemaRuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+            }
+
+            globals.store(slot, result);
+            return result;
+        }
+    }
+}
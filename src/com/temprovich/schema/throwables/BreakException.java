@@ -1,9 +0,0 @@
-package com.temprovich.schema.throwables;
-
-public class BreakException extends RuntimeException {
-    private static final long serialVersionUID = 1L;
-    
-    public BreakException() {
-        super();
-    }
-}
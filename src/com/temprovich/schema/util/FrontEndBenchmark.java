@@ -0,0 +1,78 @@
+package com.temprovich.schema.util;
+
+import com.temprovich.schema.Parser;
+import com.temprovich.schema.lexer.Lexer;
+import com.temprovich.schema.lexer.TokenStream;
+
+/*
+ * Lexer and parser throughput over a generated script of about 10 MB, or
+ * of the size in megabytes given as the first argument. Prints the token
+ * count, the heap the token stream keeps alive, and MB/s for lexing, for
+ * an eager parse and for a lazy one, after a few rounds of warm-up.
+ */
+public class FrontEndBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String source = generate(megabytes * 1024 * 1024);
+        double size = source.length() / (1024.0 * 1024.0);
+        System.out.printf("source: %.1f MB%n", size);
+
+        long before = Heap.used();
+        TokenStream tokens = new Lexer(source).tokenize();
+        long retained = Heap.used() - before;
+        System.out.printf("tokens: %d, %.1f MB retained%n", tokens.size(), retained / (1024.0 * 1024.0));
+
+        report("lex", size, () -> new Lexer(source).tokenize());
+        report("lex + parse", size, () -> new Parser(new Lexer(source).tokenize()).parse());
+        report("lex + lazy parse", size, () -> new Parser(new Lexer(source).tokenize(), true).parse());
+    }
+
+    private static void report(String phase, double size, Runnable run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double seconds = best / 1e9;
+        System.out.printf("%-18s %8.1f ms %8.1f MB/s%n", phase, seconds * 1e3, size / seconds);
+    }
+
+    /*
+     * Functions, nodes and top level statements in the mix generated
+     * scripts tend to have: many short identifiers, numbers and strings.
+     */
+    private static String generate(int length) {
+        StringBuilder sb = new StringBuilder(length + 1024);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("function compute").append(i).append("(a, b, c) {\n");
+            sb.append("    auto total = a * ").append(i % 97).append(" + b / 3.25 - c;\n");
+            sb.append("    for (auto k = 0; k < 10; ++k) {\n");
+            sb.append("        if (total > ").append(i).append(" and k != 4) { total -= k; } else { total += 1; }\n");
+            sb.append("    }\n");
+            sb.append("    while (total > 100) { total = total / 2; }\n");
+            sb.append("    return total;\n");
+            sb.append("}\n\n");
+
+            sb.append("node Shape").append(i).append(" {\n");
+            sb.append("    define(width, height) { self.width = width; self.height = height; }\n");
+            sb.append("    area() { return self.width * self.height; }\n");
+            sb.append("    describe() { return \"shape ").append(i).append(" of area \" + self.area(); }\n");
+            sb.append("}\n\n");
+
+            sb.append("auto value").append(i).append(" = compute").append(i).append("(").append(i).append(", 2, 3);\n");
+            sb.append("// comment for entry ").append(i).append('\n');
+        }
+
+        return sb.toString();
+    }
+}
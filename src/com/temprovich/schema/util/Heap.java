@@ -0,0 +1,32 @@
+package com.temprovich.schema.util;
+
+import java.lang.ref.Reference;
+import java.util.function.IntFunction;
+
+/*
+ * How the benchmarks in this package measure the heap: what is in use
+ * after a few collections, before and after building what is measured.
+ */
+final class Heap {
+
+    private Heap() {}
+
+    static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /*
+     * The bytes per element kept alive by what build returns for the count.
+     */
+    static double retained(int count, IntFunction<Object> build) {
+        long before = used();
+        Object kept = build.apply(count);
+        long retained = used() - before;
+        Reference.reachabilityFence(kept);
+        return (double) retained / count;
+    }
+}
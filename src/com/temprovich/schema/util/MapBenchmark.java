@@ -0,0 +1,112 @@
+package com.temprovich.schema.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import com.temprovich.schema.instance.HashStorage;
+
+/*
+ * Heap retained per entry, and put and get throughput, of the storage
+ * behind maps next to a java.util.HashMap, for a million integer keys and
+ * a million string keys, or the count given as the first argument. The
+ * string keys exist before either map is built, so only the map itself is
+ * counted; integer keys are boxed on the way in, as the interpreter hands
+ * them over.
+ */
+public class MapBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Object[] integers = new Object[count];
+        Object[] strings = new Object[count];
+        for (int i = 0; i < count; i++) {
+            integers[i] = (long) i * 7;
+            strings[i] = "key" + i;
+        }
+
+        memory("HashMap, integer keys", count, n -> hashMap(n, i -> (long) i * 7));
+        memory("storage, integer keys", count, n -> storage(n, i -> (long) i * 7));
+        memory("HashMap, string keys", count, n -> hashMap(n, i -> strings[i]));
+        memory("storage, string keys", count, n -> storage(n, i -> strings[i]));
+
+        throughput("HashMap, integer keys", integers, true);
+        throughput("storage, integer keys", integers, false);
+        throughput("HashMap, string keys", strings, true);
+        throughput("storage, string keys", strings, false);
+    }
+
+    private static Map<Object, Object> hashMap(int count, IntFunction<Object> key) {
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        for (int i = 0; i < count; i++) {
+            map.put(key.apply(i), Boolean.TRUE);
+        }
+        return map;
+    }
+
+    private static HashStorage storage(int count, IntFunction<Object> key) {
+        HashStorage storage = new HashStorage();
+        for (int i = 0; i < count; i++) {
+            storage.put(key.apply(i), Boolean.TRUE);
+        }
+        return storage;
+    }
+
+    private interface Put { Object put(Object key, Object value); }
+    private interface Get { Object get(Object key); }
+
+    /*
+     * The best of a number of rounds, each putting every key into a fresh
+     * map and then getting them back in a shuffled order.
+     */
+    private static void throughput(String name, Object[] keys, boolean hashMap) {
+        Object[] lookups = keys.clone();
+        Collections.shuffle(Arrays.asList(lookups), new Random(1));
+
+        double bestPut = Double.MAX_VALUE;
+        double bestGet = Double.MAX_VALUE;
+        int rounds = Math.max(10, 20_000_000 / keys.length);
+        for (int round = 0; round < rounds; round++) {
+            Put put;
+            Get get;
+            if (hashMap) {
+                Map<Object, Object> map = new HashMap<Object, Object>();
+                put = map::put;
+                get = map::get;
+            } else {
+                HashStorage storage = new HashStorage();
+                put = storage::put;
+                get = storage::get;
+            }
+
+            long start = System.nanoTime();
+            for (Object key : keys) {
+                put.put(key, key);
+            }
+            bestPut = Math.min(bestPut, (double) (System.nanoTime() - start) / keys.length);
+
+            start = System.nanoTime();
+            int found = 0;
+            for (Object key : lookups) {
+                if (get.get(key) == key) {
+                    found++;
+                }
+            }
+            bestGet = Math.min(bestGet, (double) (System.nanoTime() - start) / keys.length);
+
+            if (found != keys.length) {
+                throw new AssertionError(name);
+            }
+        }
+
+        System.out.printf("%-24s put %5.1f ns, get %5.1f ns%n", name, bestPut, bestGet);
+    }
+
+    private static void memory(String name, int count, IntFunction<Object> build) {
+        System.out.printf("%-24s %6.1f bytes per entry%n", name, Heap.retained(count, build));
+    }
+}
@@ -0,0 +1,52 @@
+package com.temprovich.schema.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.temprovich.schema.instance.SchemaArray;
+import com.temprovich.schema.instance.SchemaList;
+
+/*
+ * Heap retained per element by lists and arrays of a million elements, or
+ * of the count given as the first argument, next to what the same values
+ * cost boxed in an ArrayList. Floats and integers stay unboxed in their
+ * storage; mixed elements fall back to boxes.
+ */
+public class StorageBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        report("boxed ArrayList, floats", count, n -> {
+            List<Object> boxed = new ArrayList<Object>();
+            for (int i = 0; i < n; i++) {
+                boxed.add(i * 0.5);
+            }
+            return boxed;
+        });
+        report("list, floats", count, n -> list(n, i -> i * 0.5));
+        report("list, integers", count, n -> list(n, i -> (long) i * 1000));
+        report("list, mixed", count, n -> list(n, i -> i % 2 == 0 ? (Object) (i * 0.5) : (Object) ((long) i * 1000)));
+        report("array, floats", count, n -> {
+            SchemaArray array = new SchemaArray(n);
+            for (int i = 0; i < n; i++) {
+                array.setValue(i, i * 0.5);
+            }
+            return array;
+        });
+    }
+
+    private static SchemaList list(int count, IntFunction<Object> element) {
+        SchemaList list = new SchemaList((List<Object>) null);
+        var add = list.builtin("add");
+        for (int i = 0; i < count; i++) {
+            add.call1(null, list, element.apply(i));
+        }
+        return list;
+    }
+
+    private static void report(String name, int count, IntFunction<Object> build) {
+        System.out.printf("%-26s %6.1f bytes per element%n", name, Heap.retained(count, build));
+    }
+}